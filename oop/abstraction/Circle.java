@@ -14,9 +14,13 @@ public class Circle extends Shape {
             this.radius = radius;
         } else {
             this.radius = 1.0; // Default radius
-            System.out.println("Invalid radius provided. Setting to default: 1.0");
+            if (isVerbose()) {
+                System.out.println("Invalid radius provided. Setting to default: 1.0");
+            }
+        }
+        if (isVerbose()) {
+            System.out.println("Circle created with radius: " + this.radius);
         }
-        System.out.println("Circle created with radius: " + this.radius);
     }
     
     // Constructor with default color and fill
@@ -54,9 +58,12 @@ public class Circle extends Shape {
     
     public void setRadius(double radius) {
         if (radius > 0) {
-            System.out.println("Changing radius from " + this.radius + " to " + radius);
+            if (isVerbose()) {
+                System.out.println("Changing radius from " + this.radius + " to " + radius);
+            }
             this.radius = radius;
-        } else {
+            boundsChanged();
+        } else if (isVerbose()) {
             System.out.println("Invalid radius. Radius must be positive.");
         }
     }
@@ -74,7 +81,7 @@ public class Circle extends Shape {
     // Override display to include circle-specific information
     @Override
     public void display() {
-        System.out.println("This is a " + color + " circle with radius " + radius + 
+        System.out.println("This is a " + getColor() + " circle with radius " + radius + 
                           " that is " + (filled ? "filled" : "not filled"));
     }
     
@@ -83,9 +90,12 @@ public class Circle extends Shape {
         if (factor > 0) {
             double oldRadius = this.radius;
             this.radius *= factor;
-            System.out.printf("Circle scaled by factor %.2f: radius changed from %.2f to %.2f%n", 
-                            factor, oldRadius, this.radius);
-        } else {
+            boundsChanged();
+            if (isVerbose()) {
+                System.out.printf("Circle scaled by factor %.2f: radius changed from %.2f to %.2f%n", 
+                                factor, oldRadius, this.radius);
+            }
+        } else if (isVerbose()) {
             System.out.println("Scale factor must be positive!");
         }
     }
@@ -98,19 +108,19 @@ public class Circle extends Shape {
     // Method to check if two circles are equal
     public boolean equals(Circle other) {
         return Math.abs(this.radius - other.radius) < 0.001 && 
-               this.color.equals(other.color) && 
+               this.getColorId() == other.getColorId() && 
                this.filled == other.filled;
     }
     
     // Method to create a copy of the circle
     public Circle copy() {
-        return new Circle(this.radius, this.color, this.filled);
+        return new Circle(this.radius, getColor(), this.filled);
     }
     
     // toString method for easy printing
     @Override
     public String toString() {
         return String.format("Circle[radius=%.2f, color=%s, filled=%s, area=%.2f]", 
-                           radius, color, filled, calculateArea());
+                           radius, getColor(), filled, calculateArea());
     }
 }
\ No newline at end of file
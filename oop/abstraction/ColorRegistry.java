@@ -0,0 +1,85 @@
+/**
+ * ColorRegistry.java
+ * Gives every color name a small number (its id), shared by all shapes in this JVM.
+ * A Shape stores the id of its color instead of a String, so millions of "Red" shapes
+ * keep no copies of "Red" alive, and grouping or filtering by color compares numbers.
+ *
+ * Ids count up from 0 in the order colors are first seen; id 0 stands for no color (null).
+ * Ids fit in 16 bits, which lets a Shape keep its id in a short. The registry never forgets
+ * a color, so it is capped: once MAX_COLORS - 2 colors are registered, idOf() answers OTHER
+ * for every new color, and Shape keeps such a color's name on the side (see Shape).
+ * Looking up an id or a name never blocks; only registering a new color takes a lock.
+ * Part of the Java Basics and OOP Tutorial
+ */
+import java.util.Arrays;
+import java.util.concurrent.ConcurrentHashMap;
+
+public final class ColorRegistry {
+    public static final int MAX_COLORS = 1 << 16;
+    public static final int NO_COLOR = 0;
+    // The id of every color that did not fit into the registry; nameOf(OTHER) is OTHER_NAME
+    public static final int OTHER = MAX_COLORS - 1;
+    public static final String OTHER_NAME = "(other)";
+
+    private static final ConcurrentHashMap<String, Integer> IDS = new ConcurrentHashMap<>();
+    // names[id]; replaced by a larger copy when full, so readers never see a half-grown array
+    private static volatile String[] names = new String[16];
+    private static volatile int size = 1; // id 0 (NO_COLOR) is taken by null
+
+    private ColorRegistry() {
+    }
+
+    // The id of a color, registering it if it is new (OTHER if the registry is full)
+    public static int idOf(String color) {
+        if (color == null) {
+            return NO_COLOR;
+        }
+        Integer id = IDS.get(color);
+        return id != null ? id : register(color);
+    }
+
+    // The id of a color, or -1 if no shape has used it yet or it did not fit (see OTHER)
+    public static int find(String color) {
+        if (color == null) {
+            return NO_COLOR;
+        }
+        Integer id = IDS.get(color);
+        return id != null ? id : -1;
+    }
+
+    public static String nameOf(int id) {
+        if (id == OTHER) {
+            return OTHER_NAME;
+        }
+        int count = size; // read before names: the array is always published first
+        if (id < 0 || id >= count) {
+            throw new IllegalArgumentException("Unknown color id: " + id);
+        }
+        return names[id];
+    }
+
+    // Number of ids handed out so far (including NO_COLOR); every id except OTHER is below this
+    public static int size() {
+        return size;
+    }
+
+    private static synchronized int register(String color) {
+        Integer existing = IDS.get(color);
+        if (existing != null) {
+            return existing;
+        }
+        int id = size;
+        if (id == OTHER) {
+            return OTHER; // full: the caller keeps the name itself
+        }
+        String[] current = names;
+        if (id == current.length) {
+            current = Arrays.copyOf(current, id * 2);
+        }
+        current[id] = color;
+        names = current;
+        IDS.put(color, id);
+        size = id + 1;
+        return id;
+    }
+}
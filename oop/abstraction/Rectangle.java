@@ -18,9 +18,13 @@ public class Rectangle extends Shape {
         } else {
             this.length = 1.0; // Default dimensions
             this.width = 1.0;
-            System.out.println("Invalid dimensions provided. Setting to default: 1.0 x 1.0");
+            if (isVerbose()) {
+                System.out.println("Invalid dimensions provided. Setting to default: 1.0 x 1.0");
+            }
+        }
+        if (isVerbose()) {
+            System.out.println("Rectangle created with dimensions: " + this.length + " x " + this.width);
         }
-        System.out.println("Rectangle created with dimensions: " + this.length + " x " + this.width);
     }
     
     // Constructor with default color and fill
@@ -31,7 +35,9 @@ public class Rectangle extends Shape {
     // Constructor for a square (equal length and width)
     public Rectangle(double side) {
         this(side, side, "Blue", false);
-        System.out.println("Square created with side: " + side);
+        if (isVerbose()) {
+            System.out.println("Square created with side: " + side);
+        }
     }
     
     // Default constructor
@@ -72,29 +78,38 @@ public class Rectangle extends Shape {
     
     public void setLength(double length) {
         if (length > 0) {
-            System.out.println("Changing length from " + this.length + " to " + length);
+            if (isVerbose()) {
+                System.out.println("Changing length from " + this.length + " to " + length);
+            }
             this.length = length;
-        } else {
+            boundsChanged();
+        } else if (isVerbose()) {
             System.out.println("Invalid length. Length must be positive.");
         }
     }
     
     public void setWidth(double width) {
         if (width > 0) {
-            System.out.println("Changing width from " + this.width + " to " + width);
+            if (isVerbose()) {
+                System.out.println("Changing width from " + this.width + " to " + width);
+            }
             this.width = width;
-        } else {
+            boundsChanged();
+        } else if (isVerbose()) {
             System.out.println("Invalid width. Width must be positive.");
         }
     }
     
     public void setDimensions(double length, double width) {
         if (length > 0 && width > 0) {
-            System.out.printf("Changing dimensions from %.2f x %.2f to %.2f x %.2f%n", 
-                            this.length, this.width, length, width);
+            if (isVerbose()) {
+                System.out.printf("Changing dimensions from %.2f x %.2f to %.2f x %.2f%n", 
+                                this.length, this.width, length, width);
+            }
             this.length = length;
             this.width = width;
-        } else {
+            boundsChanged();
+        } else if (isVerbose()) {
             System.out.println("Invalid dimensions. Both length and width must be positive.");
         }
     }
@@ -118,7 +133,7 @@ public class Rectangle extends Shape {
     @Override
     public void display() {
         String shapeType = isSquare() ? "square" : "rectangle";
-        System.out.println("This is a " + color + " " + shapeType + " with dimensions " + 
+        System.out.println("This is a " + getColor() + " " + shapeType + " with dimensions " + 
                           length + " x " + width + " that is " + (filled ? "filled" : "not filled"));
     }
     
@@ -129,9 +144,12 @@ public class Rectangle extends Shape {
             double oldWidth = this.width;
             this.length *= factor;
             this.width *= factor;
-            System.out.printf("Rectangle scaled by factor %.2f: dimensions changed from %.2f x %.2f to %.2f x %.2f%n", 
-                            factor, oldLength, oldWidth, this.length, this.width);
-        } else {
+            boundsChanged();
+            if (isVerbose()) {
+                System.out.printf("Rectangle scaled by factor %.2f: dimensions changed from %.2f x %.2f to %.2f x %.2f%n", 
+                                factor, oldLength, oldWidth, this.length, this.width);
+            }
+        } else if (isVerbose()) {
             System.out.println("Scale factor must be positive!");
         }
     }
@@ -141,9 +159,12 @@ public class Rectangle extends Shape {
         if (factor > 0) {
             double oldLength = this.length;
             this.length *= factor;
-            System.out.printf("Length scaled by factor %.2f: changed from %.2f to %.2f%n", 
-                            factor, oldLength, this.length);
-        } else {
+            boundsChanged();
+            if (isVerbose()) {
+                System.out.printf("Length scaled by factor %.2f: changed from %.2f to %.2f%n", 
+                                factor, oldLength, this.length);
+            }
+        } else if (isVerbose()) {
             System.out.println("Scale factor must be positive!");
         }
     }
@@ -153,9 +174,12 @@ public class Rectangle extends Shape {
         if (factor > 0) {
             double oldWidth = this.width;
             this.width *= factor;
-            System.out.printf("Width scaled by factor %.2f: changed from %.2f to %.2f%n", 
-                            factor, oldWidth, this.width);
-        } else {
+            boundsChanged();
+            if (isVerbose()) {
+                System.out.printf("Width scaled by factor %.2f: changed from %.2f to %.2f%n", 
+                                factor, oldWidth, this.width);
+            }
+        } else if (isVerbose()) {
             System.out.println("Scale factor must be positive!");
         }
     }
@@ -169,13 +193,13 @@ public class Rectangle extends Shape {
     public boolean equals(Rectangle other) {
         return Math.abs(this.length - other.length) < 0.001 && 
                Math.abs(this.width - other.width) < 0.001 &&
-               this.color.equals(other.color) && 
+               this.getColorId() == other.getColorId() && 
                this.filled == other.filled;
     }
     
     // Method to create a copy of the rectangle
     public Rectangle copy() {
-        return new Rectangle(this.length, this.width, this.color, this.filled);
+        return new Rectangle(this.length, this.width, getColor(), this.filled);
     }
     
     // Method to rotate the rectangle (swap length and width)
@@ -183,13 +207,16 @@ public class Rectangle extends Shape {
         double temp = this.length;
         this.length = this.width;
         this.width = temp;
-        System.out.printf("Rectangle rotated. New dimensions: %.2f x %.2f%n", length, width);
+        boundsChanged();
+        if (isVerbose()) {
+            System.out.printf("Rectangle rotated. New dimensions: %.2f x %.2f%n", length, width);
+        }
     }
     
     // toString method for easy printing
     @Override
     public String toString() {
         return String.format("Rectangle[length=%.2f, width=%.2f, color=%s, filled=%s, area=%.2f]", 
-                           length, width, color, filled, calculateArea());
+                           length, width, getColor(), filled, calculateArea());
     }
 }
\ No newline at end of file
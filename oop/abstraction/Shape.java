@@ -4,16 +4,68 @@
  * This class cannot be instantiated directly but provides a blueprint for specific shapes
  * Part of the Java Basics and OOP Tutorial
  */
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.WeakReference;
+import java.util.concurrent.ConcurrentHashMap;
+
 public abstract class Shape {
+    // The color is kept as its ColorRegistry id: a short instead of a String reference
+    // makes every Circle and Rectangle 8 bytes smaller, and shares one String per color
+    private final short colorId;
     // Protected fields that subclasses can access
-    protected String color;
     protected boolean filled;
+
+    // Set while the shape is placed in a ShapeScene, so that size changes re-index it there
+    ShapeScene scene;
+    int sceneSlot = -1;
+
+    // When false, constructors and setters stop printing what they do (bulk work, benchmarks)
+    private static volatile boolean verbose = true;
+
+    // Names of the colors that did not fit into ColorRegistry (colorId == OTHER), keyed weakly
+    // by shape identity: empty until the registry is full, and it never keeps a shape alive
+    private static final ConcurrentHashMap<ShapeKey, String> OTHER_COLORS = new ConcurrentHashMap<>();
+    private static final ReferenceQueue<Shape> COLLECTED = new ReferenceQueue<>();
+
+    private static final class ShapeKey extends WeakReference<Shape> {
+        private final int hash;
+
+        ShapeKey(Shape shape, ReferenceQueue<Shape> queue) {
+            super(shape, queue);
+            this.hash = System.identityHashCode(shape);
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+
+        @Override
+        public boolean equals(Object other) {
+            if (this == other) {
+                return true;
+            }
+            Shape shape = get();
+            return shape != null && other instanceof ShapeKey && ((ShapeKey) other).get() == shape;
+        }
+    }
     
-    // Constructor for the abstract class
+    // Constructor for the abstract class. Any color name is accepted: the first
+    // ColorRegistry.MAX_COLORS - 2 distinct names are stored as registry ids, later new
+    // names as ColorRegistry.OTHER plus the name kept on the side for this shape
     public Shape(String color, boolean filled) {
-        this.color = color;
+        int id = ColorRegistry.idOf(color);
+        this.colorId = (short) id;
+        if (id == ColorRegistry.OTHER) {
+            for (Object gone; (gone = COLLECTED.poll()) != null; ) {
+                OTHER_COLORS.remove(gone);
+            }
+            OTHER_COLORS.put(new ShapeKey(this, COLLECTED), color);
+        }
         this.filled = filled;
-        System.out.println("Shape constructor called - Color: " + color + ", Filled: " + filled);
+        if (isVerbose()) {
+            System.out.println("Shape constructor called - Color: " + color + ", Filled: " + filled);
+        }
     }
     
     // Default constructor
@@ -23,10 +75,40 @@ public abstract class Shape {
     
     // Concrete method - shared by all subclasses
     public void display() {
-        System.out.println("This is a " + color + " shape that is " + 
+        System.out.println("This is a " + getColor() + " shape that is " + 
                           (filled ? "filled" : "not filled"));
     }
 
+    public static void setVerbose(boolean enabled) {
+        verbose = enabled;
+    }
+
+    public static boolean isVerbose() {
+        return verbose;
+    }
+
+    public String getColor() {
+        int id = getColorId();
+        return id == ColorRegistry.OTHER ? OTHER_COLORS.get(new ShapeKey(this, null)) : ColorRegistry.nameOf(id);
+    }
+
+    // The color's ColorRegistry id, for grouping and filtering shapes by color
+    // (ColorRegistry.OTHER for a color that did not fit into the registry: use getColor())
+    public int getColorId() {
+        return colorId & 0xFFFF;
+    }
+
+    public boolean isFilled() {
+        return filled;
+    }
+
+    // Subclasses call this after every change to their size
+    protected void boundsChanged() {
+        if (scene != null) {
+            scene.boundsChanged(this);
+        }
+    }
+
     // Abstract method - must be implemented by subclasses
     public abstract double calculateArea();
 
@@ -0,0 +1,227 @@
+/**
+ * ShapeBatch.java
+ * Many circles and rectangles stored as plain arrays of numbers ("structure of arrays")
+ * instead of one object per shape: all radii in one array, all lengths and widths in two
+ * more. Summing the areas of millions of shapes then walks straight through memory with
+ * no virtual calls, and the simple per-shape loops can be compiled to SIMD instructions
+ * by the JIT.
+ *
+ * Circles and rectangles are numbered separately, in the order they were added.
+ * Part of the Java Basics and OOP Tutorial
+ */
+import java.util.Arrays;
+import java.util.Collection;
+
+public class ShapeBatch {
+    private double[] radii;
+    private int circleCount;
+    private double[] lengths;
+    private double[] widths;
+    private int rectangleCount;
+
+    public ShapeBatch() {
+        this(16, 16);
+    }
+
+    public ShapeBatch(int circleCapacity, int rectangleCapacity) {
+        radii = new double[Math.max(1, circleCapacity)];
+        lengths = new double[Math.max(1, rectangleCapacity)];
+        widths = new double[Math.max(1, rectangleCapacity)];
+    }
+
+    // Copies the dimensions of existing Circle and Rectangle objects into a new batch
+    public static ShapeBatch of(Collection<? extends Shape> shapes) {
+        int circles = 0;
+        for (Shape shape : shapes) {
+            if (shape instanceof Circle) {
+                circles++;
+            }
+        }
+        ShapeBatch batch = new ShapeBatch(circles, shapes.size() - circles);
+        for (Shape shape : shapes) {
+            batch.add(shape);
+        }
+        return batch;
+    }
+
+    // ---- Adding shapes ----
+
+    // Returns the new circle's index
+    public int addCircle(double radius) {
+        if (!(radius > 0)) {
+            throw new IllegalArgumentException("Radius must be positive: " + radius);
+        }
+        if (circleCount == radii.length) {
+            radii = Arrays.copyOf(radii, circleCount * 2);
+        }
+        radii[circleCount] = radius;
+        return circleCount++;
+    }
+
+    // Returns the new rectangle's index
+    public int addRectangle(double length, double width) {
+        if (!(length > 0) || !(width > 0)) {
+            throw new IllegalArgumentException("Dimensions must be positive: " + length + " x " + width);
+        }
+        if (rectangleCount == lengths.length) {
+            lengths = Arrays.copyOf(lengths, rectangleCount * 2);
+            widths = Arrays.copyOf(widths, rectangleCount * 2);
+        }
+        lengths[rectangleCount] = length;
+        widths[rectangleCount] = width;
+        return rectangleCount++;
+    }
+
+    // Adds a copy of a Circle's or Rectangle's dimensions
+    public void add(Shape shape) {
+        if (shape instanceof Circle) {
+            addCircle(((Circle) shape).getRadius());
+        } else if (shape instanceof Rectangle) {
+            Rectangle rectangle = (Rectangle) shape;
+            addRectangle(rectangle.getLength(), rectangle.getWidth());
+        } else {
+            throw new IllegalArgumentException("Unsupported shape: " + shape.getClass().getName());
+        }
+    }
+
+    public void clear() {
+        circleCount = 0;
+        rectangleCount = 0;
+    }
+
+    // ---- Access ----
+
+    public int size() {
+        return circleCount + rectangleCount;
+    }
+
+    public int getCircleCount() {
+        return circleCount;
+    }
+
+    public int getRectangleCount() {
+        return rectangleCount;
+    }
+
+    public double getRadius(int circle) {
+        checkIndex(circle, circleCount);
+        return radii[circle];
+    }
+
+    public double getLength(int rectangle) {
+        checkIndex(rectangle, rectangleCount);
+        return lengths[rectangle];
+    }
+
+    public double getWidth(int rectangle) {
+        checkIndex(rectangle, rectangleCount);
+        return widths[rectangle];
+    }
+
+    // ---- Totals ----
+
+    public double totalArea() {
+        return Math.PI * sumOfProducts(radii, radii, circleCount) + sumOfProducts(lengths, widths, rectangleCount);
+    }
+
+    public double totalPerimeter() {
+        return 2 * Math.PI * sum(radii, circleCount) + 2 * (sum(lengths, rectangleCount) + sum(widths, rectangleCount));
+    }
+
+    public double totalCircleArea() {
+        return Math.PI * sumOfProducts(radii, radii, circleCount);
+    }
+
+    public double totalRectangleArea() {
+        return sumOfProducts(lengths, widths, rectangleCount);
+    }
+
+    // ---- Per-shape results ----
+    // Each fills 'out' from index 0 and gives the same values as calculateArea() and
+    // calculatePerimeter() on the matching Circle or Rectangle object
+
+    public void circleAreas(double[] out) {
+        checkOutput(out, circleCount);
+        double[] r = radii;
+        for (int i = 0; i < circleCount; i++) {
+            out[i] = Math.PI * r[i] * r[i];
+        }
+    }
+
+    public void circlePerimeters(double[] out) {
+        checkOutput(out, circleCount);
+        double[] r = radii;
+        for (int i = 0; i < circleCount; i++) {
+            out[i] = 2 * Math.PI * r[i];
+        }
+    }
+
+    public void rectangleAreas(double[] out) {
+        checkOutput(out, rectangleCount);
+        double[] l = lengths;
+        double[] w = widths;
+        for (int i = 0; i < rectangleCount; i++) {
+            out[i] = l[i] * w[i];
+        }
+    }
+
+    public void rectanglePerimeters(double[] out) {
+        checkOutput(out, rectangleCount);
+        double[] l = lengths;
+        double[] w = widths;
+        for (int i = 0; i < rectangleCount; i++) {
+            out[i] = 2 * (l[i] + w[i]);
+        }
+    }
+
+    // Sums with four independent accumulators: the JIT keeps a single running sum in strict
+    // order, which makes every addition wait for the previous one. The result can differ
+    // from a one-by-one sum in the last bits.
+    private static double sum(double[] a, int count) {
+        double s0 = 0;
+        double s1 = 0;
+        double s2 = 0;
+        double s3 = 0;
+        int i = 0;
+        for (; i + 3 < count; i += 4) {
+            s0 += a[i];
+            s1 += a[i + 1];
+            s2 += a[i + 2];
+            s3 += a[i + 3];
+        }
+        for (; i < count; i++) {
+            s0 += a[i];
+        }
+        return (s0 + s1) + (s2 + s3);
+    }
+
+    private static double sumOfProducts(double[] a, double[] b, int count) {
+        double s0 = 0;
+        double s1 = 0;
+        double s2 = 0;
+        double s3 = 0;
+        int i = 0;
+        for (; i + 3 < count; i += 4) {
+            s0 += a[i] * b[i];
+            s1 += a[i + 1] * b[i + 1];
+            s2 += a[i + 2] * b[i + 2];
+            s3 += a[i + 3] * b[i + 3];
+        }
+        for (; i < count; i++) {
+            s0 += a[i] * b[i];
+        }
+        return (s0 + s1) + (s2 + s3);
+    }
+
+    private static void checkIndex(int index, int count) {
+        if (index < 0 || index >= count) {
+            throw new IndexOutOfBoundsException("Index " + index + ", size " + count);
+        }
+    }
+
+    private static void checkOutput(double[] out, int count) {
+        if (out.length < count) {
+            throw new IllegalArgumentException("Output array too short: " + out.length + " < " + count);
+        }
+    }
+}
@@ -0,0 +1,292 @@
+/**
+ * ShapeFile.java
+ * Reads a binary shape file (written by ShapeFileWriter) through memory mapping. Opening
+ * reads only the header and the color dictionary, so it takes the same time for a hundred
+ * shapes as for a hundred million. Area, perimeter and color queries read the mapped bytes
+ * directly; no Circle or Rectangle objects are created unless toShape() asks for one.
+ *
+ * File layout (little-endian):
+ *   header, 32 bytes  - int magic "SHPF", int version, long shape count,
+ *                       long dictionary offset, int record size, int unused
+ *   records           - one 20-byte record per shape, in the order they were written:
+ *                       byte kind (1 = circle, 2 = rectangle), byte flags (bit 0 = filled),
+ *                       short color id, double radius or length, double width (0 for circles)
+ *   color dictionary  - int color count, then per color: short UTF-8 length (-1 for a
+ *                       null color) and the UTF-8 bytes; a color's id is its position
+ *
+ * Records have a fixed size, so shape i is found by arithmetic instead of by scanning.
+ * Files over 2 GB are mapped as several regions. The mapping stays valid until the reader
+ * is garbage collected, even after close().
+ * Part of the Java Basics and OOP Tutorial
+ */
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+public class ShapeFile implements AutoCloseable {
+    static final int MAGIC = 0x53485046; // "SHPF"
+    static final int VERSION = 1;
+    static final int HEADER_SIZE = 32;
+    static final int RECORD_SIZE = 20;
+    static final int MAX_COLORS = 1 << 16;
+
+    public static final byte CIRCLE = 1;
+    public static final byte RECTANGLE = 2;
+    static final byte FILLED = 1;
+
+    // Record field offsets
+    static final int KIND = 0;
+    static final int FLAGS = 1;
+    static final int COLOR = 2;
+    static final int FIRST = 4;
+    static final int SECOND = 12;
+
+    // Records per mapped region: a power of two, so a record's region is a shift away
+    private static final int REGION_SHIFT = 26;
+    private static final long REGION_RECORDS = 1L << REGION_SHIFT;
+    private static final long REGION_MASK = REGION_RECORDS - 1;
+
+    private final FileChannel channel;
+    private final long size;
+    private final String[] colors;
+    private final MappedByteBuffer[] regions;
+
+    private ShapeFile(FileChannel channel, long size, String[] colors, MappedByteBuffer[] regions) {
+        this.channel = channel;
+        this.size = size;
+        this.colors = colors;
+        this.regions = regions;
+    }
+
+    public static ShapeFile open(Path file) throws IOException {
+        FileChannel channel = FileChannel.open(file, StandardOpenOption.READ);
+        try {
+            ByteBuffer header = readFully(channel, 0, HEADER_SIZE);
+            if (header.getInt() != MAGIC) {
+                throw new IOException("Not a shape file: " + file);
+            }
+            int version = header.getInt();
+            if (version != VERSION) {
+                throw new IOException("Unsupported shape file version " + version + ": " + file);
+            }
+            long count = header.getLong();
+            long dictionaryOffset = header.getLong();
+            int recordSize = header.getInt();
+            if (recordSize != RECORD_SIZE || count < 0 || count > (channel.size() - HEADER_SIZE) / RECORD_SIZE
+                    || dictionaryOffset != HEADER_SIZE + count * RECORD_SIZE || dictionaryOffset + 4 > channel.size()) {
+                throw new IOException("Corrupt shape file header: " + file);
+            }
+            String[] colors = readDictionary(channel, dictionaryOffset);
+
+            MappedByteBuffer[] regions = new MappedByteBuffer[(int) ((count + REGION_RECORDS - 1) >>> REGION_SHIFT)];
+            for (int r = 0; r < regions.length; r++) {
+                long first = (long) r << REGION_SHIFT;
+                long records = Math.min(REGION_RECORDS, count - first);
+                regions[r] = channel.map(FileChannel.MapMode.READ_ONLY, HEADER_SIZE + first * RECORD_SIZE,
+                                         records * RECORD_SIZE);
+                regions[r].order(ByteOrder.LITTLE_ENDIAN);
+            }
+            return new ShapeFile(channel, count, colors, regions);
+        } catch (IOException | RuntimeException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    public long size() {
+        return size;
+    }
+
+    // The color dictionary; a record's color id is an index into it
+    public String[] getColors() {
+        return colors.clone();
+    }
+
+    // ---- One shape ----
+
+    public byte getKind(long index) {
+        return region(index).get(offset(index) + KIND);
+    }
+
+    public boolean isFilled(long index) {
+        return (region(index).get(offset(index) + FLAGS) & FILLED) != 0;
+    }
+
+    public int getColorId(long index) {
+        return region(index).getShort(offset(index) + COLOR) & 0xFFFF;
+    }
+
+    public String getColor(long index) {
+        return colors[getColorId(index)];
+    }
+
+    public double getRadius(long index) {
+        checkKind(index, CIRCLE);
+        return region(index).getDouble(offset(index) + FIRST);
+    }
+
+    public double getLength(long index) {
+        checkKind(index, RECTANGLE);
+        return region(index).getDouble(offset(index) + FIRST);
+    }
+
+    public double getWidth(long index) {
+        checkKind(index, RECTANGLE);
+        return region(index).getDouble(offset(index) + SECOND);
+    }
+
+    // Same result as calculateArea() on the shape the record was written from
+    public double calculateArea(long index) {
+        return area(region(index), offset(index));
+    }
+
+    public double calculatePerimeter(long index) {
+        return perimeter(region(index), offset(index));
+    }
+
+    // Creates the Circle or Rectangle a record describes
+    public Shape toShape(long index) {
+        ByteBuffer region = region(index);
+        int offset = offset(index);
+        String color = colors[region.getShort(offset + COLOR) & 0xFFFF];
+        boolean filled = (region.get(offset + FLAGS) & FILLED) != 0;
+        double first = region.getDouble(offset + FIRST);
+        switch (region.get(offset + KIND)) {
+            case CIRCLE:
+                return new Circle(first, color, filled);
+            case RECTANGLE:
+                return new Rectangle(first, region.getDouble(offset + SECOND), color, filled);
+            default:
+                throw new IllegalStateException("Unknown shape kind in record " + index);
+        }
+    }
+
+    // ---- Whole file ----
+
+    public double totalArea() {
+        double total = 0;
+        for (MappedByteBuffer region : regions) {
+            for (int offset = 0, end = region.limit(); offset < end; offset += RECORD_SIZE) {
+                total += area(region, offset);
+            }
+        }
+        return total;
+    }
+
+    public double totalPerimeter() {
+        double total = 0;
+        for (MappedByteBuffer region : regions) {
+            for (int offset = 0, end = region.limit(); offset < end; offset += RECORD_SIZE) {
+                total += perimeter(region, offset);
+            }
+        }
+        return total;
+    }
+
+    // Total area per color, indexed by color id (see getColors)
+    public double[] areaByColor() {
+        double[] areas = new double[colors.length];
+        for (MappedByteBuffer region : regions) {
+            for (int offset = 0, end = region.limit(); offset < end; offset += RECORD_SIZE) {
+                areas[region.getShort(offset + COLOR) & 0xFFFF] += area(region, offset);
+            }
+        }
+        return areas;
+    }
+
+    // Number of shapes with a larger area than 'area'
+    public long countLargerThan(double area) {
+        long count = 0;
+        for (MappedByteBuffer region : regions) {
+            for (int offset = 0, end = region.limit(); offset < end; offset += RECORD_SIZE) {
+                if (area(region, offset) > area) {
+                    count++;
+                }
+            }
+        }
+        return count;
+    }
+
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+
+    private static double area(ByteBuffer region, int offset) {
+        double first = region.getDouble(offset + FIRST);
+        if (region.get(offset + KIND) == CIRCLE) {
+            return Math.PI * first * first;
+        }
+        return first * region.getDouble(offset + SECOND);
+    }
+
+    private static double perimeter(ByteBuffer region, int offset) {
+        double first = region.getDouble(offset + FIRST);
+        if (region.get(offset + KIND) == CIRCLE) {
+            return 2 * Math.PI * first;
+        }
+        return 2 * (first + region.getDouble(offset + SECOND));
+    }
+
+    private ByteBuffer region(long index) {
+        if (index < 0 || index >= size) {
+            throw new IndexOutOfBoundsException("Shape " + index + ", file has " + size);
+        }
+        return regions[(int) (index >>> REGION_SHIFT)];
+    }
+
+    private static int offset(long index) {
+        return (int) (index & REGION_MASK) * RECORD_SIZE;
+    }
+
+    private void checkKind(long index, byte kind) {
+        if (getKind(index) != kind) {
+            throw new IllegalStateException("Shape " + index + " is not a " + (kind == CIRCLE ? "circle" : "rectangle"));
+        }
+    }
+
+    private static String[] readDictionary(FileChannel channel, long offset) throws IOException {
+        long length = channel.size() - offset;
+        if (length > Integer.MAX_VALUE) {
+            throw new IOException("Corrupt shape file: dictionary too large");
+        }
+        ByteBuffer dictionary = readFully(channel, offset, (int) length);
+        int count = dictionary.getInt();
+        if (count < 0 || count > MAX_COLORS) {
+            throw new IOException("Corrupt shape file: " + count + " colors");
+        }
+        String[] colors = new String[count];
+        try {
+            for (int i = 0; i < count; i++) {
+                int bytes = dictionary.getShort();
+                if (bytes < 0) {
+                    continue; // the null color
+                }
+                byte[] utf8 = new byte[bytes];
+                dictionary.get(utf8);
+                colors[i] = new String(utf8, StandardCharsets.UTF_8);
+            }
+        } catch (BufferUnderflowException e) {
+            throw new IOException("Corrupt shape file: dictionary is truncated", e);
+        }
+        return colors;
+    }
+
+    private static ByteBuffer readFully(FileChannel channel, long position, int length) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(length).order(ByteOrder.LITTLE_ENDIAN);
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer, position + buffer.position()) < 0) {
+                throw new EOFException("Shape file is truncated");
+            }
+        }
+        buffer.flip();
+        return buffer;
+    }
+}
@@ -0,0 +1,197 @@
+/**
+ * ShapeFileWriter.java
+ * Writes shapes into the binary shape file format described in ShapeFile. Shapes are
+ * buffered and appended one fixed-size record at a time; every new color gets the next
+ * id in the file's color dictionary (found through the shape's ColorRegistry id, so no
+ * String is hashed per shape). close() writes the dictionary and fills in the header,
+ * so a file is only readable after the writer has been closed.
+ * Part of the Java Basics and OOP Tutorial
+ */
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+public class ShapeFileWriter implements AutoCloseable {
+    private static final int BUFFER_RECORDS = 4096;
+
+    private final FileChannel channel;
+    private final ByteBuffer buffer =
+            ByteBuffer.allocateDirect(BUFFER_RECORDS * ShapeFile.RECORD_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+    // ColorRegistry id -> file color id + 1 (0 = not in this file yet)
+    private int[] fileColorIds = new int[16];
+    private final List<String> colors = new ArrayList<>();
+    // Name -> file color id for colors that did not fit into ColorRegistry (id OTHER)
+    private final Map<String, Integer> otherColorIds = new HashMap<>();
+    private long count;
+    private boolean closed;
+
+    private ShapeFileWriter(FileChannel channel) {
+        this.channel = channel;
+    }
+
+    // Creates (or replaces) a shape file
+    public static ShapeFileWriter create(Path file) throws IOException {
+        FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                                               StandardOpenOption.TRUNCATE_EXISTING);
+        channel.position(ShapeFile.HEADER_SIZE); // the header is written by close()
+        return new ShapeFileWriter(channel);
+    }
+
+    public void write(Shape shape) throws IOException {
+        int registryColorId = shape.getColorId();
+        String otherColor = registryColorId == ColorRegistry.OTHER ? shape.getColor() : null;
+        if (shape instanceof Circle) {
+            writeRecord(ShapeFile.CIRCLE, ((Circle) shape).getRadius(), 0, registryColorId, otherColor,
+                        shape.isFilled());
+        } else if (shape instanceof Rectangle) {
+            Rectangle rectangle = (Rectangle) shape;
+            writeRecord(ShapeFile.RECTANGLE, rectangle.getLength(), rectangle.getWidth(), registryColorId,
+                        otherColor, shape.isFilled());
+        } else {
+            throw new IllegalArgumentException("Unsupported shape: " + shape.getClass().getName());
+        }
+    }
+
+    public void writeAll(Shape[] shapes) throws IOException {
+        for (Shape shape : shapes) {
+            write(shape);
+        }
+    }
+
+    public void writeCircle(double radius, String color, boolean filled) throws IOException {
+        if (!(radius > 0)) {
+            throw new IllegalArgumentException("Radius must be positive: " + radius);
+        }
+        writeRecord(ShapeFile.CIRCLE, radius, 0, ColorRegistry.idOf(color), color, filled);
+    }
+
+    public void writeRectangle(double length, double width, String color, boolean filled) throws IOException {
+        if (!(length > 0) || !(width > 0)) {
+            throw new IllegalArgumentException("Dimensions must be positive: " + length + " x " + width);
+        }
+        writeRecord(ShapeFile.RECTANGLE, length, width, ColorRegistry.idOf(color), color, filled);
+    }
+
+    public long getShapeCount() {
+        return count;
+    }
+
+    // Writes the color dictionary and the header, then closes the file
+    @Override
+    public void close() throws IOException {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        try {
+            flush();
+            long dictionaryOffset = channel.position();
+            ByteBuffer dictionary = encodeDictionary();
+            while (dictionary.hasRemaining()) {
+                channel.write(dictionary);
+            }
+
+            ByteBuffer header = ByteBuffer.allocate(ShapeFile.HEADER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+            header.putInt(ShapeFile.MAGIC);
+            header.putInt(ShapeFile.VERSION);
+            header.putLong(count);
+            header.putLong(dictionaryOffset);
+            header.putInt(ShapeFile.RECORD_SIZE);
+            header.putInt(0);
+            header.flip();
+            while (header.hasRemaining()) {
+                channel.write(header, header.position());
+            }
+        } finally {
+            channel.close();
+        }
+    }
+
+    // 'color' is only read when registryColorId is ColorRegistry.OTHER
+    private void writeRecord(byte kind, double first, double second, int registryColorId, String color,
+                             boolean filled) throws IOException {
+        if (closed) {
+            throw new IllegalStateException("Shape file writer is closed");
+        }
+        int colorId = registryColorId == ColorRegistry.OTHER ? otherFileColorId(color) : fileColorId(registryColorId);
+        if (!buffer.hasRemaining()) {
+            flush();
+        }
+        buffer.put(kind);
+        buffer.put(filled ? ShapeFile.FILLED : 0);
+        buffer.putShort((short) colorId);
+        buffer.putDouble(first);
+        buffer.putDouble(second);
+        count++;
+    }
+
+    private int fileColorId(int registryColorId) {
+        if (registryColorId >= fileColorIds.length) {
+            fileColorIds = Arrays.copyOf(fileColorIds, Math.max(registryColorId + 1, fileColorIds.length * 2));
+        }
+        if (fileColorIds[registryColorId] == 0) {
+            fileColorIds[registryColorId] = addColor(ColorRegistry.nameOf(registryColorId)) + 1;
+        }
+        return fileColorIds[registryColorId] - 1;
+    }
+
+    private int otherFileColorId(String color) {
+        Integer id = otherColorIds.get(color);
+        if (id == null) {
+            id = addColor(color);
+            otherColorIds.put(color, id);
+        }
+        return id;
+    }
+
+    // Appends a color to the file's dictionary and returns its file color id
+    private int addColor(String color) {
+        if (colors.size() == ShapeFile.MAX_COLORS) {
+            throw new IllegalStateException("A shape file holds at most " + ShapeFile.MAX_COLORS + " colors");
+        }
+        colors.add(color);
+        return colors.size() - 1;
+    }
+
+    private void flush() throws IOException {
+        buffer.flip();
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+        buffer.clear();
+    }
+
+    private ByteBuffer encodeDictionary() {
+        List<byte[]> encoded = new ArrayList<>(colors.size());
+        int length = 4;
+        for (String color : colors) {
+            byte[] utf8 = color == null ? null : color.getBytes(StandardCharsets.UTF_8);
+            if (utf8 != null && utf8.length > Short.MAX_VALUE) {
+                throw new IllegalStateException("Color name too long: " + color.substring(0, 40) + "...");
+            }
+            encoded.add(utf8);
+            length += 2 + (utf8 == null ? 0 : utf8.length);
+        }
+        ByteBuffer dictionary = ByteBuffer.allocate(length).order(ByteOrder.LITTLE_ENDIAN);
+        dictionary.putInt(colors.size());
+        for (byte[] utf8 : encoded) {
+            if (utf8 == null) {
+                dictionary.putShort((short) -1);
+            } else {
+                dictionary.putShort((short) utf8.length);
+                dictionary.put(utf8);
+            }
+        }
+        dictionary.flip();
+        return dictionary;
+    }
+}
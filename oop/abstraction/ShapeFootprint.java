@@ -0,0 +1,108 @@
+/**
+ * ShapeFootprint.java
+ * Measures how much heap 10 million shapes take, with colors stored as ColorRegistry ids
+ * (the Shape classes as they are now) and with colors stored as a String per shape (the
+ * previous Shape layout, rebuilt here as LegacyCircle and LegacyRectangle).
+ *
+ * Each layout is measured twice: with color names that are shared String constants, and
+ * with a new String per shape, as happens when shapes are parsed from a file or a request.
+ * The heap is measured after a full GC before and after creating the shapes; the result
+ * includes the 4-byte slot each shape takes in the array that holds it.
+ *
+ * Run:  javac *.java && java -Xmx4g ShapeFootprint [shapes]
+ * Part of the Java Basics and OOP Tutorial
+ */
+public class ShapeFootprint {
+    private static final String[] COLORS = { "Red", "Blue", "Green", "Yellow", "Black", "White" };
+
+    // The fields Shape, Circle and Rectangle had while the color was a String
+    private abstract static class LegacyShape {
+        protected String color;
+        protected boolean filled;
+        ShapeScene scene;
+        int sceneSlot = -1;
+
+        LegacyShape(String color, boolean filled) {
+            this.color = color;
+            this.filled = filled;
+        }
+    }
+
+    private static final class LegacyCircle extends LegacyShape {
+        private final double radius;
+
+        LegacyCircle(double radius, String color, boolean filled) {
+            super(color, filled);
+            this.radius = radius;
+        }
+    }
+
+    private static final class LegacyRectangle extends LegacyShape {
+        private final double length;
+        private final double width;
+
+        LegacyRectangle(double length, double width, String color, boolean filled) {
+            super(color, filled);
+            this.length = length;
+            this.width = width;
+        }
+    }
+
+    public static void main(String[] args) {
+        int count = args.length > 0 ? Integer.parseInt(args[0]) : 10_000_000;
+        Shape.setVerbose(false);
+
+        System.out.printf("%,d shapes, half circles and half rectangles%n", count);
+        System.out.printf("%-22s %20s %17s%n", "layout", "shared colors", "parsed colors");
+        System.out.printf("%-22s %13.1f B/shape %10.1f B/shape%n", "String per shape",
+                measureLegacy(count, false), measureLegacy(count, true));
+        System.out.printf("%-22s %13.1f B/shape %10.1f B/shape%n", "ColorRegistry id",
+                measureCurrent(count, false), measureCurrent(count, true));
+    }
+
+    private static double measureCurrent(int count, boolean parsed) {
+        long before = usedHeap();
+        Shape[] shapes = new Shape[count];
+        for (int i = 0; i < count; i++) {
+            String color = color(i, parsed);
+            shapes[i] = i % 2 == 0
+                    ? new Circle(1 + i % 7, color, true)
+                    : new Rectangle(1 + i % 5, 2, color, false);
+        }
+        long after = usedHeap();
+        // keep the array reachable until after the measurement
+        return shapes[count - 1] == null ? 0 : (after - before) / (double) count;
+    }
+
+    private static double measureLegacy(int count, boolean parsed) {
+        long before = usedHeap();
+        LegacyShape[] shapes = new LegacyShape[count];
+        for (int i = 0; i < count; i++) {
+            String color = color(i, parsed);
+            shapes[i] = i % 2 == 0
+                    ? new LegacyCircle(1 + i % 7, color, true)
+                    : new LegacyRectangle(1 + i % 5, 2, color, false);
+        }
+        long after = usedHeap();
+        return shapes[count - 1] == null ? 0 : (after - before) / (double) count;
+    }
+
+    private static String color(int i, boolean parsed) {
+        String color = COLORS[i % COLORS.length];
+        return parsed ? new String(color.toCharArray()) : color;
+    }
+
+    private static long usedHeap() {
+        Runtime runtime = Runtime.getRuntime();
+        for (int i = 0; i < 3; i++) {
+            System.gc();
+            try {
+                Thread.sleep(50);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                break;
+            }
+        }
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+}
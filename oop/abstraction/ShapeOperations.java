@@ -0,0 +1,426 @@
+/**
+ * ShapeOperations.java
+ * Bulk operations over arrays of shapes, run on a work-stealing fork/join pool:
+ *   scaleAll / rotateAll / copyAll  - apply scale(), rotate() or copy() to every shape
+ *   filterLargerThan                - the shapes with a larger area than a reference shape
+ *   filterByColor                   - the shapes of one color
+ *   areaByColor                     - total area per color
+ *   findLargest                     - the shape with the largest area
+ *
+ * The array is cut into chunks of at most splitThreshold shapes; each chunk is one task
+ * that idle workers can steal. Chunks write into primitive arrays (counts, areas), so no
+ * Double or Integer objects are created per shape. Color work compares ColorRegistry ids.
+ *
+ * A ShapeScene is not thread-safe, so scaleAll and rotateAll change the shapes placed in a
+ * scene without telling it, and re-index them on the calling thread once all workers are
+ * done. Nothing else may use those scenes while the operation runs.
+ *
+ * Tip: call Shape.setVerbose(false) first - otherwise every scale() and rotate() prints a
+ * line and the workers spend their time waiting for the console.
+ * Part of the Java Basics and OOP Tutorial
+ */
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.function.Predicate;
+
+public class ShapeOperations implements AutoCloseable {
+    private final ForkJoinPool pool;
+    private final int splitThreshold;
+
+    // parallelism = number of worker threads; splitThreshold = shapes per task that is not split further
+    public ShapeOperations(int parallelism, int splitThreshold) {
+        if (parallelism < 1 || splitThreshold < 1) {
+            throw new IllegalArgumentException("parallelism and splitThreshold must be at least 1");
+        }
+        this.pool = new ForkJoinPool(parallelism);
+        this.splitThreshold = splitThreshold;
+    }
+
+    public ShapeOperations() {
+        this(Runtime.getRuntime().availableProcessors(), 4096);
+    }
+
+    public int getParallelism() {
+        return pool.getParallelism();
+    }
+
+    public int getSplitThreshold() {
+        return splitThreshold;
+    }
+
+    // ---- Changing shapes ----
+
+    public void scaleAll(Shape[] shapes, final double factor) {
+        if (!(factor > 0)) {
+            throw new IllegalArgumentException("Scale factor must be positive: " + factor);
+        }
+        // Reject the whole array before changing anything: a worker that fails half-way would
+        // leave shapes resized but not re-indexed in their scene
+        for (Shape shape : shapes) {
+            if (!(shape instanceof Circle) && !(shape instanceof Rectangle)) {
+                throw unsupported(shape);
+            }
+        }
+        changeAll(shapes, new ShapeChange() {
+            @Override
+            public boolean apply(Shape shape) {
+                scale(shape, factor);
+                return true;
+            }
+        });
+    }
+
+    // Rotates every Rectangle (swaps length and width); circles look the same after rotation
+    public void rotateAll(Shape[] shapes) {
+        changeAll(shapes, new ShapeChange() {
+            @Override
+            public boolean apply(Shape shape) {
+                if (shape instanceof Rectangle) {
+                    ((Rectangle) shape).rotate();
+                    return true;
+                }
+                return false;
+            }
+        });
+    }
+
+    public Shape[] copyAll(final Shape[] shapes) {
+        final Shape[] copies = new Shape[shapes.length];
+        run(shapes.length, new ChunkBody() {
+            @Override
+            public void run(int chunk, int from, int to) {
+                for (int i = from; i < to; i++) {
+                    Shape shape = shapes[i];
+                    if (shape instanceof Circle) {
+                        copies[i] = ((Circle) shape).copy();
+                    } else if (shape instanceof Rectangle) {
+                        copies[i] = ((Rectangle) shape).copy();
+                    } else {
+                        throw unsupported(shape);
+                    }
+                }
+            }
+        });
+        return copies;
+    }
+
+    // ---- Queries ----
+
+    // The shapes whose area is larger than the reference shape's, in their original order.
+    // Matches Circle.isLargerThan and Rectangle.isLargerThan, which also compare by area.
+    public Shape[] filterLargerThan(Shape[] shapes, Shape reference) {
+        final double limit = reference.calculateArea();
+        return filter(shapes, new Predicate<Shape>() {
+            @Override
+            public boolean test(Shape shape) {
+                return shape.calculateArea() > limit;
+            }
+        });
+    }
+
+    // The shapes of one color, in their original order
+    public Shape[] filterByColor(Shape[] shapes, final String color) {
+        final int colorId = ColorRegistry.find(color);
+        if (colorId < 0) {
+            if (ColorRegistry.size() < ColorRegistry.OTHER) {
+                return new Shape[0]; // no shape has ever had this color
+            }
+            // the registry is full: the color may be kept on the side of OTHER shapes
+            return filter(shapes, new Predicate<Shape>() {
+                @Override
+                public boolean test(Shape shape) {
+                    return shape.getColorId() == ColorRegistry.OTHER && color.equals(shape.getColor());
+                }
+            });
+        }
+        return filter(shapes, new Predicate<Shape>() {
+            @Override
+            public boolean test(Shape shape) {
+                return shape.getColorId() == colorId;
+            }
+        });
+    }
+
+    private Shape[] filter(final Shape[] shapes, final Predicate<Shape> test) {
+        final Shape[][] matches = new Shape[chunkCount(shapes.length)][];
+        final int[] counts = new int[matches.length];
+        run(shapes.length, new ChunkBody() {
+            @Override
+            public void run(int chunk, int from, int to) {
+                Shape[] found = new Shape[to - from];
+                int count = 0;
+                for (int i = from; i < to; i++) {
+                    if (test.test(shapes[i])) {
+                        found[count++] = shapes[i];
+                    }
+                }
+                matches[chunk] = found;
+                counts[chunk] = count;
+            }
+        });
+
+        // Chunks are in array order, so appending them keeps the original order
+        int total = 0;
+        for (int count : counts) {
+            total += count;
+        }
+        Shape[] result = new Shape[total];
+        int position = 0;
+        for (int chunk = 0; chunk < matches.length; chunk++) {
+            System.arraycopy(matches[chunk], 0, result, position, counts[chunk]);
+            position += counts[chunk];
+        }
+        return result;
+    }
+
+    // Sum of the areas of the shapes of each color
+    public ColorAreas areaByColor(final Shape[] shapes) {
+        final ColorAreas[] partial = new ColorAreas[chunkCount(shapes.length)];
+        run(shapes.length, new ChunkBody() {
+            @Override
+            public void run(int chunk, int from, int to) {
+                ColorAreas areas = new ColorAreas();
+                for (int i = from; i < to; i++) {
+                    areas.add(shapes[i].getColorId(), shapes[i].calculateArea(), 1);
+                }
+                partial[chunk] = areas;
+            }
+        });
+        ColorAreas result = new ColorAreas();
+        for (ColorAreas areas : partial) {
+            result.addAll(areas);
+        }
+        return result;
+    }
+
+    // The shape with the largest area (the first one on a tie), or null for an empty array
+    public Shape findLargest(final Shape[] shapes) {
+        final int[] best = new int[chunkCount(shapes.length)];
+        final double[] bestArea = new double[best.length];
+        run(shapes.length, new ChunkBody() {
+            @Override
+            public void run(int chunk, int from, int to) {
+                int index = from;
+                double max = shapes[from].calculateArea();
+                for (int i = from + 1; i < to; i++) {
+                    double area = shapes[i].calculateArea();
+                    if (area > max) {
+                        max = area;
+                        index = i;
+                    }
+                }
+                best[chunk] = index;
+                bestArea[chunk] = max;
+            }
+        });
+        if (best.length == 0) {
+            return null;
+        }
+        int winner = 0;
+        for (int chunk = 1; chunk < best.length; chunk++) {
+            if (bestArea[chunk] > bestArea[winner]) {
+                winner = chunk;
+            }
+        }
+        return shapes[best[winner]];
+    }
+
+    @Override
+    public void close() {
+        pool.shutdown();
+    }
+
+    // ---- Fork/join plumbing ----
+
+    // Changes one shape; returns whether its size may have changed
+    private interface ShapeChange {
+        boolean apply(Shape shape);
+    }
+
+    // Applies 'change' to every shape in parallel. Shapes placed in a ShapeScene are detached
+    // from it while they change, so workers never touch a scene; each chunk lists them, and
+    // they are re-indexed here afterwards, one at a time. 'change' must not throw.
+    private void changeAll(final Shape[] shapes, final ShapeChange change) {
+        final Shape[][] placed = new Shape[chunkCount(shapes.length)][];
+        final int[] counts = new int[placed.length];
+        run(shapes.length, new ChunkBody() {
+            @Override
+            public void run(int chunk, int from, int to) {
+                Shape[] found = null;
+                int count = 0;
+                for (int i = from; i < to; i++) {
+                    Shape shape = shapes[i];
+                    ShapeScene scene = shape == null ? null : shape.scene;
+                    if (scene == null) {
+                        change.apply(shape);
+                        continue;
+                    }
+                    shape.scene = null;
+                    boolean changed;
+                    try {
+                        changed = change.apply(shape);
+                    } finally {
+                        shape.scene = scene;
+                    }
+                    if (changed) {
+                        if (found == null) {
+                            found = new Shape[to - i];
+                        }
+                        found[count++] = shape;
+                    }
+                }
+                placed[chunk] = found;
+                counts[chunk] = count;
+            }
+        });
+        for (int chunk = 0; chunk < placed.length; chunk++) {
+            for (int i = 0; i < counts[chunk]; i++) {
+                Shape shape = placed[chunk][i];
+                shape.scene.boundsChanged(shape);
+            }
+        }
+    }
+
+    // Work on shapes [from, to), which is chunk number 'chunk'
+    private interface ChunkBody {
+        void run(int chunk, int from, int to);
+    }
+
+    private int chunkCount(int size) {
+        return (int) ((size + (long) splitThreshold - 1) / splitThreshold);
+    }
+
+    private void run(int size, ChunkBody body) {
+        int chunks = chunkCount(size);
+        if (chunks > 1 && pool.getParallelism() > 1) {
+            pool.invoke(new ChunkTask(body, size, 0, chunks));
+            return;
+        }
+        // One chunk, or one worker: handing the work to the pool would only add a thread switch
+        for (int chunk = 0; chunk < chunks; chunk++) {
+            int from = chunk * splitThreshold;
+            body.run(chunk, from, Math.min(size, from + splitThreshold));
+        }
+    }
+
+    // Runs chunks [firstChunk, endChunk), halving the range so idle workers can steal one half
+    private final class ChunkTask extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+        private final ChunkBody body;
+        private final int size;
+        private final int firstChunk;
+        private final int endChunk;
+
+        ChunkTask(ChunkBody body, int size, int firstChunk, int endChunk) {
+            this.body = body;
+            this.size = size;
+            this.firstChunk = firstChunk;
+            this.endChunk = endChunk;
+        }
+
+        @Override
+        protected void compute() {
+            if (endChunk - firstChunk == 1) {
+                int from = firstChunk * splitThreshold;
+                body.run(firstChunk, from, Math.min(size, from + splitThreshold));
+                return;
+            }
+            int middle = (firstChunk + endChunk) >>> 1;
+            invokeAll(new ChunkTask(body, size, firstChunk, middle), new ChunkTask(body, size, middle, endChunk));
+        }
+    }
+
+    private static void scale(Shape shape, double factor) {
+        if (shape instanceof Circle) {
+            ((Circle) shape).scale(factor);
+        } else if (shape instanceof Rectangle) {
+            ((Rectangle) shape).scale(factor);
+        } else {
+            throw unsupported(shape);
+        }
+    }
+
+    private static IllegalArgumentException unsupported(Shape shape) {
+        return new IllegalArgumentException("Unsupported shape: " + (shape == null ? "null" : shape.getClass().getName()));
+    }
+
+    // Total area and shape count per color, in arrays indexed by ColorRegistry id
+    // instead of a HashMap<String, Double>, so adding to a total boxes nothing.
+    // Colors that did not fit into the registry are added up under ColorRegistry.OTHER_NAME
+    public static class ColorAreas {
+        private double[] areas = new double[ColorRegistry.size()];
+        private int[] counts = new int[ColorRegistry.size()];
+
+        ColorAreas() {
+        }
+
+        void add(int colorId, double area, int count) {
+            if (colorId >= areas.length) {
+                // a color registered after this object was created (or OTHER)
+                int length = Math.max(colorId + 1, ColorRegistry.size());
+                areas = Arrays.copyOf(areas, length);
+                counts = Arrays.copyOf(counts, length);
+            }
+            areas[colorId] += area;
+            counts[colorId] += count;
+        }
+
+        void addAll(ColorAreas other) {
+            for (int id = 0; id < other.areas.length; id++) {
+                if (other.counts[id] > 0) {
+                    add(id, other.areas[id], other.counts[id]);
+                }
+            }
+        }
+
+        // Number of colors with at least one shape
+        public int size() {
+            int size = 0;
+            for (int count : counts) {
+                if (count > 0) {
+                    size++;
+                }
+            }
+            return size;
+        }
+
+        // The colors with at least one shape, in ColorRegistry id order
+        public String[] getColors() {
+            String[] colors = new String[size()];
+            int next = 0;
+            for (int id = 0; id < counts.length; id++) {
+                if (counts[id] > 0) {
+                    colors[next++] = ColorRegistry.nameOf(id);
+                }
+            }
+            return colors;
+        }
+
+        // Total area of the shapes with this color (0 if there are none)
+        public double getArea(String color) {
+            int id = colorIdOf(color);
+            return id < 0 || id >= areas.length ? 0 : areas[id];
+        }
+
+        public int getCount(String color) {
+            int id = colorIdOf(color);
+            return id < 0 || id >= counts.length ? 0 : counts[id];
+        }
+
+        private static int colorIdOf(String color) {
+            return ColorRegistry.OTHER_NAME.equals(color) ? ColorRegistry.OTHER : ColorRegistry.find(color);
+        }
+
+        @Override
+        public String toString() {
+            StringBuilder text = new StringBuilder();
+            for (int id = 0; id < counts.length; id++) {
+                if (counts[id] > 0) {
+                    text.append(String.format("%-10s %10d shapes %16.2f%n", ColorRegistry.nameOf(id), counts[id], areas[id]));
+                }
+            }
+            return text.toString();
+        }
+    }
+}
@@ -0,0 +1,167 @@
+/**
+ * ShapeOperationsBenchmark.java
+ * Compares ShapeOperations with the plain sequential loops it replaces, for
+ * scale-all, filter-larger-than, area-by-color and find-largest.
+ *
+ * Sizes default to 10K, 100K, 1M and 10M shapes (half circles, half rectangles);
+ * 10M shapes need a heap of about 2 GB. For every operation and size the harness
+ * warms up, then reports the average time of both versions and the speed-up.
+ *
+ * Run:  javac *.java && java -Xmx3g ShapeOperationsBenchmark [threshold] [sizes...]
+ * Part of the Java Basics and OOP Tutorial
+ */
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+public class ShapeOperationsBenchmark {
+    private static final int WARMUP_ITERATIONS = 3;
+    private static final int MEASURED_ITERATIONS = 5;
+    private static final String[] COLORS = { "Red", "Blue", "Green", "Yellow", "Black", "White" };
+
+    // Results are folded into this field so the JIT cannot drop the measured work
+    private static volatile double blackhole;
+
+    private interface Operation {
+        void run();
+    }
+
+    public static void main(String[] args) {
+        int threshold = args.length > 0 ? Integer.parseInt(args[0]) : 4096;
+        int[] sizes = { 10_000, 100_000, 1_000_000, 10_000_000 };
+        if (args.length > 1) {
+            sizes = new int[args.length - 1];
+            for (int i = 1; i < args.length; i++) {
+                sizes[i - 1] = Integer.parseInt(args[i]);
+            }
+        }
+        Shape.setVerbose(false);
+
+        try (ShapeOperations operations = new ShapeOperations(Runtime.getRuntime().availableProcessors(), threshold)) {
+            System.out.printf("%d threads, split threshold %d%n", operations.getParallelism(), threshold);
+            System.out.printf("%-14s %10s %14s %14s %9s%n", "benchmark", "shapes", "sequential ms", "parallel ms", "speed-up");
+            for (int size : sizes) {
+                runAll(operations, size);
+            }
+        }
+    }
+
+    private static void runAll(final ShapeOperations operations, int size) {
+        final Shape[] shapes = createShapes(size, new Random(42));
+        final Shape reference = new Circle(3.0);
+
+        compare("scaleAll", size, new Operation() {
+            private boolean grow;
+
+            @Override
+            public void run() {
+                // alternate so the shapes keep their size over many iterations
+                double factor = (grow = !grow) ? 1.25 : 0.8;
+                for (Shape shape : shapes) {
+                    if (shape instanceof Circle) {
+                        ((Circle) shape).scale(factor);
+                    } else {
+                        ((Rectangle) shape).scale(factor);
+                    }
+                }
+            }
+        }, new Operation() {
+            private boolean grow;
+
+            @Override
+            public void run() {
+                operations.scaleAll(shapes, (grow = !grow) ? 1.25 : 0.8);
+            }
+        });
+
+        compare("filterLarger", size, new Operation() {
+            @Override
+            public void run() {
+                // what user code does today: collect into a list
+                List<Shape> larger = new ArrayList<>();
+                double limit = reference.calculateArea();
+                for (Shape shape : shapes) {
+                    if (shape.calculateArea() > limit) {
+                        larger.add(shape);
+                    }
+                }
+                blackhole += larger.size();
+            }
+        }, new Operation() {
+            @Override
+            public void run() {
+                blackhole += operations.filterLargerThan(shapes, reference).length;
+            }
+        });
+
+        compare("areaByColor", size, new Operation() {
+            @Override
+            public void run() {
+                Map<String, Double> areas = new HashMap<>();
+                for (Shape shape : shapes) {
+                    areas.merge(shape.getColor(), shape.calculateArea(), Double::sum);
+                }
+                blackhole += areas.get("Red");
+            }
+        }, new Operation() {
+            @Override
+            public void run() {
+                blackhole += operations.areaByColor(shapes).getArea("Red");
+            }
+        });
+
+        compare("findLargest", size, new Operation() {
+            @Override
+            public void run() {
+                Shape largest = null;
+                double max = Double.NEGATIVE_INFINITY;
+                for (Shape shape : shapes) {
+                    double area = shape.calculateArea();
+                    if (area > max) {
+                        max = area;
+                        largest = shape;
+                    }
+                }
+                blackhole += largest.calculateArea();
+            }
+        }, new Operation() {
+            @Override
+            public void run() {
+                blackhole += operations.findLargest(shapes).calculateArea();
+            }
+        });
+    }
+
+    private static void compare(String name, int size, Operation sequential, Operation parallel) {
+        double sequentialMillis = measure(sequential);
+        double parallelMillis = measure(parallel);
+        System.out.printf("%-14s %10d %14.2f %14.2f %8.2fx%n", name, size, sequentialMillis, parallelMillis,
+                sequentialMillis / parallelMillis);
+    }
+
+    // Average milliseconds per run after warming up
+    private static double measure(Operation operation) {
+        for (int i = 0; i < WARMUP_ITERATIONS; i++) {
+            operation.run();
+        }
+        long start = System.nanoTime();
+        for (int i = 0; i < MEASURED_ITERATIONS; i++) {
+            operation.run();
+        }
+        return (System.nanoTime() - start) / 1e6 / MEASURED_ITERATIONS;
+    }
+
+    private static Shape[] createShapes(int size, Random random) {
+        Shape[] shapes = new Shape[size];
+        for (int i = 0; i < size; i++) {
+            String color = COLORS[random.nextInt(COLORS.length)];
+            boolean filled = random.nextBoolean();
+            shapes[i] = i % 2 == 0
+                    ? new Circle(0.5 + random.nextDouble() * 5, color, filled)
+                    : new Rectangle(0.5 + random.nextDouble() * 8, 0.5 + random.nextDouble() * 4, color, filled);
+        }
+        return shapes;
+    }
+}
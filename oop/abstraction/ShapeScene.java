@@ -0,0 +1,538 @@
+/**
+ * ShapeScene.java
+ * Shapes placed at positions on a plane, with a spatial index so that hit-testing a point
+ * or an area only looks at the shapes near it instead of trying every shape.
+ *
+ * A Circle is placed by its center and a Rectangle by its lower-left corner, the same
+ * positions Circle.containsPoint and Rectangle.containsPoint assume.
+ *
+ * The index is a uniform grid: the plane is cut into square cells and every shape is listed
+ * in each cell its bounding box touches. Cells are hashed into a power-of-two bucket table,
+ * so the plane has no fixed extent. A point query only tests the shapes listed in its cell,
+ * so with cells about as large as a typical shape (bulkLoad picks that size) its cost depends
+ * on how crowded the area is, not on how many shapes the scene holds.
+ * Shapes that would cover too many cells are kept in a separate list tested by every query.
+ *
+ * A shape placed in a scene reports its size changes (scale, rotate, setRadius, ...) back
+ * to the scene, which re-indexes only that shape, and only if it moved to other cells.
+ * A scene is not thread-safe: it must be changed (add, move, remove, or a size change of a
+ * placed shape) by one thread at a time, and queries may run on several threads at once
+ * only while nothing changes it. ShapeOperations re-indexes after its parallel phase.
+ * Part of the Java Basics and OOP Tutorial
+ */
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+public class ShapeScene {
+    // A shape covering more cells than this goes to the large-shape list
+    private static final int MAX_CELLS_PER_SHAPE = 64;
+    // Average number of cell entries per bucket before the bucket table doubles
+    private static final int MAX_BUCKET_LOAD = 4;
+    private static final int CELL_LIMIT = 1 << 30;
+
+    private final double cellSize;
+    private final double inverseCellSize;
+
+    // One slot per placed shape; removed shapes leave free slots behind for reuse
+    private Shape[] shapes;
+    private double[] posX;
+    private double[] posY;
+    private double[] minX;
+    private double[] minY;
+    private double[] maxX;
+    private double[] maxY;
+    private int[] cellX0;
+    private int[] cellY0;
+    private int[] cellX1;
+    private int[] cellY1;
+    private boolean[] oversized;
+    private long[] order; // placement order: later shapes are drawn on top
+    private int slotCount;
+    private int[] freeSlots = new int[16];
+    private int freeCount;
+    private int size;
+    private long nextOrder;
+
+    // Grid buckets: the slots listed in a bucket, each with the cell it is listed for
+    private int[][] bucketSlots;
+    private long[][] bucketCells;
+    private int[] bucketSizes;
+    private int bucketMask;
+    private long entryCount;
+
+    // Slots of the shapes too large for the grid
+    private int[] largeSlots = new int[16];
+    private int largeCount;
+
+    public ShapeScene(double cellSize) {
+        this(cellSize, 16);
+    }
+
+    private ShapeScene(double cellSize, int expectedShapes) {
+        if (!(cellSize > 0) || Double.isInfinite(cellSize)) {
+            throw new IllegalArgumentException("cellSize must be a positive number");
+        }
+        this.cellSize = cellSize;
+        this.inverseCellSize = 1.0 / cellSize;
+        allocateSlots(Math.max(16, expectedShapes));
+        allocateBuckets(powerOfTwoAtLeast(expectedShapes));
+    }
+
+    // Builds a scene from many shapes at once, with the cell size set to their average extent;
+    // shape i is placed at (x[i], y[i])
+    public static ShapeScene bulkLoad(Shape[] shapes, double[] x, double[] y) {
+        if (shapes.length != x.length || shapes.length != y.length) {
+            throw new IllegalArgumentException("shapes, x and y must have the same length");
+        }
+        double extentSum = 0;
+        for (Shape shape : shapes) {
+            checkPlaceable(shape);
+            extentSum += shape instanceof Circle
+                    ? 2 * ((Circle) shape).getRadius()
+                    : Math.max(((Rectangle) shape).getLength(), ((Rectangle) shape).getWidth());
+        }
+        double cellSize = extentSum > 0 && !Double.isInfinite(extentSum) ? extentSum / shapes.length : 1.0;
+        ShapeScene scene = new ShapeScene(cellSize, shapes.length);
+
+        // Size every bucket exactly before filling it, instead of growing it entry by entry
+        for (int i = 0; i < shapes.length; i++) {
+            if (shapes[i].scene != null) {
+                for (int slot = 0; slot < i; slot++) {
+                    shapes[slot].scene = null;
+                    shapes[slot].sceneSlot = -1;
+                }
+                throw new IllegalArgumentException("Shape appears twice: " + shapes[i].getShapeInfo());
+            }
+            scene.occupy(i, shapes[i], x[i], y[i]);
+            scene.slotCount++;
+            scene.size++;
+        }
+        int[] counts = new int[scene.bucketSizes.length];
+        for (int slot = 0; slot < scene.slotCount; slot++) {
+            if (!scene.oversized[slot]) {
+                for (int cy = scene.cellY0[slot]; cy <= scene.cellY1[slot]; cy++) {
+                    for (int cx = scene.cellX0[slot]; cx <= scene.cellX1[slot]; cx++) {
+                        counts[scene.bucket(cx, cy)]++;
+                    }
+                }
+            }
+        }
+        for (int b = 0; b < counts.length; b++) {
+            if (counts[b] > 0) {
+                scene.bucketSlots[b] = new int[counts[b]];
+                scene.bucketCells[b] = new long[counts[b]];
+            }
+        }
+        for (int slot = 0; slot < scene.slotCount; slot++) {
+            scene.list(slot);
+        }
+        return scene;
+    }
+
+    // ---- Placing shapes ----
+
+    // Places a shape with its anchor (circle center, rectangle lower-left corner) at (x, y)
+    public void add(Shape shape, double x, double y) {
+        checkPlaceable(shape);
+        int slot;
+        if (freeCount > 0) {
+            slot = freeSlots[--freeCount];
+        } else {
+            if (slotCount == shapes.length) {
+                growSlots(slotCount * 2);
+            }
+            slot = slotCount++;
+        }
+        occupy(slot, shape, x, y);
+        size++;
+        list(slot);
+        if (entryCount > (long) bucketSizes.length * MAX_BUCKET_LOAD && bucketSizes.length < CELL_LIMIT) {
+            rehash(bucketSizes.length * 2);
+        }
+    }
+
+    public void move(Shape shape, double x, double y) {
+        int slot = slotOf(shape);
+        posX[slot] = x;
+        posY[slot] = y;
+        reindex(slot);
+    }
+
+    public void remove(Shape shape) {
+        int slot = slotOf(shape);
+        unlist(slot, cellX0[slot], cellY0[slot], cellX1[slot], cellY1[slot], oversized[slot]);
+        shapes[slot] = null;
+        shape.scene = null;
+        shape.sceneSlot = -1;
+        if (freeCount == freeSlots.length) {
+            freeSlots = Arrays.copyOf(freeSlots, freeCount * 2);
+        }
+        freeSlots[freeCount++] = slot;
+        size--;
+    }
+
+    public boolean contains(Shape shape) {
+        return shape.scene == this;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public double getCellSize() {
+        return cellSize;
+    }
+
+    // Called by Shape.boundsChanged after a placed shape changed its size
+    void boundsChanged(Shape shape) {
+        reindex(slotOf(shape));
+    }
+
+    // ---- Queries ----
+
+    // The top-most (last placed) shape containing the point, or null
+    public Shape topShapeAt(double x, double y) {
+        int best = -1;
+        int cx = cell(x);
+        int cy = cell(y);
+        long key = cellKey(cx, cy);
+        int b = bucket(cx, cy);
+        int[] slots = bucketSlots[b];
+        long[] cells = bucketCells[b];
+        for (int i = 0, n = bucketSizes[b]; i < n; i++) {
+            int slot = slots[i];
+            if (cells[i] == key && (best < 0 || order[slot] > order[best]) && containsPoint(slot, x, y)) {
+                best = slot;
+            }
+        }
+        for (int i = 0; i < largeCount; i++) {
+            int slot = largeSlots[i];
+            if ((best < 0 || order[slot] > order[best]) && containsPoint(slot, x, y)) {
+                best = slot;
+            }
+        }
+        return best < 0 ? null : shapes[best];
+    }
+
+    // Number of shapes containing the point
+    public int countAt(double x, double y) {
+        return collectAt(x, y, null);
+    }
+
+    // All shapes containing the point, in no particular order
+    public List<Shape> shapesAt(double x, double y) {
+        List<Shape> result = new ArrayList<>();
+        collectAt(x, y, result);
+        return result;
+    }
+
+    // All shapes that overlap the rectangle [x0, x1] x [y0, y1], in no particular order
+    public List<Shape> shapesIn(double x0, double y0, double x1, double y1) {
+        if (!(x0 <= x1) || !(y0 <= y1)) {
+            throw new IllegalArgumentException("Empty query area");
+        }
+        List<Shape> result = new ArrayList<>();
+        int qx0 = cell(x0);
+        int qy0 = cell(y0);
+        int qx1 = cell(x1);
+        int qy1 = cell(y1);
+        if ((long) (qx1 - qx0 + 1) * (qy1 - qy0 + 1) > slotCount) {
+            // Visiting the cells would cost more than testing every shape
+            for (int slot = 0; slot < slotCount; slot++) {
+                if (shapes[slot] != null && overlaps(slot, x0, y0, x1, y1)) {
+                    result.add(shapes[slot]);
+                }
+            }
+            return result;
+        }
+        for (int cy = qy0; cy <= qy1; cy++) {
+            for (int cx = qx0; cx <= qx1; cx++) {
+                long key = cellKey(cx, cy);
+                int b = bucket(cx, cy);
+                int[] slots = bucketSlots[b];
+                long[] cells = bucketCells[b];
+                for (int i = 0, n = bucketSizes[b]; i < n; i++) {
+                    int slot = slots[i];
+                    // A shape listed in several of the visited cells is reported from the first one only
+                    if (cells[i] == key && cx == Math.max(cellX0[slot], qx0) && cy == Math.max(cellY0[slot], qy0)
+                            && overlaps(slot, x0, y0, x1, y1)) {
+                        result.add(shapes[slot]);
+                    }
+                }
+            }
+        }
+        for (int i = 0; i < largeCount; i++) {
+            if (overlaps(largeSlots[i], x0, y0, x1, y1)) {
+                result.add(shapes[largeSlots[i]]);
+            }
+        }
+        return result;
+    }
+
+    private int collectAt(double x, double y, List<Shape> out) {
+        int count = 0;
+        int cx = cell(x);
+        int cy = cell(y);
+        long key = cellKey(cx, cy);
+        int b = bucket(cx, cy);
+        int[] slots = bucketSlots[b];
+        long[] cells = bucketCells[b];
+        for (int i = 0, n = bucketSizes[b]; i < n; i++) {
+            if (cells[i] == key && containsPoint(slots[i], x, y)) {
+                count++;
+                if (out != null) {
+                    out.add(shapes[slots[i]]);
+                }
+            }
+        }
+        for (int i = 0; i < largeCount; i++) {
+            if (containsPoint(largeSlots[i], x, y)) {
+                count++;
+                if (out != null) {
+                    out.add(shapes[largeSlots[i]]);
+                }
+            }
+        }
+        return count;
+    }
+
+    private boolean containsPoint(int slot, double x, double y) {
+        if (x < minX[slot] || x > maxX[slot] || y < minY[slot] || y > maxY[slot]) {
+            return false;
+        }
+        Shape shape = shapes[slot];
+        if (shape instanceof Circle) {
+            return ((Circle) shape).containsPoint(x, y, posX[slot], posY[slot]);
+        }
+        return ((Rectangle) shape).containsPoint(x - posX[slot], y - posY[slot]);
+    }
+
+    private boolean overlaps(int slot, double x0, double y0, double x1, double y1) {
+        if (maxX[slot] < x0 || minX[slot] > x1 || maxY[slot] < y0 || minY[slot] > y1) {
+            return false;
+        }
+        Shape shape = shapes[slot];
+        if (shape instanceof Circle) {
+            // Distance from the center to the nearest point of the query area
+            double centerX = posX[slot];
+            double centerY = posY[slot];
+            double dx = centerX - Math.max(x0, Math.min(centerX, x1));
+            double dy = centerY - Math.max(y0, Math.min(centerY, y1));
+            double radius = ((Circle) shape).getRadius();
+            return dx * dx + dy * dy <= radius * radius;
+        }
+        return true;
+    }
+
+    // ---- Index maintenance ----
+
+    private static void checkPlaceable(Shape shape) {
+        if (shape == null) {
+            throw new NullPointerException("shape");
+        }
+        if (!(shape instanceof Circle) && !(shape instanceof Rectangle)) {
+            throw new IllegalArgumentException("Unsupported shape: " + shape.getClass().getName());
+        }
+        if (shape.scene != null) {
+            throw new IllegalArgumentException("Shape is already placed in a scene: " + shape.getShapeInfo());
+        }
+    }
+
+    private int slotOf(Shape shape) {
+        if (shape.scene != this) {
+            throw new IllegalArgumentException("Shape is not placed in this scene: " + shape.getShapeInfo());
+        }
+        return shape.sceneSlot;
+    }
+
+    private void occupy(int slot, Shape shape, double x, double y) {
+        shapes[slot] = shape;
+        posX[slot] = x;
+        posY[slot] = y;
+        order[slot] = nextOrder++;
+        shape.scene = this;
+        shape.sceneSlot = slot;
+        computeBounds(slot);
+    }
+
+    private void computeBounds(int slot) {
+        Shape shape = shapes[slot];
+        if (shape instanceof Circle) {
+            double radius = ((Circle) shape).getRadius();
+            minX[slot] = posX[slot] - radius;
+            minY[slot] = posY[slot] - radius;
+            maxX[slot] = posX[slot] + radius;
+            maxY[slot] = posY[slot] + radius;
+        } else {
+            Rectangle rectangle = (Rectangle) shape;
+            minX[slot] = posX[slot];
+            minY[slot] = posY[slot];
+            maxX[slot] = posX[slot] + rectangle.getLength();
+            maxY[slot] = posY[slot] + rectangle.getWidth();
+        }
+        cellX0[slot] = cell(minX[slot]);
+        cellY0[slot] = cell(minY[slot]);
+        cellX1[slot] = cell(maxX[slot]);
+        cellY1[slot] = cell(maxY[slot]);
+        long cells = (long) (cellX1[slot] - cellX0[slot] + 1) * (cellY1[slot] - cellY0[slot] + 1);
+        oversized[slot] = cells > MAX_CELLS_PER_SHAPE;
+    }
+
+    // Recomputes a slot's bounds and moves its entries only if it now covers other cells
+    private void reindex(int slot) {
+        int x0 = cellX0[slot];
+        int y0 = cellY0[slot];
+        int x1 = cellX1[slot];
+        int y1 = cellY1[slot];
+        boolean wasOversized = oversized[slot];
+        computeBounds(slot);
+        if (x0 == cellX0[slot] && y0 == cellY0[slot] && x1 == cellX1[slot] && y1 == cellY1[slot]
+                && wasOversized == oversized[slot]) {
+            return;
+        }
+        unlist(slot, x0, y0, x1, y1, wasOversized);
+        list(slot);
+    }
+
+    private void list(int slot) {
+        if (oversized[slot]) {
+            if (largeCount == largeSlots.length) {
+                largeSlots = Arrays.copyOf(largeSlots, largeCount * 2);
+            }
+            largeSlots[largeCount++] = slot;
+            return;
+        }
+        for (int cy = cellY0[slot]; cy <= cellY1[slot]; cy++) {
+            for (int cx = cellX0[slot]; cx <= cellX1[slot]; cx++) {
+                addEntry(bucket(cx, cy), slot, cellKey(cx, cy));
+            }
+        }
+    }
+
+    private void unlist(int slot, int x0, int y0, int x1, int y1, boolean large) {
+        if (large) {
+            for (int i = 0; i < largeCount; i++) {
+                if (largeSlots[i] == slot) {
+                    largeSlots[i] = largeSlots[--largeCount];
+                    return;
+                }
+            }
+            return;
+        }
+        for (int cy = y0; cy <= y1; cy++) {
+            for (int cx = x0; cx <= x1; cx++) {
+                removeEntry(bucket(cx, cy), slot, cellKey(cx, cy));
+            }
+        }
+    }
+
+    private void addEntry(int b, int slot, long key) {
+        int n = bucketSizes[b];
+        if (bucketSlots[b] == null) {
+            bucketSlots[b] = new int[4];
+            bucketCells[b] = new long[4];
+        } else if (n == bucketSlots[b].length) {
+            bucketSlots[b] = Arrays.copyOf(bucketSlots[b], n * 2);
+            bucketCells[b] = Arrays.copyOf(bucketCells[b], n * 2);
+        }
+        bucketSlots[b][n] = slot;
+        bucketCells[b][n] = key;
+        bucketSizes[b] = n + 1;
+        entryCount++;
+    }
+
+    private void removeEntry(int b, int slot, long key) {
+        int[] slots = bucketSlots[b];
+        long[] cells = bucketCells[b];
+        int n = bucketSizes[b];
+        for (int i = 0; i < n; i++) {
+            if (slots[i] == slot && cells[i] == key) {
+                n--;
+                slots[i] = slots[n];
+                cells[i] = cells[n];
+                bucketSizes[b] = n;
+                entryCount--;
+                return;
+            }
+        }
+    }
+
+    private void rehash(int bucketCount) {
+        allocateBuckets(bucketCount);
+        for (int slot = 0; slot < slotCount; slot++) {
+            if (shapes[slot] != null && !oversized[slot]) {
+                for (int cy = cellY0[slot]; cy <= cellY1[slot]; cy++) {
+                    for (int cx = cellX0[slot]; cx <= cellX1[slot]; cx++) {
+                        addEntry(bucket(cx, cy), slot, cellKey(cx, cy));
+                    }
+                }
+            }
+        }
+    }
+
+    private void allocateBuckets(int bucketCount) {
+        bucketSlots = new int[bucketCount][];
+        bucketCells = new long[bucketCount][];
+        bucketSizes = new int[bucketCount];
+        bucketMask = bucketCount - 1;
+        entryCount = 0;
+    }
+
+    private void allocateSlots(int capacity) {
+        shapes = new Shape[capacity];
+        posX = new double[capacity];
+        posY = new double[capacity];
+        minX = new double[capacity];
+        minY = new double[capacity];
+        maxX = new double[capacity];
+        maxY = new double[capacity];
+        cellX0 = new int[capacity];
+        cellY0 = new int[capacity];
+        cellX1 = new int[capacity];
+        cellY1 = new int[capacity];
+        oversized = new boolean[capacity];
+        order = new long[capacity];
+    }
+
+    private void growSlots(int capacity) {
+        shapes = Arrays.copyOf(shapes, capacity);
+        posX = Arrays.copyOf(posX, capacity);
+        posY = Arrays.copyOf(posY, capacity);
+        minX = Arrays.copyOf(minX, capacity);
+        minY = Arrays.copyOf(minY, capacity);
+        maxX = Arrays.copyOf(maxX, capacity);
+        maxY = Arrays.copyOf(maxY, capacity);
+        cellX0 = Arrays.copyOf(cellX0, capacity);
+        cellY0 = Arrays.copyOf(cellY0, capacity);
+        cellX1 = Arrays.copyOf(cellX1, capacity);
+        cellY1 = Arrays.copyOf(cellY1, capacity);
+        oversized = Arrays.copyOf(oversized, capacity);
+        order = Arrays.copyOf(order, capacity);
+    }
+
+    // Grid column or row of a coordinate, clamped so that cell ranges never overflow
+    private int cell(double v) {
+        double c = Math.floor(v * inverseCellSize);
+        return (int) Math.max(-CELL_LIMIT, Math.min(CELL_LIMIT, c));
+    }
+
+    private static long cellKey(int cx, int cy) {
+        return ((long) cx << 32) | (cy & 0xFFFFFFFFL);
+    }
+
+    // Mixes both coordinates into every bit, so that neighbouring cells land in unrelated buckets
+    private int bucket(int cx, int cy) {
+        long h = cellKey(cx, cy);
+        h = (h ^ (h >>> 33)) * 0xFF51AFD7ED558CCDL;
+        h = (h ^ (h >>> 33)) * 0xC4CEB9FE1A85EC53L;
+        return (int) (h ^ (h >>> 33)) & bucketMask;
+    }
+
+    private static int powerOfTwoAtLeast(int n) {
+        if (n <= 16) {
+            return 16;
+        }
+        return n >= CELL_LIMIT ? CELL_LIMIT : Integer.highestOneBit(n - 1) << 1;
+    }
+}
@@ -0,0 +1,672 @@
+/**
+ * AccountLedger.java
+ * An append-only history of every change to a set of BankAccounts: account openings,
+ * deposits, withdrawals, transfers, interest postings and balance corrections.
+ *
+ * Entries are written into memory-mapped segment files. Every entry carries a sequence
+ * number and a CRC32 checksum, and records the balance *after* the change, so replaying
+ * an entry is a single array store. A snapshot saves all balances at one sequence number;
+ * opening the ledger loads the latest snapshot and replays only the entries after it.
+ *
+ * Files in the ledger directory:
+ *   ledger.snapshot             - all accounts and balances at the last snapshot
+ *   ledger-<first seq>.segment  - entries, oldest segment first
+ *
+ * Entry layout: [int body length][body: long seq, byte type, fields...][int CRC32 of body]
+ * A body length of 0 marks the end of the written part of a segment.
+ *
+ * Entries are written before the balance changes (write-ahead), so a failed write leaves
+ * the account untouched. commit() forces the entries to disk; until then they are only
+ * in the OS page cache.
+ *
+ * Recording takes no ledger-wide lock. A writer reserves its sequence number and its bytes
+ * in the segment with one compare-and-set, writes the entry there in parallel with other
+ * writers, and then publishes it in sequence order (waiting only for writers that reserved
+ * earlier and are still copying bytes). Only opening an account, starting a new segment,
+ * snapshots and close use the ledger's monitor.
+ * Part of the Java Basics and OOP Tutorial
+ */
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.zip.CRC32;
+
+public class AccountLedger implements AutoCloseable {
+    private static final String SNAPSHOT_FILE = "ledger.snapshot";
+    private static final String SEGMENT_PREFIX = "ledger-";
+    private static final String SEGMENT_SUFFIX = ".segment";
+    private static final int SNAPSHOT_MAGIC = 0x4C444752; // "LDGR"
+    private static final int SEGMENT_MAGIC = 0x4C534547;  // "LSEG"
+    private static final int VERSION = 1;
+    private static final int SEGMENT_HEADER = 16;         // magic, version, first sequence number
+
+    // Entry types
+    static final byte OPEN = 1;
+    static final byte DEPOSIT = 2;
+    static final byte WITHDRAWAL = 3;
+    static final byte TRANSFER = 4;
+    static final byte INTEREST = 5;
+    static final byte SET_BALANCE = 6;
+
+    private static final int FRAME_OVERHEAD = 8;          // length + CRC
+    private static final int MAX_STRING = Short.MAX_VALUE;
+    private static final int MAX_BODY = 21 + 2 * (2 + MAX_STRING); // an OPEN entry with the longest strings
+    public static final int DEFAULT_SEGMENT_SIZE = 64 << 20;
+
+    private static final int FIXED_BODY = 41;             // the largest entry other than OPEN (TRANSFER)
+    private static final int BALANCE_CHUNK_BITS = 10;
+    private static final int BALANCE_CHUNK = 1 << BALANCE_CHUNK_BITS;
+
+    private final Path directory;
+    private final int segmentSize;
+    // Scratch space for OPEN entries and recovery (used under the monitor)
+    private final CRC32 crc = new CRC32();
+    private final ByteBuffer body = ByteBuffer.allocate(MAX_BODY);
+    // Scratch space for all other entries, one per recording thread
+    private static final ThreadLocal<Scratch> SCRATCH = new ThreadLocal<Scratch>() {
+        @Override
+        protected Scratch initialValue() {
+            return new Scratch();
+        }
+    };
+
+    // What the ledger knows about every account, indexed by ledger account id.
+    // The lists only change under the monitor; balances live in fixed-size chunks, so a
+    // recording thread's store is never lost to the array being copied while it grows
+    private final List<BankAccount> accounts = new ArrayList<>();
+    private final List<String> accountNumbers = new ArrayList<>();
+    private final List<String> holderNames = new ArrayList<>();
+    private volatile long[][] balances = new long[16][];
+
+    private volatile Segment current;     // the segment being appended to
+    private long lastSequence;            // during recovery only; afterwards see getLastSequence
+    private long replayedEntries;
+    private volatile boolean closed;
+
+    private static final class Scratch {
+        final ByteBuffer body = ByteBuffer.allocate(FIXED_BODY);
+        final CRC32 crc = new CRC32();
+    }
+
+    /**
+     * One segment file and its write position. 'reserved' and 'published' pack the number
+     * of entries in the segment (high 32 bits) and the byte offset after them (low 31 bits).
+     * A writer moves 'reserved' forward with a compare-and-set, writes its entry, and then
+     * moves 'published' from its start to its end once every earlier entry is published.
+     * The SEALED bit in 'reserved' stops new reservations (segment full, snapshot or close).
+     */
+    private static final class Segment {
+        static final long SEALED = 1L << 31;
+
+        final long firstSequence;
+        final FileChannel channel;
+        final MappedByteBuffer buffer;
+        final AtomicLong reserved;
+        final AtomicLong published;
+        long forced;                      // 'published' at the last force (under the monitor)
+
+        Segment(long firstSequence, FileChannel channel, MappedByteBuffer buffer, int entries, int offset) {
+            this.firstSequence = firstSequence;
+            this.channel = channel;
+            this.buffer = buffer;
+            this.reserved = new AtomicLong(pack(entries, offset));
+            this.published = new AtomicLong(pack(entries, offset));
+            this.forced = published.get();
+        }
+
+        static long pack(int entries, int offset) {
+            return (long) entries << 32 | offset;
+        }
+
+        static int entries(long state) {
+            return (int) (state >>> 32);
+        }
+
+        static int offset(long state) {
+            return (int) (state & (SEALED - 1));
+        }
+
+        long nextSequence() {
+            return firstSequence + entries(published.get());
+        }
+    }
+
+    private AccountLedger(Path directory, int segmentSize) {
+        this.directory = directory;
+        this.segmentSize = segmentSize;
+    }
+
+    /**
+     * Opens the ledger in 'directory' (creating an empty one if needed) and rebuilds every
+     * account it contains from the latest snapshot plus the entries written after it.
+     */
+    public static AccountLedger open(Path directory, int segmentSize) throws IOException {
+        if (segmentSize < SEGMENT_HEADER + FRAME_OVERHEAD + MAX_BODY + 4) {
+            throw new IllegalArgumentException("Segment size too small: " + segmentSize);
+        }
+        Files.createDirectories(directory);
+        AccountLedger ledger = new AccountLedger(directory, segmentSize);
+        ledger.recover();
+        return ledger;
+    }
+
+    public static AccountLedger open(Path directory) throws IOException {
+        return open(directory, DEFAULT_SEGMENT_SIZE);
+    }
+
+    // All accounts in the ledger (recovered and registered), in the order they were opened
+    public synchronized List<BankAccount> getAccounts() {
+        return Collections.unmodifiableList(new ArrayList<>(accounts));
+    }
+
+    public synchronized int size() {
+        return accounts.size();
+    }
+
+    // Sequence number of the newest published entry (0 for an empty ledger)
+    public long getLastSequence() {
+        return current.nextSequence() - 1;
+    }
+
+    // Number of entries replayed on top of the snapshot when the ledger was opened
+    public long getReplayedEntries() {
+        return replayedEntries;
+    }
+
+    /**
+     * Starts recording an account: writes an OPEN entry with its current balance,
+     * after which every change to the account is added to this ledger.
+     */
+    public void register(BankAccount account) {
+        account.attachLedger(this); // takes the account's lock, then calls recordOpen
+    }
+
+    // ---- Recording (called by BankAccount while it holds the account's lock) ----
+
+    synchronized int recordOpen(BankAccount account, long balance) {
+        int id = accounts.size();
+        body.clear();
+        body.putLong(0); // the sequence number is filled in by append
+        body.put(OPEN);
+        body.putInt(id);
+        body.putLong(balance);
+        putString(body, account.getAccountNumber());
+        putString(body, account.getAccountHolderName());
+        body.flip();
+        // Opens hold the monitor, so OPEN entries are in account id order, as replay expects
+        long[] position = reserve(body.limit());
+        write(position, body, crc);
+        addAccount(account, account.getAccountNumber(), account.getAccountHolderName(), balance);
+        publish(position);
+        return id;
+    }
+
+    // DEPOSIT, WITHDRAWAL, INTEREST or SET_BALANCE for one account
+    void record(byte type, int accountId, long amount, long balanceAfter) {
+        Scratch scratch = SCRATCH.get();
+        ByteBuffer entry = scratch.body;
+        entry.clear();
+        entry.putLong(0);
+        entry.put(type);
+        entry.putInt(accountId);
+        entry.putLong(amount);
+        entry.putLong(balanceAfter);
+        entry.flip();
+        long[] position = reserve(entry.limit());
+        write(position, entry, scratch.crc);
+        setBalance(accountId, balanceAfter);
+        publish(position);
+    }
+
+    void recordTransfer(int fromId, int toId, long amount, long fromBalanceAfter, long toBalanceAfter) {
+        Scratch scratch = SCRATCH.get();
+        ByteBuffer entry = scratch.body;
+        entry.clear();
+        entry.putLong(0);
+        entry.put(TRANSFER);
+        entry.putInt(fromId);
+        entry.putInt(toId);
+        entry.putLong(amount);
+        entry.putLong(fromBalanceAfter);
+        entry.putLong(toBalanceAfter);
+        entry.flip();
+        long[] position = reserve(entry.limit());
+        write(position, entry, scratch.crc);
+        setBalance(fromId, fromBalanceAfter);
+        setBalance(toId, toBalanceAfter);
+        publish(position);
+    }
+
+    /**
+     * Reserves room for an entry with a 'length'-byte body in the current segment.
+     * Returns {segment start state, segment end state} as packed by Segment; the entry's
+     * sequence number is the segment's first sequence + the entry count in the start state.
+     */
+    private long[] reserve(int length) {
+        int frame = length + FRAME_OVERHEAD;
+        while (true) {
+            Segment segment = current;
+            long state = segment.reserved.get();
+            if ((state & Segment.SEALED) != 0) {
+                replaceSealed(segment);
+                continue;
+            }
+            int offset = Segment.offset(state);
+            // keep room for the 0 length that marks the end of the segment
+            if (offset + frame + 4 > segment.buffer.capacity()) {
+                seal(segment);
+                continue;
+            }
+            long end = Segment.pack(Segment.entries(state) + 1, offset + frame);
+            if (segment.reserved.compareAndSet(state, end)) {
+                return new long[] { state, end };
+            }
+        }
+    }
+
+    // Writes the framed entry at its reserved place; other writers fill other places meanwhile
+    private void write(long[] position, ByteBuffer entry, CRC32 checksum) {
+        Segment segment = current;
+        long sequence = segment.firstSequence + Segment.entries(position[0]);
+        entry.putLong(0, sequence);
+        checksum.reset();
+        checksum.update(entry.array(), 0, entry.limit());
+        ByteBuffer out = segment.buffer.duplicate();
+        out.position(Segment.offset(position[0]));
+        out.putInt(entry.limit());
+        out.put(entry);
+        out.putInt((int) checksum.getValue());
+    }
+
+    // Makes the entry visible to commit, snapshot and close once all earlier entries are
+    private void publish(long[] position) {
+        AtomicLong published = current.published;
+        for (int spins = 0; published.get() != position[0]; spins++) {
+            if (spins > 64) {
+                Thread.yield(); // an earlier writer is still copying its bytes
+            }
+        }
+        published.set(position[1]);
+    }
+
+    // Stops new reservations in 'segment' and waits until every reserved entry is published
+    private static long seal(Segment segment) {
+        long state;
+        do {
+            state = segment.reserved.get();
+        } while ((state & Segment.SEALED) == 0 && !segment.reserved.compareAndSet(state, state | Segment.SEALED));
+        long end = state & ~Segment.SEALED;
+        while (segment.published.get() != end) {
+            Thread.yield();
+        }
+        return end;
+    }
+
+    // Called when a writer finds the current segment sealed: the thread holding the monitor
+    // (snapshot, close or another writer) installs the next segment, or this one does
+    private void replaceSealed(Segment segment) {
+        synchronized (this) {
+            if (closed) {
+                throw new IllegalStateException("Ledger is closed");
+            }
+            if (current == segment) {
+                try {
+                    startSegment(segment.nextSequence());
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            }
+        }
+    }
+
+    // Forces every entry recorded so far to disk
+    public synchronized void commit() throws IOException {
+        force(current);
+    }
+
+    private void force(Segment segment) {
+        long published = segment.published.get();
+        if (published != segment.forced) {
+            segment.buffer.force();
+            segment.forced = published;
+        }
+    }
+
+    /**
+     * Saves all balances at the current sequence number and deletes the segments it makes
+     * unnecessary. Recording waits while the snapshot is written.
+     */
+    public synchronized void snapshot() throws IOException {
+        if (closed) {
+            throw new IllegalStateException("Ledger is closed");
+        }
+        Segment segment = current;
+        seal(segment); // no entry can change a balance until the next segment is installed
+        force(segment);
+        long sequence = segment.nextSequence() - 1;
+        Path temp = directory.resolve(SNAPSHOT_FILE + ".tmp");
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(
+                Files.newOutputStream(temp), 1 << 16))) {
+            out.writeInt(SNAPSHOT_MAGIC);
+            out.writeInt(VERSION);
+            out.writeLong(sequence);
+            out.writeInt(accounts.size());
+            for (int id = 0; id < accounts.size(); id++) {
+                out.writeLong(getBalance(id));
+                writeString(out, accountNumbers.get(id));
+                writeString(out, holderNames.get(id));
+            }
+        }
+        try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.WRITE)) {
+            channel.force(true);
+        }
+        // The rename makes the new snapshot visible atomically; only then are old segments deleted
+        Files.move(temp, directory.resolve(SNAPSHOT_FILE),
+                   StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        startSegment(sequence + 1);
+        for (Path file : listSegments()) {
+            if (firstSequenceOf(file) <= sequence) {
+                Files.delete(file);
+            }
+        }
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        Segment segment = current;
+        seal(segment);
+        force(segment);
+        segment.channel.close();
+    }
+
+    // ---- Segments ----
+
+    // Installs a new segment starting at 'firstSequence' (under the monitor). The current
+    // segment must be sealed, or unused during recovery; it is forced and closed first
+    private void startSegment(long firstSequence) throws IOException {
+        Segment previous = current;
+        if (previous != null) {
+            seal(previous);
+            force(previous);
+            previous.channel.close();
+        }
+        Path file = segmentFile(firstSequence);
+        FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.READ,
+                                               StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
+        MappedByteBuffer mapped = channel.map(FileChannel.MapMode.READ_WRITE, 0, segmentSize);
+        mapped.putInt(SEGMENT_MAGIC);
+        mapped.putInt(VERSION);
+        mapped.putLong(firstSequence);
+        mapped.force();
+        current = new Segment(firstSequence, channel, mapped, 0, SEGMENT_HEADER);
+    }
+
+    private Path segmentFile(long firstSequence) {
+        return directory.resolve(String.format("%s%020d%s", SEGMENT_PREFIX, firstSequence, SEGMENT_SUFFIX));
+    }
+
+    private static long firstSequenceOf(Path file) {
+        String name = file.getFileName().toString();
+        return Long.parseLong(name.substring(SEGMENT_PREFIX.length(), name.length() - SEGMENT_SUFFIX.length()));
+    }
+
+    // Segment files sorted by their first sequence number
+    private List<Path> listSegments() throws IOException {
+        List<Path> files = new ArrayList<>();
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(directory,
+                SEGMENT_PREFIX + "*" + SEGMENT_SUFFIX)) {
+            for (Path file : stream) {
+                files.add(file);
+            }
+        }
+        Collections.sort(files); // zero-padded names sort by sequence number
+        return files;
+    }
+
+    // ---- Recovery ----
+
+    private void recover() throws IOException {
+        Path snapshotFile = directory.resolve(SNAPSHOT_FILE);
+        if (Files.exists(snapshotFile)) {
+            loadSnapshot(snapshotFile);
+        }
+        List<Path> files = listSegments();
+        for (int i = 0; i < files.size(); i++) {
+            boolean last = i == files.size() - 1;
+            try (FileChannel channel = FileChannel.open(files.get(i), StandardOpenOption.READ,
+                                                        StandardOpenOption.WRITE)) {
+                MappedByteBuffer mapped = channel.map(FileChannel.MapMode.READ_WRITE, 0, channel.size());
+                long next = replaySegment(mapped, files.get(i));
+                if (last) {
+                    // Continue appending to the newest segment right after its last valid entry
+                    // (unless it was written with another segment size or ends before the snapshot)
+                    if (mapped.capacity() == segmentSize && next == lastSequence + 1) {
+                        clearTail(mapped);
+                        long first = mapped.getLong(8);
+                        current = new Segment(first, FileChannel.open(files.get(i), StandardOpenOption.READ,
+                                                                      StandardOpenOption.WRITE),
+                                              mapped, (int) (next - first), mapped.position());
+                    }
+                }
+            }
+        }
+        if (current == null) {
+            startSegment(lastSequence + 1);
+        }
+        for (int id = 0; id < accounts.size(); id++) {
+            accounts.get(id).restoreBalance(getBalance(id));
+        }
+    }
+
+    private void loadSnapshot(Path file) throws IOException {
+        try (DataInputStream in = new DataInputStream(
+                new BufferedInputStream(Files.newInputStream(file), 1 << 16))) {
+            if (in.readInt() != SNAPSHOT_MAGIC || in.readInt() != VERSION) {
+                throw new IOException("Not a ledger snapshot: " + file);
+            }
+            lastSequence = in.readLong();
+            int count = in.readInt();
+            for (int id = 0; id < count; id++) {
+                long balance = in.readLong();
+                String number = readString(in);
+                String holder = readString(in);
+                addRecoveredAccount(number, holder, balance);
+            }
+        }
+    }
+
+    // Applies every valid entry of a segment that is newer than what is already loaded;
+    // returns the sequence number the next entry of this segment would have
+    private long replaySegment(MappedByteBuffer mapped, Path file) throws IOException {
+        if (mapped.capacity() < SEGMENT_HEADER || mapped.getInt() != SEGMENT_MAGIC || mapped.getInt() != VERSION) {
+            throw new IOException("Not a ledger segment: " + file);
+        }
+        long expected = mapped.getLong();
+        if (expected > lastSequence + 1) {
+            throw new IOException("Ledger entries missing before " + file);
+        }
+        byte[] record = body.array();
+        while (mapped.remaining() >= FRAME_OVERHEAD) {
+            int start = mapped.position();
+            int length = mapped.getInt();
+            if (length <= 0 || length > MAX_BODY || length + 4 > mapped.remaining()) {
+                mapped.position(start);
+                break; // end of the written part, or garbage after a torn write
+            }
+            mapped.get(record, 0, length);
+            int storedCrc = mapped.getInt();
+            crc.reset();
+            crc.update(record, 0, length);
+            ByteBuffer entry = body;
+            entry.clear();
+            entry.limit(length);
+            long sequence = entry.getLong();
+            if ((int) crc.getValue() != storedCrc || sequence != expected) {
+                mapped.position(start);
+                break;
+            }
+            expected++;
+            if (sequence <= lastSequence) {
+                continue; // already contained in the snapshot
+            }
+            applyEntry(entry);
+            lastSequence = sequence;
+            replayedEntries++;
+        }
+        return expected;
+    }
+
+    private void applyEntry(ByteBuffer entry) throws IOException {
+        byte type = entry.get();
+        switch (type) {
+            case OPEN: {
+                int id = entry.getInt();
+                long balance = entry.getLong();
+                String number = getString(entry);
+                String holder = getString(entry);
+                if (id != accounts.size()) {
+                    throw new IOException("Corrupt ledger: expected account id " + accounts.size() + " but found " + id);
+                }
+                addRecoveredAccount(number, holder, balance);
+                break;
+            }
+            case DEPOSIT:
+            case WITHDRAWAL:
+            case INTEREST:
+            case SET_BALANCE: {
+                int id = checkId(entry.getInt());
+                entry.getLong(); // the amount is history only; the balance after it is what counts
+                setBalance(id, entry.getLong());
+                break;
+            }
+            case TRANSFER: {
+                int from = checkId(entry.getInt());
+                int to = checkId(entry.getInt());
+                entry.getLong();
+                setBalance(from, entry.getLong());
+                setBalance(to, entry.getLong());
+                break;
+            }
+            default:
+                throw new IOException("Corrupt ledger: unknown entry type " + type);
+        }
+    }
+
+    private int checkId(int id) throws IOException {
+        if (id < 0 || id >= accounts.size()) {
+            throw new IOException("Corrupt ledger: entry for unknown account id " + id);
+        }
+        return id;
+    }
+
+    // Zeroes everything after the last valid entry so a torn or unforced write can never be replayed later
+    private static void clearTail(MappedByteBuffer mapped) {
+        int position = mapped.position();
+        while (mapped.remaining() >= 8) {
+            mapped.putLong(0L);
+        }
+        while (mapped.hasRemaining()) {
+            mapped.put((byte) 0);
+        }
+        mapped.position(position);
+        mapped.force();
+    }
+
+    private void addAccount(BankAccount account, String number, String holder, long balance) {
+        int id = accounts.size();
+        int chunk = id >>> BALANCE_CHUNK_BITS;
+        long[][] table = balances;
+        if (chunk == table.length) {
+            table = Arrays.copyOf(table, table.length * 2); // copies chunk references only
+        }
+        if (table[chunk] == null) {
+            table[chunk] = new long[BALANCE_CHUNK];
+        }
+        balances = table;
+        accounts.add(account);
+        accountNumbers.add(number);
+        holderNames.add(holder);
+        setBalance(id, balance);
+    }
+
+    private void setBalance(int id, long balance) {
+        balances[id >>> BALANCE_CHUNK_BITS][id & (BALANCE_CHUNK - 1)] = balance;
+    }
+
+    private long getBalance(int id) {
+        return balances[id >>> BALANCE_CHUNK_BITS][id & (BALANCE_CHUNK - 1)];
+    }
+
+    // An account rebuilt from disk: recorded in this ledger from now on
+    private void addRecoveredAccount(String number, String holder, long balance) {
+        BankAccount account = new BankAccount(number, holder);
+        account.restoreLedger(this, accounts.size());
+        addAccount(account, number, holder, balance);
+    }
+
+    // ---- Strings ----
+
+    private static void putString(ByteBuffer out, String value) {
+        if (value == null) {
+            out.putShort((short) -1);
+            return;
+        }
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        if (bytes.length > MAX_STRING) {
+            throw new IllegalArgumentException("String too long for the ledger: " + bytes.length + " bytes");
+        }
+        out.putShort((short) bytes.length);
+        out.put(bytes);
+    }
+
+    private static String getString(ByteBuffer in) {
+        int length = in.getShort();
+        if (length < 0) {
+            return null;
+        }
+        String value = new String(in.array(), in.arrayOffset() + in.position(), length, StandardCharsets.UTF_8);
+        in.position(in.position() + length);
+        return value;
+    }
+
+    private static void writeString(DataOutputStream out, String value) throws IOException {
+        if (value == null) {
+            out.writeShort(-1);
+            return;
+        }
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        out.writeShort(bytes.length);
+        out.write(bytes);
+    }
+
+    private static String readString(DataInputStream in) throws IOException {
+        int length = in.readShort();
+        if (length < 0) {
+            return null;
+        }
+        byte[] bytes = new byte[length];
+        in.readFully(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+}
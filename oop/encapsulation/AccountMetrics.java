@@ -0,0 +1,219 @@
+/**
+ * AccountMetrics.java
+ * Counts how often deposit, withdraw, transferTo and addInterest are called, how often
+ * they are rejected, and how long they take.
+ *
+ * Metrics are off by default. While they are off, BankAccount only reads one volatile
+ * boolean per call: no clock reads, no counters and no allocation. Once enabled:
+ *   - calls are counted per operation and outcome with LongAdders (striped counters that
+ *     do not make threads fight over one cache line)
+ *   - latencies go into a log-bucketed histogram per operation (like HdrHistogram:
+ *     8 sub-buckets per power of two, so every value is kept within 12.5%) whose buckets
+ *     are LongAdders as well
+ * snapshot() copies everything into a Snapshot that can be queried or printed.
+ * Part of the Java Basics and OOP Tutorial
+ */
+import java.util.concurrent.atomic.LongAdder;
+
+public final class AccountMetrics {
+    // The measured BankAccount operations
+    public enum Operation {
+        DEPOSIT, WITHDRAW, TRANSFER, INTEREST
+    }
+
+    // How an operation ended
+    public enum Outcome {
+        SUCCESS,
+        INVALID_AMOUNT,      // amount not positive (or under half a cent), or negative rate
+        INSUFFICIENT_FUNDS
+    }
+
+    private static final int OPERATIONS = Operation.values().length;
+    private static final int OUTCOMES = Outcome.values().length;
+
+    // Histogram layout: values below SUB_BUCKETS get their own bucket, larger values share
+    // SUB_BUCKETS buckets per power of two
+    private static final int SUB_BUCKET_BITS = 3;
+    private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+    private static final int BUCKETS = (64 - SUB_BUCKET_BITS) * SUB_BUCKETS;
+
+    // start() value of a call that is not measured; System.nanoTime() may return any other value
+    private static final long NOT_MEASURED = Long.MIN_VALUE;
+
+    private static volatile boolean enabled;
+
+    private static final LongAdder[][] COUNTS = new LongAdder[OPERATIONS][OUTCOMES];
+    private static final LongAdder[][] LATENCIES = new LongAdder[OPERATIONS][BUCKETS];
+
+    static {
+        for (int op = 0; op < OPERATIONS; op++) {
+            for (int outcome = 0; outcome < OUTCOMES; outcome++) {
+                COUNTS[op][outcome] = new LongAdder();
+            }
+            for (int bucket = 0; bucket < BUCKETS; bucket++) {
+                LATENCIES[op][bucket] = new LongAdder();
+            }
+        }
+    }
+
+    // Utility class: no instances
+    private AccountMetrics() {
+    }
+
+    public static void enable() {
+        enabled = true;
+    }
+
+    public static void disable() {
+        enabled = false;
+    }
+
+    public static boolean isEnabled() {
+        return enabled;
+    }
+
+    // Clears all counters and histograms
+    public static void reset() {
+        for (int op = 0; op < OPERATIONS; op++) {
+            for (int outcome = 0; outcome < OUTCOMES; outcome++) {
+                COUNTS[op][outcome].reset();
+            }
+            for (int bucket = 0; bucket < BUCKETS; bucket++) {
+                LATENCIES[op][bucket].reset();
+            }
+        }
+    }
+
+    // ---- Recording (called by BankAccount) ----
+
+    // Start time of an operation, or NOT_MEASURED when metrics are off
+    static long start() {
+        if (!enabled) {
+            return NOT_MEASURED;
+        }
+        long now = System.nanoTime();
+        return now == NOT_MEASURED ? now + 1 : now;
+    }
+
+    // Records one call that began at 'start' (a value from start())
+    static void record(Operation operation, Outcome outcome, long start) {
+        if (start == NOT_MEASURED) {
+            return;
+        }
+        long nanos = System.nanoTime() - start;
+        COUNTS[operation.ordinal()][outcome.ordinal()].increment();
+        LATENCIES[operation.ordinal()][bucketOf(Math.max(0L, nanos))].increment();
+    }
+
+    private static int bucketOf(long value) {
+        if (value < SUB_BUCKETS) {
+            return (int) value;
+        }
+        int exponent = 63 - Long.numberOfLeadingZeros(value);  // >= SUB_BUCKET_BITS
+        int shift = exponent - SUB_BUCKET_BITS;
+        int subBucket = (int) (value >>> shift) & (SUB_BUCKETS - 1);
+        return (shift + 1) * SUB_BUCKETS + subBucket;
+    }
+
+    // Largest value that falls into 'bucket'
+    private static long highestValueOf(int bucket) {
+        if (bucket < SUB_BUCKETS) {
+            return bucket;
+        }
+        int shift = bucket / SUB_BUCKETS - 1;
+        long lowest = (long) (SUB_BUCKETS + bucket % SUB_BUCKETS) << shift;
+        return lowest + (1L << shift) - 1;
+    }
+
+    // ---- Export ----
+
+    // Copies the current counters and histograms
+    public static Snapshot snapshot() {
+        long[][] counts = new long[OPERATIONS][OUTCOMES];
+        long[][] latencies = new long[OPERATIONS][BUCKETS];
+        for (int op = 0; op < OPERATIONS; op++) {
+            for (int outcome = 0; outcome < OUTCOMES; outcome++) {
+                counts[op][outcome] = COUNTS[op][outcome].sum();
+            }
+            for (int bucket = 0; bucket < BUCKETS; bucket++) {
+                latencies[op][bucket] = LATENCIES[op][bucket].sum();
+            }
+        }
+        return new Snapshot(counts, latencies);
+    }
+
+    // Metrics at one point in time
+    public static class Snapshot {
+        private final long[][] counts;
+        private final long[][] latencies;
+
+        Snapshot(long[][] counts, long[][] latencies) {
+            this.counts = counts;
+            this.latencies = latencies;
+        }
+
+        public long getCount(Operation operation, Outcome outcome) {
+            return counts[operation.ordinal()][outcome.ordinal()];
+        }
+
+        // All calls of an operation, whatever their outcome
+        public long getCount(Operation operation) {
+            long total = 0;
+            for (long count : counts[operation.ordinal()]) {
+                total += count;
+            }
+            return total;
+        }
+
+        // Calls that were rejected (invalid amount or insufficient funds)
+        public long getRejected(Operation operation) {
+            return getCount(operation) - getCount(operation, Outcome.SUCCESS);
+        }
+
+        // Latency in nanoseconds that 'percent' percent of the calls stayed below (within 12.5%)
+        public long getPercentileNanos(Operation operation, double percent) {
+            long[] buckets = latencies[operation.ordinal()];
+            long total = 0;
+            for (long count : buckets) {
+                total += count;
+            }
+            if (total == 0) {
+                return 0;
+            }
+            long rank = Math.max(1, (long) Math.ceil(percent / 100.0 * total));
+            long seen = 0;
+            for (int bucket = 0; bucket < buckets.length; bucket++) {
+                seen += buckets[bucket];
+                if (seen >= rank) {
+                    return highestValueOf(bucket);
+                }
+            }
+            return highestValueOf(buckets.length - 1);
+        }
+
+        public long getMaxNanos(Operation operation) {
+            long[] buckets = latencies[operation.ordinal()];
+            for (int bucket = buckets.length - 1; bucket >= 0; bucket--) {
+                if (buckets[bucket] != 0) {
+                    return highestValueOf(bucket);
+                }
+            }
+            return 0;
+        }
+
+        @Override
+        public String toString() {
+            StringBuilder text = new StringBuilder();
+            text.append(String.format("%-9s %10s %10s %12s %9s %9s %9s %9s%n", "operation", "success",
+                    "invalid", "insufficient", "p50(ns)", "p90(ns)", "p99(ns)", "max(ns)"));
+            for (Operation operation : Operation.values()) {
+                text.append(String.format("%-9s %10d %10d %12d %9d %9d %9d %9d%n", operation,
+                        getCount(operation, Outcome.SUCCESS), getCount(operation, Outcome.INVALID_AMOUNT),
+                        getCount(operation, Outcome.INSUFFICIENT_FUNDS),
+                        getPercentileNanos(operation, 50), getPercentileNanos(operation, 90),
+                        getPercentileNanos(operation, 99), getMaxNanos(operation)));
+            }
+            return text.toString();
+        }
+    }
+}
@@ -0,0 +1,191 @@
+/**
+ * AccountRegistry.java
+ * Keeps track of every BankAccount of a bank so that bulk jobs (like InterestPostingJob)
+ * can reach all of them.
+ *
+ * Accounts are grouped into partitions that match BankAccount's lock stripes: all
+ * accounts in a partition share one lock, so a job can lock a whole partition at once
+ * and update it atomically while the other partitions keep working.
+ *
+ * Accounts can be looked up by account number and listed by holder name in constant time.
+ * Both indexes are open-addressing hash tables of plain ints (positions in the registry),
+ * so an account costs about 12 bytes of index space instead of a HashMap entry object;
+ * the accounts of one holder are chained through an int array.
+ * Part of the Java Basics and OOP Tutorial
+ */
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Objects;
+
+public class AccountRegistry {
+    private static final int EMPTY = -1;
+    private static final float MAX_LOAD = 0.7f;
+
+    private final BankAccount[][] partitions;
+    private final int[] partitionSizes;
+    private int size;
+
+    // All accounts in registration order; the indexes below store positions in this array
+    private BankAccount[] accounts = new BankAccount[64];
+
+    // accountNumber -> position (linear probing, EMPTY = free slot)
+    private int[] numberTable = newTable(128);
+    // holder name -> position of the holder's newest account; older ones follow nextOfHolder
+    private int[] holderTable = newTable(128);
+    private int holderCount;
+    private int[] nextOfHolder = new int[64];
+
+    public AccountRegistry() {
+        int count = BankAccount.stripeCount();
+        partitions = new BankAccount[count][];
+        partitionSizes = new int[count];
+        for (int i = 0; i < count; i++) {
+            partitions[i] = new BankAccount[16];
+        }
+    }
+
+    // Adds an account to the registry; account numbers must be unique
+    public synchronized void register(BankAccount account) {
+        if (account == null) {
+            throw new NullPointerException("account");
+        }
+        String number = account.getAccountNumber();
+        if (number == null) {
+            throw new IllegalArgumentException("Account has no account number");
+        }
+        int numberSlot = findSlot(numberTable, number, true);
+        if (numberTable[numberSlot] != EMPTY) {
+            throw new IllegalArgumentException("Account number already registered: " + number);
+        }
+
+        int position = size;
+        if (position == accounts.length) {
+            accounts = Arrays.copyOf(accounts, position * 2);
+            nextOfHolder = Arrays.copyOf(nextOfHolder, position * 2);
+        }
+        accounts[position] = account;
+        numberTable[numberSlot] = position;
+
+        int holderSlot = findSlot(holderTable, account.getAccountHolderName(), false);
+        nextOfHolder[position] = holderTable[holderSlot]; // EMPTY for a new holder
+        if (holderTable[holderSlot] == EMPTY) {
+            holderCount++;
+        }
+        holderTable[holderSlot] = position;
+
+        addToPartition(account);
+        size++;
+        if (size > numberTable.length * MAX_LOAD) {
+            numberTable = rehash(numberTable, true);
+        }
+        if (holderCount > holderTable.length * MAX_LOAD) {
+            holderTable = rehash(holderTable, false);
+        }
+    }
+
+    // The account with this number, or null if it is not registered
+    public synchronized BankAccount getAccount(String accountNumber) {
+        if (accountNumber == null) {
+            return null;
+        }
+        int position = numberTable[findSlot(numberTable, accountNumber, true)];
+        return position == EMPTY ? null : accounts[position];
+    }
+
+    public synchronized boolean contains(String accountNumber) {
+        return getAccount(accountNumber) != null;
+    }
+
+    // All accounts of one holder, in registration order (empty if the holder has none)
+    public synchronized List<BankAccount> getAccountsOf(String holderName) {
+        List<BankAccount> found = new ArrayList<>();
+        for (int position = holderTable[findSlot(holderTable, holderName, false)];
+             position != EMPTY; position = nextOfHolder[position]) {
+            found.add(accounts[position]);
+        }
+        Collections.reverse(found); // the chain runs from newest to oldest
+        return found;
+    }
+
+    private void addToPartition(BankAccount account) {
+        int partition = account.getStripe();
+        BankAccount[] members = partitions[partition];
+        int count = partitionSizes[partition];
+        if (count == members.length) {
+            members = Arrays.copyOf(members, count * 2);
+            partitions[partition] = members;
+        }
+        members[count] = account;
+        partitionSizes[partition] = count + 1;
+    }
+
+    public synchronized int size() {
+        return size;
+    }
+
+    // Every registered account, in registration order
+    public synchronized List<BankAccount> getAccounts() {
+        return Collections.unmodifiableList(Arrays.asList(Arrays.copyOf(accounts, size)));
+    }
+
+    // ---- Hash tables ----
+
+    private static int[] newTable(int capacity) {
+        int[] table = new int[capacity];
+        Arrays.fill(table, EMPTY);
+        return table;
+    }
+
+    private String keyOf(int position, boolean byNumber) {
+        BankAccount account = accounts[position];
+        return byNumber ? account.getAccountNumber() : account.getAccountHolderName();
+    }
+
+    // Slot holding 'key', or the free slot where it would go (tables are never full)
+    private int findSlot(int[] table, String key, boolean byNumber) {
+        int mask = table.length - 1;
+        int slot = spread(key) & mask;
+        while (true) {
+            int position = table[slot];
+            if (position == EMPTY || Objects.equals(keyOf(position, byNumber), key)) {
+                return slot;
+            }
+            slot = (slot + 1) & mask;
+        }
+    }
+
+    private int[] rehash(int[] table, boolean byNumber) {
+        int[] bigger = newTable(table.length * 2);
+        int mask = bigger.length - 1;
+        for (int position : table) {
+            if (position == EMPTY) {
+                continue;
+            }
+            int slot = spread(keyOf(position, byNumber)) & mask;
+            while (bigger[slot] != EMPTY) {
+                slot = (slot + 1) & mask;
+            }
+            bigger[slot] = position;
+        }
+        return bigger;
+    }
+
+    // String hash codes have weak low bits; mixing them keeps linear probing runs short
+    private static int spread(String key) {
+        int h = key == null ? 0 : key.hashCode() * 0x9E3779B9;
+        return h ^ (h >>> 16);
+    }
+
+    // ---- Partitions (used by bulk jobs) ----
+
+    int getPartitionCount() {
+        return partitions.length;
+    }
+
+    // The accounts of one partition; they all use lock stripe 'partition'
+    synchronized BankAccount[] getPartition(int partition) {
+        return Arrays.copyOf(partitions[partition], partitionSizes[partition]);
+    }
+}
@@ -0,0 +1,145 @@
+/**
+ * BalanceEvent.java
+ * Describes one thing that happened to a BankAccount: a deposit, a withdrawal, a transfer,
+ * an interest posting, a balance correction - or the rejection of one of them.
+ *
+ * BalanceEventBus reuses its event objects, so a listener must copy what it needs before
+ * it returns instead of keeping the event itself. Events from a bus carry their sequence
+ * number and the number of events the bus dropped before them, so listeners can tell
+ * that they missed something.
+ * Part of the Java Basics and OOP Tutorial
+ */
+public class BalanceEvent {
+    public enum Type {
+        BALANCE_SET,
+        BALANCE_REJECTED,             // negative balance
+        DEPOSITED,
+        DEPOSIT_REJECTED,             // non-positive amount, or less than half a cent
+        WITHDRAWN,
+        WITHDRAWAL_REJECTED,          // non-positive amount, or less than half a cent
+        WITHDRAWAL_INSUFFICIENT_FUNDS,
+        TRANSFERRED,
+        TRANSFER_REJECTED,            // non-positive amount, or less than half a cent
+        TRANSFER_INSUFFICIENT_FUNDS,
+        INTEREST_ADDED,
+        INTEREST_REJECTED             // negative rate
+    }
+
+    private Type type;
+    private BankAccount account;
+    private BankAccount target;
+    private long amountCents;
+    private long balanceCents;
+    private double interestRate;
+    private long sequence = -1;
+    private long droppedBefore;
+
+    BalanceEvent() {
+    }
+
+    BalanceEvent(Type type, BankAccount account, BankAccount target, long amountCents, long balanceCents,
+                 double interestRate) {
+        set(type, account, target, amountCents, balanceCents, interestRate);
+    }
+
+    void set(Type type, BankAccount account, BankAccount target, long amountCents, long balanceCents,
+             double interestRate) {
+        this.type = type;
+        this.account = account;
+        this.target = target;
+        this.amountCents = amountCents;
+        this.balanceCents = balanceCents;
+        this.interestRate = interestRate;
+    }
+
+    void setPosition(long sequence, long droppedBefore) {
+        this.sequence = sequence;
+        this.droppedBefore = droppedBefore;
+    }
+
+    // Drops the account references so a reused slot does not keep accounts alive
+    void clear() {
+        account = null;
+        target = null;
+    }
+
+    public Type getType() {
+        return type;
+    }
+
+    // The account the event belongs to (the paying account of a transfer)
+    public BankAccount getAccount() {
+        return account;
+    }
+
+    // The receiving account of a transfer, otherwise null
+    public BankAccount getTarget() {
+        return target;
+    }
+
+    // Amount deposited, withdrawn, transferred or credited as interest (0 for rejections)
+    public long getAmountCents() {
+        return amountCents;
+    }
+
+    // The account's balance after the event (the unchanged balance for rejections)
+    public long getBalanceCents() {
+        return balanceCents;
+    }
+
+    // Interest rate in percent for INTEREST_ADDED, otherwise 0
+    public double getInterestRate() {
+        return interestRate;
+    }
+
+    // Position of the event on its BalanceEventBus (0, 1, 2, ...); -1 if it was not sent through a bus
+    public long getSequence() {
+        return sequence;
+    }
+
+    // Events the bus dropped after the previous event was published and before this one
+    public long getDroppedBefore() {
+        return droppedBefore;
+    }
+
+    // The text BankAccount used to print for this event (one or two lines)
+    public String getMessage() {
+        String newline = System.lineSeparator();
+        switch (type) {
+            case BALANCE_SET:
+                return "Balance updated to: $" + Money.toDollars(balanceCents);
+            case BALANCE_REJECTED:
+                return "Error: Balance cannot be set to a negative value.";
+            case DEPOSITED:
+                return "Deposited: $" + Money.toDollars(amountCents) + newline
+                     + "New balance: $" + Money.toDollars(balanceCents);
+            case DEPOSIT_REJECTED:
+                return "Error: Deposit amount must be positive.";
+            case WITHDRAWN:
+                return "Withdrew: $" + Money.toDollars(amountCents) + newline
+                     + "New balance: $" + Money.toDollars(balanceCents);
+            case WITHDRAWAL_REJECTED:
+                return "Error: Withdrawal amount must be positive.";
+            case WITHDRAWAL_INSUFFICIENT_FUNDS:
+                return "Error: Insufficient funds. Current balance: $" + Money.toDollars(balanceCents);
+            case TRANSFERRED:
+                return "Transferred $" + Money.toDollars(amountCents) + " to account " + target.getAccountNumber()
+                     + newline + "Your new balance: $" + Money.toDollars(balanceCents);
+            case TRANSFER_REJECTED:
+                return "Error: Transfer amount must be positive.";
+            case TRANSFER_INSUFFICIENT_FUNDS:
+                return "Error: Insufficient funds for transfer. Current balance: $" + Money.toDollars(balanceCents);
+            case INTEREST_ADDED:
+                return "Interest added: $" + Money.format(amountCents) + " at rate " + interestRate + "%" + newline
+                     + "New balance: $" + Money.format(balanceCents);
+            default: // INTEREST_REJECTED
+                return "Error: Interest rate cannot be negative.";
+        }
+    }
+
+    @Override
+    public String toString() {
+        return type + " " + (account == null ? "?" : account.getAccountNumber())
+             + " amount=" + Money.format(amountCents) + " balance=" + Money.format(balanceCents);
+    }
+}
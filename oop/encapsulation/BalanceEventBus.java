@@ -0,0 +1,267 @@
+/**
+ * BalanceEventBus.java
+ * Delivers BalanceEvents to listeners on a background thread, so threads that change
+ * balances never wait for console output or slow listeners.
+ *
+ * Events go through a lock-free ring buffer with many producers and one consumer:
+ *   - a producer claims the next sequence number with a CAS, fills the preallocated event
+ *     in that slot and publishes it by storing the sequence number in the slot
+ *   - the consumer thread reads slots in sequence order, calls the listeners and then
+ *     frees the slots; with nothing to deliver it spins briefly, then parks until the
+ *     next publish unparks it, so an idle bus costs no CPU
+ *
+ * What happens when the ring is full depends on the OverflowPolicy:
+ *   - DROP (the default): the producer never waits; the event is lost and counted in
+ *     getDroppedEvents(). Size the ring for the expected bursts.
+ *   - BLOCK: the producer waits until the consumer frees a slot, so no event is lost while
+ *     the bus is open. Balance changes then slow down to the speed of the listeners.
+ * Events published after close() are always dropped. Listeners can see where events went
+ * missing: every delivered event carries its sequence number on the bus and the number of
+ * events dropped since the previous one was published (BalanceEvent.getDroppedBefore()).
+ *
+ * Use: BankAccount.setEventBus(bus); bus.addListener(BalanceListener.CONSOLE);
+ * Part of the Java Basics and OOP Tutorial
+ */
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+
+public class BalanceEventBus implements AutoCloseable {
+    public enum OverflowPolicy {
+        DROP,   // lose the event and count it
+        BLOCK   // wait for a free slot (a listener that publishes still drops, or it would wait for itself)
+    }
+
+    private static final int SPINS_BEFORE_PARKING = 1000;
+    private static final long PARK_NANOS = TimeUnit.MICROSECONDS.toNanos(50);
+
+    private final BalanceEvent[] slots;
+    private final AtomicLongArray publishedSequence; // per slot: sequence of the event it holds, -1 = none yet
+    private final int mask;
+    private final AtomicLong claimed = new AtomicLong();   // next sequence number a producer will claim
+    private final AtomicLong consumed = new AtomicLong();  // every sequence below this has been delivered
+    private final LongAdder dropped = new LongAdder();
+    private final AtomicLong unreportedDrops = new AtomicLong(); // dropped since the last published event
+    private final OverflowPolicy overflowPolicy;
+    // BLOCK: producers waiting for a free slot sleep on 'space'; the consumer wakes them
+    private final Object space = new Object();
+    private final AtomicInteger waitingProducers = new AtomicInteger();
+    private final LongAdder listenerFailures = new LongAdder();
+    private final List<BalanceListener> listeners = new CopyOnWriteArrayList<>();
+    private final Thread consumer;
+    private volatile boolean running = true;
+    // Set while the consumer is parked without a timeout; the next publish unparks it
+    private volatile boolean consumerParked;
+
+    // capacity is rounded up to a power of two
+    public BalanceEventBus(int capacity, OverflowPolicy overflowPolicy) {
+        if (capacity < 2) {
+            throw new IllegalArgumentException("capacity must be at least 2");
+        }
+        if (overflowPolicy == null) {
+            throw new IllegalArgumentException("overflowPolicy must not be null");
+        }
+        this.overflowPolicy = overflowPolicy;
+        int size = Integer.highestOneBit(capacity - 1) << 1;
+        slots = new BalanceEvent[size];
+        publishedSequence = new AtomicLongArray(size);
+        for (int i = 0; i < size; i++) {
+            slots[i] = new BalanceEvent();
+            publishedSequence.set(i, -1);
+        }
+        mask = size - 1;
+        consumer = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                consume();
+            }
+        }, "balance-events");
+        consumer.setDaemon(true);
+        consumer.start();
+    }
+
+    public BalanceEventBus(int capacity) {
+        this(capacity, OverflowPolicy.DROP);
+    }
+
+    public BalanceEventBus() {
+        this(1 << 16);
+    }
+
+    public void addListener(BalanceListener listener) {
+        listeners.add(listener);
+    }
+
+    public void removeListener(BalanceListener listener) {
+        listeners.remove(listener);
+    }
+
+    // ---- Producer side ----
+
+    /**
+     * Queues an event; returns false (and counts a drop) if the bus is closed, or if the ring
+     * is full and the policy is DROP. With BLOCK, waits for a free slot instead.
+     * Allocates nothing.
+     */
+    boolean publish(BalanceEvent.Type type, BankAccount account, BankAccount target,
+                    long amountCents, long balanceCents, double interestRate) {
+        boolean mayWait = overflowPolicy == OverflowPolicy.BLOCK && Thread.currentThread() != consumer;
+        long sequence;
+        while (true) {
+            if (!running) {
+                return drop();
+            }
+            sequence = claimed.get();
+            if (sequence - consumed.get() < slots.length) {
+                if (claimed.compareAndSet(sequence, sequence + 1)) {
+                    break;
+                }
+            } else if (mayWait) {
+                waitForSpace();
+            } else {
+                return drop();
+            }
+        }
+        long droppedBefore = unreportedDrops.get() == 0 ? 0 : unreportedDrops.getAndSet(0);
+        int index = (int) sequence & mask;
+        BalanceEvent event = slots[index];
+        event.set(type, account, target, amountCents, balanceCents, interestRate);
+        event.setPosition(sequence, droppedBefore);
+        // A volatile store (not lazySet), so it cannot pass the read of consumerParked below:
+        // either the consumer sees the event before parking, or this producer sees it parked
+        publishedSequence.set(index, sequence);
+        if (consumerParked) {
+            LockSupport.unpark(consumer);
+        }
+        return true;
+    }
+
+    private boolean drop() {
+        dropped.increment();
+        unreportedDrops.incrementAndGet();
+        return false;
+    }
+
+    // Sleeps until the consumer has freed a slot or the bus is closed
+    private void waitForSpace() {
+        waitingProducers.incrementAndGet();
+        boolean interrupted = false;
+        try {
+            synchronized (space) {
+                // the timeout covers a wake-up the consumer sent just before this producer registered
+                while (running && claimed.get() - consumed.get() >= slots.length) {
+                    try {
+                        space.wait(1);
+                    } catch (InterruptedException e) {
+                        interrupted = true;
+                    }
+                }
+            }
+        } finally {
+            waitingProducers.decrementAndGet();
+        }
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void wakeProducers() {
+        if (waitingProducers.get() != 0) {
+            synchronized (space) {
+                space.notifyAll();
+            }
+        }
+    }
+
+    // ---- Consumer side ----
+
+    private void consume() {
+        long next = consumed.get();
+        int idle = 0;
+        while (running || next < claimed.get()) {
+            int index = (int) next & mask;
+            if (publishedSequence.get(index) != next) {
+                // nothing published yet (or a producer is still filling the slot): spin a while,
+                // then sleep until a producer or close() unparks this thread
+                if (++idle < SPINS_BEFORE_PARKING) {
+                    Thread.yield();
+                } else {
+                    consumerParked = true;
+                    if (running && publishedSequence.get(index) != next) {
+                        LockSupport.park(this);
+                    }
+                    consumerParked = false;
+                }
+                continue;
+            }
+            idle = 0;
+            BalanceEvent event = slots[index];
+            for (BalanceListener listener : listeners) {
+                try {
+                    listener.onBalanceEvent(event);
+                } catch (RuntimeException e) {
+                    listenerFailures.increment(); // a broken listener must not stop the others
+                }
+            }
+            event.clear();
+            next++;
+            consumed.lazySet(next);
+            wakeProducers();
+        }
+    }
+
+    // Waits until every event published before this call has been delivered
+    public void flush() {
+        long target = claimed.get();
+        while (consumed.get() < target && consumer.isAlive()) {
+            LockSupport.parkNanos(PARK_NANOS);
+        }
+    }
+
+    // Delivers the remaining events and stops the consumer thread
+    @Override
+    public void close() {
+        running = false;
+        wakeProducers(); // waiting producers give up and drop their events
+        LockSupport.unpark(consumer);
+        boolean interrupted = false;
+        while (consumer.isAlive()) {
+            try {
+                consumer.join();
+            } catch (InterruptedException e) {
+                interrupted = true;
+            }
+        }
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    // ---- Statistics ----
+
+    public long getPublishedEvents() {
+        return claimed.get();
+    }
+
+    public long getDeliveredEvents() {
+        return consumed.get();
+    }
+
+    public OverflowPolicy getOverflowPolicy() {
+        return overflowPolicy;
+    }
+
+    // Events lost because the ring was full (policy DROP) or the bus was closed
+    public long getDroppedEvents() {
+        return dropped.sum();
+    }
+
+    public long getListenerFailures() {
+        return listenerFailures.sum();
+    }
+}
@@ -0,0 +1,17 @@
+/**
+ * BalanceListener.java
+ * Receives BalanceEvents from a BalanceEventBus (on the bus's consumer thread).
+ * Part of the Java Basics and OOP Tutorial
+ */
+public interface BalanceListener {
+    // Prints each event the way BankAccount used to print it
+    BalanceListener CONSOLE = new BalanceListener() {
+        @Override
+        public void onBalanceEvent(BalanceEvent event) {
+            System.out.println(event.getMessage());
+        }
+    };
+
+    // Called once per event; the event object is reused after this returns
+    void onBalanceEvent(BalanceEvent event);
+}
@@ -0,0 +1,104 @@
+/**
+ * BalanceReadBenchmark.java
+ * Compares the two ways BankAccount reads the balances of several accounts at once while
+ * other threads keep transferring money between them:
+ *   optimistic - BankAccount.getBalancesCents (StampedLock optimistic reads, no locking)
+ *   locked     - the same read with every involved stripe read-locked
+ * for several read/write ratios. Each operation is either a consistent read of two
+ * random accounts or a transfer between two random accounts.
+ *
+ * Run:  javac *.java && java BalanceReadBenchmark [threads] [accounts] [millis per run]
+ * Part of the Java Basics and OOP Tutorial
+ */
+import java.util.Random;
+
+public class BalanceReadBenchmark {
+    private static final double[] READ_PERCENTAGES = { 50, 90, 99, 99.9 };
+
+    // Results are folded into this field so the JIT cannot drop the reads
+    private static volatile long blackhole;
+
+    public static void main(String[] args) throws InterruptedException {
+        int threads = args.length > 0 ? Integer.parseInt(args[0]) : Runtime.getRuntime().availableProcessors();
+        int accountCount = args.length > 1 ? Integer.parseInt(args[1]) : 1000;
+        long millis = args.length > 2 ? Long.parseLong(args[2]) : 1000;
+
+        BankAccount[] accounts = new BankAccount[accountCount];
+        for (int i = 0; i < accountCount; i++) {
+            accounts[i] = new BankAccount("BENCH-" + i, "Benchmark");
+            accounts[i].restoreBalance(1_000_00); // $1000 each, without printing
+        }
+        long expectedTotal = 1_000_00L * accountCount;
+
+        System.out.printf("%-11s %7s %8s %14s %14s%n", "mode", "reads%", "threads", "ops/s", "reads/s");
+        for (double readPercent : READ_PERCENTAGES) {
+            for (boolean optimistic : new boolean[] { true, false }) {
+                run(accounts, threads, millis / 4, readPercent, optimistic); // warm-up
+                long[] counts = run(accounts, threads, millis, readPercent, optimistic);
+                System.out.printf("%-11s %7.1f %8d %14.0f %14.0f%n", optimistic ? "optimistic" : "locked",
+                        readPercent, threads, (counts[0] + counts[1]) * 1000.0 / millis, counts[0] * 1000.0 / millis);
+            }
+        }
+
+        long total = 0;
+        for (BankAccount account : accounts) {
+            total += account.getBalanceCents();
+        }
+        System.out.println(total == expectedTotal ? "Total balance unchanged: OK"
+                                                  : "Total balance changed: " + total + " != " + expectedTotal);
+    }
+
+    // Runs the mix on 'threads' threads for 'millis' ms; returns {reads, writes}
+    private static long[] run(final BankAccount[] accounts, int threads, final long millis,
+                              double readPercent, final boolean optimistic) throws InterruptedException {
+        final int readThreshold = (int) (readPercent * 100); // out of 10,000
+        final long[][] counts = new long[threads][2];
+        Thread[] workers = new Thread[threads];
+        final long deadline = System.nanoTime() + millis * 1_000_000L;
+        for (int t = 0; t < threads; t++) {
+            final long[] mine = counts[t];
+            final Random random = new Random(t);
+            workers[t] = new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    BankAccount[] pair = new BankAccount[2];
+                    long[] balances = new long[2];
+                    long sum = 0;
+                    while (System.nanoTime() < deadline) {
+                        for (int i = 0; i < 256; i++) {
+                            pair[0] = accounts[random.nextInt(accounts.length)];
+                            pair[1] = accounts[random.nextInt(accounts.length)];
+                            if (random.nextInt(10_000) < readThreshold) {
+                                if (optimistic) {
+                                    BankAccount.readBalances(pair, balances);
+                                } else {
+                                    BankAccount.readBalancesLocked(pair, balances);
+                                }
+                                sum += balances[0] + balances[1];
+                                mine[0]++;
+                            } else {
+                                BankAccount.lockBoth(pair[0], pair[1]);
+                                try {
+                                    pair[0].transferLocked(pair[1], 1 + random.nextInt(100));
+                                } finally {
+                                    BankAccount.unlockBoth(pair[0], pair[1]);
+                                }
+                                mine[1]++;
+                            }
+                        }
+                    }
+                    blackhole += sum;
+                }
+            });
+            workers[t].start();
+        }
+        long reads = 0;
+        long writes = 0;
+        for (int t = 0; t < threads; t++) {
+            workers[t].join();
+            reads += counts[t][0];
+            writes += counts[t][1];
+        }
+        return new long[] { reads, writes };
+    }
+}
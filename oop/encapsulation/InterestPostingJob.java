@@ -0,0 +1,207 @@
+/**
+ * InterestPostingJob.java
+ * Month-end interest posting for every account in an AccountRegistry.
+ *
+ * The registry's partitions are spread over a work-stealing fork/join pool. For each
+ * partition the job takes the partition's lock, copies the balances into a primitive
+ * array, computes all interest amounts in one tight loop (Money.percentOf) and adds them
+ * before releasing the lock - so every partition is posted atomically and nothing is
+ * printed. Ledgers of recorded accounts are committed once at the end of the run.
+ *
+ * While a run is in progress, other threads can follow it with getAccountsPosted(),
+ * getPartitionsDone() and getProgress(); the returned PostingReport has the throughput.
+ * Part of the Java Basics and OOP Tutorial
+ */
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.math.RoundingMode;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+public class InterestPostingJob implements AutoCloseable {
+    private final ForkJoinPool pool;
+
+    // Progress of the current (or last) run
+    private final AtomicLong accountsPosted = new AtomicLong();
+    private final AtomicLong interestPosted = new AtomicLong();
+    private final AtomicInteger partitionsDone = new AtomicInteger();
+    private final Set<AccountLedger> ledgers = ConcurrentHashMap.newKeySet(); // ledgers touched by the run
+    private volatile int partitionCount;
+
+    public InterestPostingJob(int parallelism) {
+        if (parallelism < 1) {
+            throw new IllegalArgumentException("parallelism must be at least 1");
+        }
+        this.pool = new ForkJoinPool(parallelism);
+    }
+
+    public InterestPostingJob() {
+        this(Runtime.getRuntime().availableProcessors());
+    }
+
+    /**
+     * Adds interestRate percent interest to every registered account, rounding each amount
+     * to cents with 'rounding'. Only one run at a time is allowed per job.
+     */
+    public synchronized PostingReport post(AccountRegistry registry, double interestRate, RoundingMode rounding) {
+        if (interestRate < 0) {
+            throw new IllegalArgumentException("Interest rate cannot be negative: " + interestRate);
+        }
+        accountsPosted.set(0);
+        interestPosted.set(0);
+        partitionsDone.set(0);
+        ledgers.clear();
+        partitionCount = registry.getPartitionCount();
+
+        long start = System.nanoTime();
+        pool.invoke(new PostingTask(registry, interestRate, rounding, 0, partitionCount));
+        commitLedgers();
+        long wallClockNanos = System.nanoTime() - start;
+
+        return new PostingReport(accountsPosted.get(), interestPosted.get(), partitionCount,
+                                 wallClockNanos, pool.getParallelism());
+    }
+
+    public PostingReport post(AccountRegistry registry, double interestRate) {
+        return post(registry, interestRate, RoundingMode.HALF_UP);
+    }
+
+    public long getAccountsPosted() {
+        return accountsPosted.get();
+    }
+
+    public int getPartitionsDone() {
+        return partitionsDone.get();
+    }
+
+    // Fraction of partitions finished, from 0.0 to 1.0
+    public double getProgress() {
+        int total = partitionCount;
+        return total == 0 ? 0.0 : (double) partitionsDone.get() / total;
+    }
+
+    @Override
+    public void close() {
+        pool.shutdown();
+    }
+
+    // Posts one partition while holding its lock
+    private void postPartition(AccountRegistry registry, int partition, double interestRate, RoundingMode rounding) {
+        BankAccount[] accounts = registry.getPartition(partition);
+        int count = accounts.length;
+        long[] balances = new long[count];
+        long[] interest = new long[count];
+        long total = 0;
+        AccountLedger lastLedger = null;
+        BankAccount.lockStripe(partition);
+        try {
+            for (int i = 0; i < count; i++) {
+                balances[i] = accounts[i].getBalanceCents();
+            }
+            Money.percentOf(balances, count, interestRate, rounding, interest);
+            for (int i = 0; i < count; i++) {
+                accounts[i].addInterestLocked(interest[i]);
+                total += interest[i];
+                AccountLedger ledger = accounts[i].getLedger();
+                if (ledger != null && ledger != lastLedger) {
+                    ledgers.add(ledger);
+                    lastLedger = ledger;
+                }
+            }
+        } finally {
+            BankAccount.unlockStripe(partition);
+        }
+        accountsPosted.addAndGet(count);
+        interestPosted.addAndGet(total);
+        partitionsDone.incrementAndGet();
+    }
+
+    // One disk sync per ledger for the whole run
+    private void commitLedgers() {
+        try {
+            for (AccountLedger ledger : ledgers) {
+                ledger.commit();
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    // Posts partitions [from, to), splitting the range so idle workers can steal half of it
+    private final class PostingTask extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+        private final AccountRegistry registry;
+        private final double interestRate;
+        private final RoundingMode rounding;
+        private final int from;
+        private final int to;
+
+        PostingTask(AccountRegistry registry, double interestRate, RoundingMode rounding, int from, int to) {
+            this.registry = registry;
+            this.interestRate = interestRate;
+            this.rounding = rounding;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from == 1) {
+                postPartition(registry, from, interestRate, rounding);
+                return;
+            }
+            int middle = (from + to) >>> 1;
+            invokeAll(new PostingTask(registry, interestRate, rounding, from, middle),
+                      new PostingTask(registry, interestRate, rounding, middle, to));
+        }
+    }
+
+    // Result of one posting run
+    public static class PostingReport {
+        private final long accounts;
+        private final long interestCents;
+        private final int partitions;
+        private final long wallClockNanos;
+        private final int parallelism;
+
+        PostingReport(long accounts, long interestCents, int partitions, long wallClockNanos, int parallelism) {
+            this.accounts = accounts;
+            this.interestCents = interestCents;
+            this.partitions = partitions;
+            this.wallClockNanos = wallClockNanos;
+            this.parallelism = parallelism;
+        }
+
+        public long getAccounts() {
+            return accounts;
+        }
+
+        // Sum of all interest posted, in cents
+        public long getInterestCents() {
+            return interestCents;
+        }
+
+        public int getPartitions() {
+            return partitions;
+        }
+
+        public long getWallClockNanos() {
+            return wallClockNanos;
+        }
+
+        public double getAccountsPerSecond() {
+            return wallClockNanos == 0 ? 0 : accounts * 1e9 / wallClockNanos;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("Interest posted: %d accounts, $%s in %d partitions, %.1f ms on %d threads (%.0f accounts/s)",
+                    accounts, Money.format(interestCents), partitions, wallClockNanos / 1e6, parallelism,
+                    getAccountsPerSecond());
+        }
+    }
+}
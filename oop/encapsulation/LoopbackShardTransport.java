@@ -0,0 +1,74 @@
+/**
+ * LoopbackShardTransport.java
+ * Runs every shard in this JVM, each behind its own request thread - the way a separate
+ * shard process would serve one request at a time from its socket. Requests and responses
+ * still travel as bytes, so everything except the network is exercised on one machine.
+ * Part of the Java Basics and OOP Tutorial
+ */
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+
+public class LoopbackShardTransport implements ShardTransport {
+    private final ShardNode[] nodes;
+    private final ExecutorService[] servers;
+
+    public LoopbackShardTransport(int shardCount) {
+        if (shardCount < 1) {
+            throw new IllegalArgumentException("shardCount must be at least 1");
+        }
+        nodes = new ShardNode[shardCount];
+        servers = new ExecutorService[shardCount];
+        for (int shard = 0; shard < shardCount; shard++) {
+            nodes[shard] = new ShardNode(shard);
+            final String name = "shard-" + shard;
+            servers[shard] = Executors.newSingleThreadExecutor(new ThreadFactory() {
+                @Override
+                public Thread newThread(Runnable task) {
+                    Thread thread = new Thread(task, name);
+                    thread.setDaemon(true);
+                    return thread;
+                }
+            });
+        }
+    }
+
+    @Override
+    public int getShardCount() {
+        return nodes.length;
+    }
+
+    // The node behind a shard (for inspection in tests and benchmarks)
+    public ShardNode getNode(int shard) {
+        return nodes[shard];
+    }
+
+    @Override
+    public byte[] send(int shard, final byte[] request) throws IOException {
+        final ShardNode node = nodes[shard];
+        try {
+            return servers[shard].submit(new Callable<byte[]>() {
+                @Override
+                public byte[] call() {
+                    return node.handle(request);
+                }
+            }).get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while waiting for shard " + shard);
+        } catch (ExecutionException e) {
+            throw new IOException("Shard " + shard + " failed", e.getCause());
+        }
+    }
+
+    @Override
+    public void close() {
+        for (ExecutorService server : servers) {
+            server.shutdown();
+        }
+    }
+}
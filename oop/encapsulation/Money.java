@@ -0,0 +1,158 @@
+/**
+ * Money.java
+ * Fixed-point money arithmetic on plain 'long' values that count cents.
+ * Every operation is exact (or rounds with an explicit RoundingMode) and allocates nothing
+ * (except interest at rates above 922%, see multiplyRatio), so balances never drift the
+ * way repeated double arithmetic does and the code stays as fast as working with doubles
+ * directly.
+ * Part of the Java Basics and OOP Tutorial
+ */
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+
+public final class Money {
+    // Amounts have two decimal places: 1 dollar = 100 cents
+    public static final int SCALE = 2;
+    public static final long CENTS_PER_DOLLAR = 100;
+
+    // Interest rates are turned into parts per billion of the balance before they are applied
+    private static final long RATE_DENOMINATOR = 1_000_000_000L;
+    // Largest rate (in parts per billion, about 922%) whose product with a remainder below
+    // RATE_DENOMINATOR always fits in a long
+    private static final long MAX_LONG_RATE = Long.MAX_VALUE / RATE_DENOMINATOR;
+
+    // Utility class: no instances
+    private Money() {
+    }
+
+    // Converts a dollar amount to the nearest whole number of cents
+    public static long fromDollars(double dollars) {
+        if (Double.isNaN(dollars) || Double.isInfinite(dollars)) {
+            throw new IllegalArgumentException("Not a valid amount: " + dollars);
+        }
+        double cents = dollars * CENTS_PER_DOLLAR;
+        if (Math.abs(cents) >= Long.MAX_VALUE) {
+            throw new ArithmeticException("Amount too large: " + dollars);
+        }
+        return Math.round(cents);
+    }
+
+    // Converts cents back to dollars (for display and for the double-based API)
+    public static double toDollars(long cents) {
+        return (double) cents / CENTS_PER_DOLLAR;
+    }
+
+    // Exact addition; throws ArithmeticException instead of silently overflowing
+    public static long add(long cents, long otherCents) {
+        return Math.addExact(cents, otherCents);
+    }
+
+    // Exact subtraction; throws ArithmeticException instead of silently overflowing
+    public static long subtract(long cents, long otherCents) {
+        return Math.subtractExact(cents, otherCents);
+    }
+
+    /**
+     * Returns ratePercent percent of an amount, rounded to whole cents with the given mode.
+     * The rate is taken with 7 decimal places (e.g. 2.5% or 0.0125%), which is then exact:
+     * no double multiplication touches the amount itself.
+     */
+    public static long percentOf(long cents, double ratePercent, RoundingMode rounding) {
+        return multiplyRatio(cents, ratePartsPerBillion(ratePercent), rounding);
+    }
+
+    // Shorthand for the usual "round half up" rule (the same rounding as "%.2f")
+    public static long percentOf(long cents, double ratePercent) {
+        return percentOf(cents, ratePercent, RoundingMode.HALF_UP);
+    }
+
+    // Bulk form: interest[i] = ratePercent percent of amounts[i] for the first 'count' amounts
+    public static void percentOf(long[] amounts, int count, double ratePercent, RoundingMode rounding, long[] interest) {
+        long rate = ratePartsPerBillion(ratePercent);
+        for (int i = 0; i < count; i++) {
+            interest[i] = multiplyRatio(amounts[i], rate, rounding);
+        }
+    }
+
+    // percent -> parts per billion: 1% = 10,000,000 / 1,000,000,000
+    private static long ratePartsPerBillion(double ratePercent) {
+        if (Double.isNaN(ratePercent) || Math.abs(ratePercent) > 1e9) {
+            throw new IllegalArgumentException("Not a valid rate: " + ratePercent);
+        }
+        return Math.round(ratePercent * (RATE_DENOMINATOR / 100));
+    }
+
+    // cents * rate / RATE_DENOMINATOR without overflowing; throws ArithmeticException only
+    // if the result itself does not fit in a long
+    private static long multiplyRatio(long cents, long rate, RoundingMode rounding) {
+        // Split the amount into billions and a remainder so each partial product fits in a long
+        long high = cents / RATE_DENOMINATOR;
+        long low = cents % RATE_DENOMINATOR;
+        long whole = Math.multiplyExact(high, rate);
+        long part;
+        if (Math.abs(rate) <= MAX_LONG_RATE) {
+            part = divide(low * rate, RATE_DENOMINATOR, rounding);
+        } else {
+            // low * rate may not fit in a long, but the rounded part is below |rate|
+            part = BigDecimal.valueOf(low).multiply(BigDecimal.valueOf(rate))
+                    .divide(BigDecimal.valueOf(RATE_DENOMINATOR), 0, rounding).longValueExact();
+        }
+        return Math.addExact(whole, part);
+    }
+
+    // Integer division that rounds the way 'rounding' says instead of always towards zero
+    public static long divide(long dividend, long divisor, RoundingMode rounding) {
+        long quotient = dividend / divisor;
+        long remainder = dividend % divisor;
+        if (remainder == 0) {
+            return quotient;
+        }
+        // The exact result lies between quotient and quotient + signum, where signum is the sign of the result
+        int signum = (dividend < 0) == (divisor < 0) ? 1 : -1;
+        long absRemainder = Math.abs(remainder);
+        long absDivisor = Math.abs(divisor);
+        int half = Long.compare(absRemainder, absDivisor - absRemainder); // <0 below half, 0 exactly half
+        boolean awayFromZero;
+        switch (rounding) {
+            case UP:
+                awayFromZero = true;
+                break;
+            case DOWN:
+                awayFromZero = false;
+                break;
+            case CEILING:
+                awayFromZero = signum > 0;
+                break;
+            case FLOOR:
+                awayFromZero = signum < 0;
+                break;
+            case HALF_UP:
+                awayFromZero = half >= 0;
+                break;
+            case HALF_DOWN:
+                awayFromZero = half > 0;
+                break;
+            case HALF_EVEN:
+                awayFromZero = half > 0 || (half == 0 && (quotient & 1) != 0);
+                break;
+            default: // UNNECESSARY
+                throw new ArithmeticException("Rounding necessary");
+        }
+        return awayFromZero ? quotient + signum : quotient;
+    }
+
+    // Formats cents as a plain decimal, e.g. 123456 -> "1234.56" and -5 -> "-0.05"
+    public static String format(long cents) {
+        StringBuilder text = new StringBuilder(24);
+        if (cents < 0) {
+            text.append('-');
+        }
+        long dollars = Math.abs(cents / CENTS_PER_DOLLAR);
+        int fraction = (int) Math.abs(cents % CENTS_PER_DOLLAR);
+        text.append(dollars).append('.');
+        if (fraction < 10) {
+            text.append('0');
+        }
+        return text.append(fraction).toString();
+    }
+}
@@ -0,0 +1,175 @@
+/**
+ * ShardCommitFailureCheck.java
+ * Checks that a cross-shard transfer in ShardedAccountStore loses no money when COMMIT or
+ * ABORT messages go missing. A FaultyTransport wraps LoopbackShardTransport and drops them:
+ *   - the second COMMIT of a transfer is lost before it reaches its shard
+ *   - the second COMMIT reaches its shard, but the answer is lost
+ *   - one shard cannot be reached for a while, so the transfer ends up in doubt and is
+ *     finished by resolveInDoubt() once the shard is back
+ *   - the receiving account does not exist and the ABORT cannot reach the paying shard, so
+ *     the held money is released by resolveInDoubt() once the shard is back
+ * After each case the money on all shards (balances plus held amounts) must add up to what
+ * was deposited; while a transfer is in doubt, none of it may be missing.
+ * Prints OK or MISMATCH per case; exits with status 1 if any case failed.
+ *
+ * Run:  javac *.java && java ShardCommitFailureCheck
+ * Part of the Java Basics and OOP Tutorial
+ */
+import java.io.IOException;
+
+public class ShardCommitFailureCheck {
+    private static final long OPENING_BALANCE = 1_000_00; // $1000
+    private static final long AMOUNT = 250_00;
+
+    // Passes requests to a LoopbackShardTransport, dropping the COMMITs and ABORTs it is told to drop
+    private static final class FaultyTransport implements ShardTransport {
+        final LoopbackShardTransport shards;
+        int commitsSeen;
+        int dropRequestOfCommit = -1;  // lose this COMMIT (1-based) before it is delivered
+        int dropAnswerOfCommit = -1;   // deliver this COMMIT but lose its answer
+        int unreachableShard = -1;     // every COMMIT to this shard is lost
+        int abortUnreachableShard = -1; // every ABORT to this shard is lost
+
+        FaultyTransport(int shardCount) {
+            shards = new LoopbackShardTransport(shardCount);
+        }
+
+        @Override
+        public int getShardCount() {
+            return shards.getShardCount();
+        }
+
+        @Override
+        public synchronized byte[] send(int shard, byte[] request) throws IOException {
+            if (request[0] == ShardProtocol.ABORT && shard == abortUnreachableShard) {
+                throw new IOException("ABORT to shard " + shard + " was lost");
+            }
+            if (request[0] != ShardProtocol.COMMIT) {
+                return shards.send(shard, request);
+            }
+            commitsSeen++;
+            if (commitsSeen == dropRequestOfCommit || shard == unreachableShard) {
+                throw new IOException("COMMIT " + commitsSeen + " to shard " + shard + " was lost");
+            }
+            byte[] answer = shards.send(shard, request);
+            if (commitsSeen == dropAnswerOfCommit) {
+                throw new IOException("Answer to COMMIT " + commitsSeen + " from shard " + shard + " was lost");
+            }
+            return answer;
+        }
+
+        @Override
+        public void close() {
+            shards.close();
+        }
+    }
+
+    public static void main(String[] args) {
+        boolean ok = true;
+
+        FaultyTransport transport = new FaultyTransport(2);
+        transport.dropRequestOfCommit = 2;
+        ok &= report("second COMMIT lost", runTransfer(transport, false));
+
+        transport = new FaultyTransport(2);
+        transport.dropAnswerOfCommit = 2;
+        ok &= report("second COMMIT's answer lost", runTransfer(transport, false));
+
+        transport = new FaultyTransport(2);
+        transport.unreachableShard = 0; // the first account below lives on shard 0: the paying side
+        ok &= report("paying shard unreachable", runTransfer(transport, true));
+
+        transport = new FaultyTransport(2);
+        transport.unreachableShard = 1; // the receiving side
+        ok &= report("receiving shard unreachable", runTransfer(transport, true));
+
+        transport = new FaultyTransport(2);
+        transport.abortUnreachableShard = 0;
+        ok &= report("ABORT to paying shard lost", runFailedTransfer(transport));
+
+        if (!ok) {
+            System.exit(1);
+        }
+    }
+
+    // Moves AMOUNT from shard 0 to an account shard 1 does not have; the paying shard holds
+    // the money until its ABORT gets through
+    private static boolean runFailedTransfer(FaultyTransport transport) {
+        try (ShardedAccountStore store = new ShardedAccountStore(transport)) {
+            String from = accountOn(store, 0);
+            String to = accountOn(store, 1);
+            store.openAccount(from, "Payer", OPENING_BALANCE);
+
+            if (store.transfer(from, to, AMOUNT) != ShardedAccountStore.Result.UNKNOWN_ACCOUNT
+                    || store.getInDoubtTransfers() != 1 || totalCents(transport) != OPENING_BALANCE) {
+                return false;
+            }
+            transport.abortUnreachableShard = -1;
+            return store.resolveInDoubt() == 0 && store.getBalanceCents(from) == OPENING_BALANCE
+                    && pending(transport) == 0;
+        }
+    }
+
+    // Opens one account per shard, moves AMOUNT from shard 0 to shard 1 and returns whether
+    // the outcome was the expected one
+    private static boolean runTransfer(FaultyTransport transport, boolean expectInDoubt) {
+        try (ShardedAccountStore store = new ShardedAccountStore(transport)) {
+            String from = accountOn(store, 0);
+            String to = accountOn(store, 1);
+            store.openAccount(from, "Payer", OPENING_BALANCE);
+            store.openAccount(to, "Payee", OPENING_BALANCE);
+
+            ShardedAccountStore.Result result = store.transfer(from, to, AMOUNT);
+            if (expectInDoubt) {
+                // nothing may be lost while in doubt; the paying shard may still hold money the
+                // receiving shard already has, which the debit COMMIT will release
+                if (result != ShardedAccountStore.Result.IN_DOUBT || store.getInDoubtTransfers() != 1
+                        || totalCents(transport) < 2 * OPENING_BALANCE) {
+                    return false;
+                }
+                // the shard comes back and the coordinator finishes the transfer
+                transport.unreachableShard = -1;
+                if (store.resolveInDoubt() != 0) {
+                    return false;
+                }
+            } else if (result != ShardedAccountStore.Result.COMPLETED || store.getInDoubtTransfers() != 0) {
+                return false;
+            }
+            return store.getBalanceCents(from) == OPENING_BALANCE - AMOUNT
+                    && store.getBalanceCents(to) == OPENING_BALANCE + AMOUNT
+                    && totalCents(transport) == 2 * OPENING_BALANCE && pending(transport) == 0;
+        }
+    }
+
+    private static boolean report(String name, boolean passed) {
+        System.out.printf("%-30s %s%n", name, passed ? "OK" : "MISMATCH");
+        return passed;
+    }
+
+    private static String accountOn(ShardedAccountStore store, int shard) {
+        for (int i = 0; ; i++) {
+            String account = "ACC" + i;
+            if (store.shardOf(account) == shard) {
+                return account;
+            }
+        }
+    }
+
+    // The money in all accounts plus the money held for unfinished transfers
+    private static long totalCents(FaultyTransport transport) {
+        long total = 0;
+        for (int shard = 0; shard < transport.getShardCount(); shard++) {
+            ShardNode node = transport.shards.getNode(shard);
+            total += node.getTotalBalanceCents() + node.getHeldCents();
+        }
+        return total;
+    }
+
+    private static int pending(FaultyTransport transport) {
+        int pending = 0;
+        for (int shard = 0; shard < transport.getShardCount(); shard++) {
+            pending += transport.shards.getNode(shard).getPendingTransactions();
+        }
+        return pending;
+    }
+}
@@ -0,0 +1,177 @@
+/**
+ * ShardNode.java
+ * The server side of one shard: owns the BankAccounts whose numbers hash to this shard
+ * and answers ShardProtocol requests. In a multi-JVM deployment each JVM runs one node
+ * behind a network ShardTransport; LoopbackShardTransport runs all of them in-process.
+ *
+ * Cross-shard transfers use two phases. PREPARE_DEBIT takes the money off the paying
+ * account and holds it; PREPARE_CREDIT only checks that the receiving account exists.
+ * COMMIT then releases the hold (paying shard) or deposits the money (receiving shard),
+ * and ABORT gives held money back. While a transfer is in flight its money is in exactly
+ * one hold, so balances plus holds never change.
+ * Part of the Java Basics and OOP Tutorial
+ */
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+public class ShardNode {
+    // A prepared, not yet committed or aborted part of a transfer
+    private static final class Pending {
+        final BankAccount account;
+        final long amountCents;
+        final boolean debit;
+
+        Pending(BankAccount account, long amountCents, boolean debit) {
+            this.account = account;
+            this.amountCents = amountCents;
+            this.debit = debit;
+        }
+    }
+
+    private final int shard;
+    private final AccountRegistry accounts = new AccountRegistry();
+    private final ConcurrentMap<Long, Pending> pending = new ConcurrentHashMap<>();
+
+    public ShardNode(int shard) {
+        this.shard = shard;
+    }
+
+    public int getShard() {
+        return shard;
+    }
+
+    // Handles one encoded request and returns the encoded response
+    public byte[] handle(byte[] requestBytes) {
+        ShardProtocol.Request request = ShardProtocol.Request.decode(requestBytes);
+        switch (request.op) {
+            case ShardProtocol.OPEN:
+                return open(request);
+            case ShardProtocol.COMMIT:
+                return commit(request.transactionId);
+            case ShardProtocol.ABORT:
+                return abort(request.transactionId);
+            default:
+                break;
+        }
+
+        BankAccount account = accounts.getAccount(request.account);
+        if (account == null) {
+            return ShardProtocol.response(ShardProtocol.UNKNOWN_ACCOUNT, 0);
+        }
+        if (request.op == ShardProtocol.BALANCE) {
+            return ShardProtocol.response(ShardProtocol.OK, account.getBalanceCents());
+        }
+        if (request.amountCents <= 0) {
+            return ShardProtocol.response(ShardProtocol.INVALID_AMOUNT, account.getBalanceCents());
+        }
+        switch (request.op) {
+            case ShardProtocol.DEPOSIT:
+                return ShardProtocol.response(ShardProtocol.OK, account.depositCents(request.amountCents));
+            case ShardProtocol.WITHDRAW:
+                return withdraw(account, request.amountCents);
+            case ShardProtocol.TRANSFER:
+                return transfer(account, request.otherAccount, request.amountCents);
+            case ShardProtocol.PREPARE_DEBIT: {
+                byte[] response = withdraw(account, request.amountCents);
+                if (ShardProtocol.status(response) == ShardProtocol.OK) {
+                    pending.put(request.transactionId, new Pending(account, request.amountCents, true));
+                }
+                return response;
+            }
+            case ShardProtocol.PREPARE_CREDIT:
+                pending.put(request.transactionId, new Pending(account, request.amountCents, false));
+                return ShardProtocol.response(ShardProtocol.OK, account.getBalanceCents());
+            default:
+                return ShardProtocol.response(ShardProtocol.BAD_REQUEST, 0);
+        }
+    }
+
+    private byte[] open(ShardProtocol.Request request) {
+        if (request.account == null || request.amountCents < 0) {
+            return ShardProtocol.response(ShardProtocol.INVALID_AMOUNT, 0);
+        }
+        BankAccount account = new BankAccount(request.account, request.holderName);
+        try {
+            accounts.register(account);
+        } catch (IllegalArgumentException e) {
+            return ShardProtocol.response(ShardProtocol.DUPLICATE_ACCOUNT, 0);
+        }
+        long balance = request.amountCents > 0 ? account.depositCents(request.amountCents) : 0;
+        return ShardProtocol.response(ShardProtocol.OK, balance);
+    }
+
+    private static byte[] withdraw(BankAccount account, long cents) {
+        long balance = account.withdrawCents(cents);
+        if (balance < 0) {
+            return ShardProtocol.response(ShardProtocol.INSUFFICIENT_FUNDS, account.getBalanceCents());
+        }
+        return ShardProtocol.response(ShardProtocol.OK, balance);
+    }
+
+    // Both accounts live on this shard: an ordinary locked transfer
+    private byte[] transfer(BankAccount from, String toNumber, long cents) {
+        BankAccount to = accounts.getAccount(toNumber);
+        if (to == null) {
+            return ShardProtocol.response(ShardProtocol.UNKNOWN_ACCOUNT, from.getBalanceCents());
+        }
+        boolean transferred;
+        long balance;
+        BankAccount.lockBoth(from, to);
+        try {
+            transferred = from.transferLocked(to, cents);
+            balance = from.getBalanceCents();
+        } finally {
+            BankAccount.unlockBoth(from, to);
+        }
+        return ShardProtocol.response(transferred ? ShardProtocol.OK : ShardProtocol.INSUFFICIENT_FUNDS, balance);
+    }
+
+    private byte[] commit(long transactionId) {
+        Pending part = pending.remove(transactionId);
+        if (part == null) {
+            return ShardProtocol.response(ShardProtocol.UNKNOWN_TRANSACTION, 0);
+        }
+        // A debit's money already left the account at prepare time
+        long balance = part.debit ? part.account.getBalanceCents() : part.account.depositCents(part.amountCents);
+        return ShardProtocol.response(ShardProtocol.OK, balance);
+    }
+
+    // Aborting an unknown transaction is fine: the prepare may never have arrived
+    private byte[] abort(long transactionId) {
+        Pending part = pending.remove(transactionId);
+        if (part == null) {
+            return ShardProtocol.response(ShardProtocol.OK, 0);
+        }
+        long balance = part.debit ? part.account.depositCents(part.amountCents) : part.account.getBalanceCents();
+        return ShardProtocol.response(ShardProtocol.OK, balance);
+    }
+
+    // ---- Inspection ----
+
+    public int getAccountCount() {
+        return accounts.size();
+    }
+
+    // Money held by prepared debits that are not committed or aborted yet
+    public long getHeldCents() {
+        long held = 0;
+        for (Pending part : pending.values()) {
+            if (part.debit) {
+                held += part.amountCents;
+            }
+        }
+        return held;
+    }
+
+    public int getPendingTransactions() {
+        return pending.size();
+    }
+
+    public long getTotalBalanceCents() {
+        long total = 0;
+        for (BankAccount account : accounts.getAccounts()) {
+            total += account.getBalanceCents();
+        }
+        return total;
+    }
+}
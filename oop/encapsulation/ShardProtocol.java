@@ -0,0 +1,130 @@
+/**
+ * ShardProtocol.java
+ * The messages ShardedAccountStore sends to the shards and their binary encoding.
+ * Everything crosses a ShardTransport as byte arrays, so the same messages work in one
+ * process (LoopbackShardTransport) or between JVMs.
+ *
+ * Request:  [byte op][long transaction id][long amount][string account][string other account]
+ *           [string holder name]     (strings: short length + UTF-8, -1 = null)
+ * Response: [byte status][long balance]
+ * Part of the Java Basics and OOP Tutorial
+ */
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+final class ShardProtocol {
+    // Operations
+    static final byte OPEN = 1;            // account, holder, amount = opening balance
+    static final byte BALANCE = 2;         // account
+    static final byte DEPOSIT = 3;         // account, amount
+    static final byte WITHDRAW = 4;        // account, amount
+    static final byte TRANSFER = 5;        // account -> other account, both on this shard
+    static final byte PREPARE_DEBIT = 6;   // two-phase: take the amount off the account and hold it
+    static final byte PREPARE_CREDIT = 7;  // two-phase: check the account can receive the amount
+    static final byte COMMIT = 8;          // two-phase: finish a prepared transaction
+    static final byte ABORT = 9;           // two-phase: undo a prepared transaction
+
+    // Response status codes
+    static final byte OK = 0;
+    static final byte UNKNOWN_ACCOUNT = 1;
+    static final byte INSUFFICIENT_FUNDS = 2;
+    static final byte INVALID_AMOUNT = 3;
+    static final byte DUPLICATE_ACCOUNT = 4;
+    static final byte UNKNOWN_TRANSACTION = 5;
+    static final byte BAD_REQUEST = 6;
+
+    private ShardProtocol() {
+    }
+
+    static final class Request {
+        byte op;
+        long transactionId;
+        long amountCents;
+        String account;
+        String otherAccount;
+        String holderName;
+
+        Request(byte op, long transactionId, long amountCents, String account, String otherAccount, String holderName) {
+            this.op = op;
+            this.transactionId = transactionId;
+            this.amountCents = amountCents;
+            this.account = account;
+            this.otherAccount = otherAccount;
+            this.holderName = holderName;
+        }
+
+        byte[] encode() {
+            byte[] accountBytes = utf8(account);
+            byte[] otherBytes = utf8(otherAccount);
+            byte[] holderBytes = utf8(holderName);
+            ByteBuffer out = ByteBuffer.allocate(17 + 6 + length(accountBytes) + length(otherBytes) + length(holderBytes));
+            out.put(op);
+            out.putLong(transactionId);
+            out.putLong(amountCents);
+            putString(out, accountBytes);
+            putString(out, otherBytes);
+            putString(out, holderBytes);
+            return out.array();
+        }
+
+        static Request decode(byte[] bytes) {
+            ByteBuffer in = ByteBuffer.wrap(bytes);
+            byte op = in.get();
+            long transactionId = in.getLong();
+            long amountCents = in.getLong();
+            String account = getString(in);
+            String otherAccount = getString(in);
+            String holderName = getString(in);
+            return new Request(op, transactionId, amountCents, account, otherAccount, holderName);
+        }
+    }
+
+    // Responses are fixed-size: status + balance
+    static byte[] response(byte status, long balanceCents) {
+        return ByteBuffer.allocate(9).put(status).putLong(balanceCents).array();
+    }
+
+    static byte status(byte[] response) {
+        return response[0];
+    }
+
+    static long balance(byte[] response) {
+        return ByteBuffer.wrap(response, 1, 8).getLong();
+    }
+
+    // ---- Strings ----
+
+    private static byte[] utf8(String value) {
+        if (value == null) {
+            return null;
+        }
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        if (bytes.length > Short.MAX_VALUE) {
+            throw new IllegalArgumentException("String too long for a shard message: " + bytes.length + " bytes");
+        }
+        return bytes;
+    }
+
+    private static int length(byte[] bytes) {
+        return bytes == null ? 0 : bytes.length;
+    }
+
+    private static void putString(ByteBuffer out, byte[] bytes) {
+        if (bytes == null) {
+            out.putShort((short) -1);
+            return;
+        }
+        out.putShort((short) bytes.length);
+        out.put(bytes);
+    }
+
+    private static String getString(ByteBuffer in) {
+        int length = in.getShort();
+        if (length < 0) {
+            return null;
+        }
+        String value = new String(in.array(), in.position(), length, StandardCharsets.UTF_8);
+        in.position(in.position() + length);
+        return value;
+    }
+}
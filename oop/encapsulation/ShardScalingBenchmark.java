@@ -0,0 +1,84 @@
+/**
+ * ShardScalingBenchmark.java
+ * Measures how ShardedAccountStore's transfer throughput grows as shards are added.
+ * Uses LoopbackShardTransport (every shard has its own request thread), random transfers
+ * between random accounts, and two client threads per shard. After every run it checks
+ * that no money was created or lost and that no two-phase transfer was left open.
+ *
+ * Run:  javac *.java && java ShardScalingBenchmark [max shards] [accounts] [millis per run]
+ * Part of the Java Basics and OOP Tutorial
+ */
+import java.util.Random;
+
+public class ShardScalingBenchmark {
+    private static final long OPENING_BALANCE = 1_000_00; // $1000
+
+    public static void main(String[] args) throws InterruptedException {
+        int maxShards = args.length > 0 ? Integer.parseInt(args[0]) : 8;
+        int accountCount = args.length > 1 ? Integer.parseInt(args[1]) : 10_000;
+        long millis = args.length > 2 ? Long.parseLong(args[2]) : 2000;
+
+        System.out.printf("%6s %8s %14s %12s %10s%n", "shards", "clients", "transfers/s", "cross-shard", "check");
+        double baseline = 0;
+        for (int shards = 1; shards <= maxShards; shards *= 2) {
+            LoopbackShardTransport transport = new LoopbackShardTransport(shards);
+            try (ShardedAccountStore store = new ShardedAccountStore(transport)) {
+                String[] numbers = new String[accountCount];
+                for (int i = 0; i < accountCount; i++) {
+                    numbers[i] = "ACC-" + i;
+                    store.openAccount(numbers[i], "Holder " + i, OPENING_BALANCE);
+                }
+                int clients = 2 * shards;
+                run(store, numbers, clients, millis / 4); // warm-up
+                long before = store.getLocalTransfers() + store.getCrossShardTransfers();
+                long crossBefore = store.getCrossShardTransfers();
+                run(store, numbers, clients, millis);
+                long transfers = store.getLocalTransfers() + store.getCrossShardTransfers() - before;
+                long cross = store.getCrossShardTransfers() - crossBefore;
+
+                double perSecond = transfers * 1000.0 / millis;
+                if (baseline == 0) {
+                    baseline = perSecond;
+                }
+                System.out.printf("%6d %8d %14.0f %11.1f%% %10s   (%.2fx)%n", shards, clients, perSecond,
+                        transfers == 0 ? 0.0 : cross * 100.0 / transfers, check(transport, accountCount),
+                        perSecond / baseline);
+            }
+        }
+    }
+
+    private static void run(final ShardedAccountStore store, final String[] numbers, int clients, long millis)
+            throws InterruptedException {
+        final long deadline = System.nanoTime() + millis * 1_000_000L;
+        Thread[] threads = new Thread[clients];
+        for (int c = 0; c < clients; c++) {
+            final Random random = new Random(c);
+            threads[c] = new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    while (System.nanoTime() < deadline) {
+                        String from = numbers[random.nextInt(numbers.length)];
+                        String to = numbers[random.nextInt(numbers.length)];
+                        store.transfer(from, to, 1 + random.nextInt(10_000));
+                    }
+                }
+            });
+            threads[c].start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+    }
+
+    // Every cent must still be in some account, with no transfer left half done
+    private static String check(LoopbackShardTransport transport, int accountCount) {
+        long total = 0;
+        int pending = 0;
+        for (int shard = 0; shard < transport.getShardCount(); shard++) {
+            ShardNode node = transport.getNode(shard);
+            total += node.getTotalBalanceCents() + node.getHeldCents();
+            pending += node.getPendingTransactions();
+        }
+        return total == OPENING_BALANCE * accountCount && pending == 0 ? "OK" : "MISMATCH";
+    }
+}
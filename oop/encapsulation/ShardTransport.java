@@ -0,0 +1,19 @@
+/**
+ * ShardTransport.java
+ * Carries encoded ShardProtocol requests from a ShardedAccountStore to the shard nodes and
+ * brings back their responses. Implementations decide where the nodes live: in this process
+ * (LoopbackShardTransport) or in other JVMs (a socket or RPC transport that hands the bytes
+ * to ShardNode.handle on the other side).
+ * Part of the Java Basics and OOP Tutorial
+ */
+import java.io.IOException;
+
+public interface ShardTransport extends AutoCloseable {
+    int getShardCount();
+
+    // Sends one request to 'shard' and waits for its response
+    byte[] send(int shard, byte[] request) throws IOException;
+
+    @Override
+    void close();
+}
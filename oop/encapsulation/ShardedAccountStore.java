@@ -0,0 +1,266 @@
+/**
+ * ShardedAccountStore.java
+ * Bank accounts spread over several shards (one per JVM, or all in one process with
+ * LoopbackShardTransport). An account lives on the shard its account number hashes to.
+ *
+ * Single-account operations and transfers between two accounts of the same shard are one
+ * request. A transfer between shards uses two-phase commit, with this store as coordinator:
+ *   1. PREPARE_DEBIT on the paying shard (the money is taken off and held)
+ *   2. PREPARE_CREDIT on the receiving shard (checks the account exists)
+ *   3. the decision to commit is logged, then COMMIT goes to the receiving shard, and only
+ *      after that is acknowledged to the paying shard, which releases its hold
+ *      - or, if either prepare failed, the decision to abort is logged and ABORT goes to
+ *        every shard that may have prepared
+ * Each COMMIT or ABORT is retried until its shard confirms it. If a shard still cannot be
+ * reached, the decision stays in the log and resolveInDoubt() carries it out later; until
+ * then the money stays held on the paying shard (ShardNode.getHeldCents). A commit that is
+ * not confirmed makes transfer() return IN_DOUBT; an abort does not change its result.
+ * The log lives in this object; a coordinator that must survive restarts would write it to
+ * disk (for example through an AccountLedger-style file) before sending the COMMITs.
+ * Part of the Java Basics and OOP Tutorial
+ */
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.Random;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+public class ShardedAccountStore implements AutoCloseable {
+    public enum Result {
+        COMPLETED,
+        UNKNOWN_ACCOUNT,
+        INSUFFICIENT_FUNDS,
+        INVALID_AMOUNT,
+        DUPLICATE_ACCOUNT,
+        // both shards agreed, but a COMMIT is not confirmed yet; see resolveInDoubt()
+        IN_DOUBT
+    }
+
+    // How often a COMMIT or ABORT is sent before it is left to resolveInDoubt()
+    private static final int DECISION_ATTEMPTS = 5;
+
+    // A cross-shard transfer that was decided to commit or to abort; removed once both shards
+    // have confirmed the decision
+    private static final class Decision {
+        final long transaction;
+        final int fromShard;
+        final int toShard;
+        final boolean commit;
+        // Guarded by the decision's lock: whether a COMMIT went unanswered (it may have
+        // been applied) and whether each shard confirmed the decision
+        boolean creditUnanswered;
+        boolean debitUnanswered;
+        boolean creditConfirmed;
+        boolean debitConfirmed;
+
+        Decision(long transaction, int fromShard, int toShard, boolean commit) {
+            this.transaction = transaction;
+            this.fromShard = fromShard;
+            this.toShard = toShard;
+            this.commit = commit;
+        }
+    }
+
+    private final ShardTransport transport;
+    // Transaction ids: a random coordinator id in the top 16 bits keeps ids from several
+    // coordinators apart, the lower bits count up
+    private final AtomicLong nextTransaction = new AtomicLong((long) new Random().nextInt(1 << 16) << 48);
+    private final LongAdder localTransfers = new LongAdder();
+    private final LongAdder crossShardTransfers = new LongAdder();
+    // The decision log: transaction id -> transfers whose COMMITs or ABORTs are not all confirmed
+    private final ConcurrentMap<Long, Decision> decisions = new ConcurrentHashMap<>();
+
+    public ShardedAccountStore(ShardTransport transport) {
+        this.transport = transport;
+    }
+
+    public int getShardCount() {
+        return transport.getShardCount();
+    }
+
+    // The shard that owns an account number
+    public int shardOf(String accountNumber) {
+        int h = accountNumber.hashCode() * 0x9E3779B9;
+        return Math.floorMod(h ^ (h >>> 16), transport.getShardCount());
+    }
+
+    public Result openAccount(String accountNumber, String holderName, long initialCents) {
+        byte[] response = send(shardOf(accountNumber),
+                new ShardProtocol.Request(ShardProtocol.OPEN, 0, initialCents, accountNumber, null, holderName));
+        return result(response);
+    }
+
+    // Balance in cents; IllegalArgumentException if the account does not exist
+    public long getBalanceCents(String accountNumber) {
+        byte[] response = send(shardOf(accountNumber),
+                new ShardProtocol.Request(ShardProtocol.BALANCE, 0, 0, accountNumber, null, null));
+        if (ShardProtocol.status(response) != ShardProtocol.OK) {
+            throw new IllegalArgumentException("Unknown account: " + accountNumber);
+        }
+        return ShardProtocol.balance(response);
+    }
+
+    public Result deposit(String accountNumber, long cents) {
+        return result(send(shardOf(accountNumber),
+                new ShardProtocol.Request(ShardProtocol.DEPOSIT, 0, cents, accountNumber, null, null)));
+    }
+
+    public Result withdraw(String accountNumber, long cents) {
+        return result(send(shardOf(accountNumber),
+                new ShardProtocol.Request(ShardProtocol.WITHDRAW, 0, cents, accountNumber, null, null)));
+    }
+
+    public Result transfer(String fromAccount, String toAccount, long cents) {
+        if (cents <= 0) {
+            return Result.INVALID_AMOUNT;
+        }
+        int fromShard = shardOf(fromAccount);
+        int toShard = shardOf(toAccount);
+        if (fromShard == toShard) {
+            localTransfers.increment();
+            return result(send(fromShard,
+                    new ShardProtocol.Request(ShardProtocol.TRANSFER, 0, cents, fromAccount, toAccount, null)));
+        }
+        crossShardTransfers.increment();
+
+        long transaction = nextTransaction.incrementAndGet();
+        byte[] debit;
+        byte[] credit;
+        try {
+            debit = send(fromShard, new ShardProtocol.Request(ShardProtocol.PREPARE_DEBIT, transaction, cents,
+                                                               fromAccount, null, null));
+            if (ShardProtocol.status(debit) != ShardProtocol.OK) {
+                return result(debit);
+            }
+            credit = send(toShard, new ShardProtocol.Request(ShardProtocol.PREPARE_CREDIT, transaction, cents,
+                                                              toAccount, null, null));
+        } catch (UncheckedIOException e) {
+            // either shard may have prepared before the connection failed
+            decide(new Decision(transaction, fromShard, toShard, false));
+            throw e;
+        }
+        if (ShardProtocol.status(credit) != ShardProtocol.OK) {
+            Decision abort = new Decision(transaction, fromShard, toShard, false);
+            abort.creditConfirmed = true; // the receiving shard did not prepare
+            decide(abort);
+            return result(credit);
+        }
+        // Both sides are prepared: log the decision, then it only has to be carried out
+        return decide(new Decision(transaction, fromShard, toShard, true)) ? Result.COMPLETED : Result.IN_DOUBT;
+    }
+
+    // Retries the COMMITs and ABORTs of every unfinished decision; returns how many are left
+    public int resolveInDoubt() {
+        for (Decision decision : decisions.values()) {
+            finish(decision);
+        }
+        return decisions.size();
+    }
+
+    public int getInDoubtTransfers() {
+        return decisions.size();
+    }
+
+    public long getLocalTransfers() {
+        return localTransfers.sum();
+    }
+
+    public long getCrossShardTransfers() {
+        return crossShardTransfers.sum();
+    }
+
+    @Override
+    public void close() {
+        transport.close();
+    }
+
+    // Logs a decision and tries to carry it out; true once both shards have confirmed it
+    private boolean decide(Decision decision) {
+        decisions.put(decision.transaction, decision);
+        return finish(decision);
+    }
+
+    // Credit first: until the receiving shard has the money, the paying shard keeps holding it.
+    // An abort has no order; each side is released as soon as its shard can be reached.
+    private boolean finish(Decision decision) {
+        synchronized (decision) {
+            if (!decisions.containsKey(decision.transaction)) {
+                return true; // finished by another thread
+            }
+            if (!decision.creditConfirmed) {
+                decision.creditConfirmed = carryOut(decision, true);
+                if (!decision.creditConfirmed && decision.commit) {
+                    return false;
+                }
+            }
+            if (!decision.debitConfirmed) {
+                decision.debitConfirmed = carryOut(decision, false);
+            }
+            if (!decision.creditConfirmed || !decision.debitConfirmed) {
+                return false;
+            }
+            decisions.remove(decision.transaction);
+            return true;
+        }
+    }
+
+    // Sends COMMIT or ABORT to one side until that shard confirms it. Only this coordinator
+    // commits or aborts its transactions, so UNKNOWN_TRANSACTION after an unanswered COMMIT
+    // means that COMMIT was applied and only its answer was lost. ABORT is always answered
+    // with OK, whether or not the shard had prepared.
+    private boolean carryOut(Decision decision, boolean credit) {
+        int shard = credit ? decision.toShard : decision.fromShard;
+        byte op = decision.commit ? ShardProtocol.COMMIT : ShardProtocol.ABORT;
+        byte[] request = new ShardProtocol.Request(op, decision.transaction, 0, null, null, null).encode();
+        for (int attempt = 0; attempt < DECISION_ATTEMPTS; attempt++) {
+            boolean unanswered = credit ? decision.creditUnanswered : decision.debitUnanswered;
+            try {
+                byte status = ShardProtocol.status(transport.send(shard, request));
+                if (status == ShardProtocol.OK || (status == ShardProtocol.UNKNOWN_TRANSACTION && unanswered)) {
+                    return true;
+                }
+            } catch (IOException | RuntimeException e) {
+                // the request or its answer was lost: it may or may not have been applied
+                if (credit) {
+                    decision.creditUnanswered = true;
+                } else {
+                    decision.debitUnanswered = true;
+                }
+            }
+            try {
+                Thread.sleep(1L << attempt);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return false;
+            }
+        }
+        return false;
+    }
+
+    private byte[] send(int shard, ShardProtocol.Request request) {
+        try {
+            return transport.send(shard, request.encode());
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private static Result result(byte[] response) {
+        switch (ShardProtocol.status(response)) {
+            case ShardProtocol.OK:
+                return Result.COMPLETED;
+            case ShardProtocol.UNKNOWN_ACCOUNT:
+                return Result.UNKNOWN_ACCOUNT;
+            case ShardProtocol.INSUFFICIENT_FUNDS:
+                return Result.INSUFFICIENT_FUNDS;
+            case ShardProtocol.INVALID_AMOUNT:
+                return Result.INVALID_AMOUNT;
+            case ShardProtocol.DUPLICATE_ACCOUNT:
+                return Result.DUPLICATE_ACCOUNT;
+            default:
+                throw new IllegalStateException("Unexpected shard status " + ShardProtocol.status(response));
+        }
+    }
+}
@@ -0,0 +1,123 @@
+/**
+ * TransferBatch.java
+ * Applies many transfers at once, for settlement runs that move millions of small amounts.
+ *
+ * Compared with calling transferTo() in a loop, a batch
+ *   - locks every involved account once, in the same global order transferTo() uses,
+ *   - applies all transfers in one pass (in the order they were added),
+ *   - commits each involved AccountLedger once for the whole batch, and
+ *   - reports a Status per transfer instead of printing two lines each.
+ * Part of the Java Basics and OOP Tutorial
+ */
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+public class TransferBatch {
+    // Outcome of one transfer in the batch
+    public enum Status {
+        COMPLETED,
+        INVALID_AMOUNT,      // the amount was not positive
+        INSUFFICIENT_FUNDS   // the source account did not have the money when the transfer ran
+    }
+
+    // One transfer per index: from[i] pays amountCents[i] to to[i]
+    private BankAccount[] from;
+    private BankAccount[] to;
+    private long[] amountCents;
+    private int size;
+
+    public TransferBatch() {
+        this(64);
+    }
+
+    public TransferBatch(int initialCapacity) {
+        int capacity = Math.max(1, initialCapacity);
+        from = new BankAccount[capacity];
+        to = new BankAccount[capacity];
+        amountCents = new long[capacity];
+    }
+
+    // Adds a transfer of 'amount' dollars from one account to another
+    public TransferBatch add(BankAccount fromAccount, BankAccount toAccount, double amount) {
+        return addCents(fromAccount, toAccount, amount > 0 ? Money.fromDollars(amount) : 0);
+    }
+
+    public TransferBatch addCents(BankAccount fromAccount, BankAccount toAccount, long cents) {
+        if (fromAccount == null || toAccount == null) {
+            throw new NullPointerException("Both accounts of a transfer are required");
+        }
+        if (size == from.length) {
+            int capacity = size * 2;
+            from = Arrays.copyOf(from, capacity);
+            to = Arrays.copyOf(to, capacity);
+            amountCents = Arrays.copyOf(amountCents, capacity);
+        }
+        from[size] = fromAccount;
+        to[size] = toAccount;
+        amountCents[size] = cents;
+        size++;
+        return this;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    // Removes all transfers so the batch can be reused
+    public void clear() {
+        Arrays.fill(from, 0, size, null);
+        Arrays.fill(to, 0, size, null);
+        size = 0;
+    }
+
+    /**
+     * Runs every transfer and returns their outcomes (status[i] belongs to the i-th transfer added).
+     * Each transfer sees the balances left by the transfers before it, so a transfer can spend
+     * money that arrived earlier in the same batch. The batch stays as it is; call clear() to reuse it.
+     */
+    public Status[] execute() {
+        Status[] results = new Status[size];
+        List<AccountLedger> ledgers = new ArrayList<>();
+        int[] stripes = BankAccount.lockAll(from, to, size);
+        try {
+            for (int i = 0; i < size; i++) {
+                if (amountCents[i] <= 0) {
+                    results[i] = Status.INVALID_AMOUNT;
+                } else if (from[i].transferLocked(to[i], amountCents[i])) {
+                    results[i] = Status.COMPLETED;
+                    addLedger(ledgers, from[i].getLedger());
+                    addLedger(ledgers, to[i].getLedger());
+                } else {
+                    results[i] = Status.INSUFFICIENT_FUNDS;
+                }
+            }
+        } finally {
+            BankAccount.unlockAll(stripes);
+        }
+        // Group commit: one disk sync per ledger for the whole batch
+        try {
+            for (AccountLedger ledger : ledgers) {
+                ledger.commit();
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return results;
+    }
+
+    // Batches usually touch one or two ledgers, so a linear search beats a set
+    private static void addLedger(List<AccountLedger> ledgers, AccountLedger ledger) {
+        if (ledger == null) {
+            return;
+        }
+        for (AccountLedger known : ledgers) {
+            if (known == ledger) {
+                return;
+            }
+        }
+        ledgers.add(ledger);
+    }
+}
@@ -2,31 +2,76 @@
  * BankAccount.java
  * Demonstrates encapsulation in Java - the practice of bundling data and methods
  * and restricting direct access to internal state
+ * Thread-safe: the balance is kept in cents and only changed while holding the
+ * account's lock stripe, so concurrent deposits, withdrawals and transfers never lose updates
+ * All arithmetic on the balance goes through Money, so amounts stay exact to the cent
+ * Changes are reported as BalanceEvents: printed right away by default, or handed to a
+ * BalanceEventBus so busy threads never wait for the console
+ * Reads never lock: a single balance is one volatile read, and balances of several
+ * accounts are read optimistically (see getBalancesCents)
  * Part of the Java Basics and OOP Tutorial
  */
+import java.math.RoundingMode;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.StampedLock;
+
 public class BankAccount {
-    // The balance is 'private', so it cannot be accessed directly from outside this class
-    private double balance;
+    // Lock striping: each account uses one of these locks. Accounts on different stripes
+    // never block each other, and there is one small lock array instead of a lock per account.
+    // StampedLocks let readers check, without locking, that no writer got in their way;
+    // writers use the (non-reentrant) write lock through its Lock view
+    private static final int LOCK_STRIPES = 256;
+    private static final StampedLock[] STRIPES = new StampedLock[LOCK_STRIPES];
+    private static final Lock[] WRITE_LOCKS = new Lock[LOCK_STRIPES];
+    private static final int OPTIMISTIC_ATTEMPTS = 4;
+    private static final AtomicInteger NEXT_STRIPE = new AtomicInteger();
+    
+    // Where balance changes are reported; null prints each message on the calling thread
+    private static volatile BalanceEventBus eventBus;
+
+    static {
+        for (int i = 0; i < LOCK_STRIPES; i++) {
+            STRIPES[i] = new StampedLock();
+            WRITE_LOCKS[i] = STRIPES[i].asWriteLock();
+        }
+    }
+
+    // The balance is 'private', so it cannot be accessed directly from outside this class.
+    // It is stored in cents (a long) so every update is exact; 'volatile' lets readers skip the lock
+    private volatile long balanceCents;
     private String accountNumber;
     private String accountHolderName;
+    private final int stripe;
+    
+    // Ledger recording this account's history (null = not recorded) and the account's id in it.
+    // Both are only changed while holding the account's lock
+    private volatile AccountLedger ledger;
+    private int ledgerId = -1;
     
     // Constructor to initialize account
     public BankAccount(String accountNumber, String accountHolderName) {
         this.accountNumber = accountNumber;
         this.accountHolderName = accountHolderName;
-        this.balance = 0.0; // Start with zero balance
+        this.stripe = NEXT_STRIPE.getAndIncrement() & (LOCK_STRIPES - 1); // round-robin over stripes
+        this.balanceCents = 0; // Start with zero balance
     }
     
     // Constructor with initial balance
     public BankAccount(String accountNumber, String accountHolderName, double initialBalance) {
-        this.accountNumber = accountNumber;
-        this.accountHolderName = accountHolderName;
+        this(accountNumber, accountHolderName);
         setBalance(initialBalance); // Use setter to validate initial balance
     }
     
-    // Public "getter" method to allow read-only access to the balance
+    // Public "getter" method to allow read-only access to the balance.
+    // Never locks: the balance is one volatile long, so a read can not see half an update
     public double getBalance() {
-        return this.balance;
+        return toDollars(this.balanceCents);
+    }
+    
+    // Exact balance in cents
+    public long getBalanceCents() {
+        return this.balanceCents;
     }
     
     // Public "getter" for account number
@@ -43,55 +88,85 @@ public class BankAccount {
     public void setBalance(double newBalance) {
         // Validation logic: protect the object's state
         if (newBalance >= 0) {
-            this.balance = newBalance;
-            System.out.println("Balance updated to: $" + this.balance);
+            long cents = toCents(newBalance);
+            lock().lock();
+            try {
+                record(AccountLedger.SET_BALANCE, cents, cents);
+                this.balanceCents = cents;
+            } finally {
+                lock().unlock();
+            }
+            publish(BalanceEvent.Type.BALANCE_SET, null, 0, cents, 0);
         } else {
-            System.out.println("Error: Balance cannot be set to a negative value.");
+            publish(BalanceEvent.Type.BALANCE_REJECTED, null, 0, this.balanceCents, 0);
         }
     }
     
     // A method that uses the internal state in a controlled way
     public void deposit(double amount) {
-        if (amount > 0) {
-            this.balance += amount;
-            System.out.println("Deposited: $" + amount);
-            System.out.println("New balance: $" + this.balance);
+        long start = AccountMetrics.start();
+        long cents = positiveCents(amount);
+        if (cents > 0) {
+            long newBalance = depositCents(cents);
+            AccountMetrics.record(AccountMetrics.Operation.DEPOSIT, AccountMetrics.Outcome.SUCCESS, start);
+            publish(BalanceEvent.Type.DEPOSITED, null, cents, newBalance, 0);
         } else {
-            System.out.println("Error: Deposit amount must be positive.");
+            AccountMetrics.record(AccountMetrics.Operation.DEPOSIT, AccountMetrics.Outcome.INVALID_AMOUNT, start);
+            publish(BalanceEvent.Type.DEPOSIT_REJECTED, null, 0, this.balanceCents, 0);
         }
     }
     
     // Another method for controlled state modification
     public void withdraw(double amount) {
-        if (amount <= 0) {
-            System.out.println("Error: Withdrawal amount must be positive.");
-        } else if (amount > this.balance) {
-            System.out.println("Error: Insufficient funds. Current balance: $" + this.balance);
+        long start = AccountMetrics.start();
+        long cents = positiveCents(amount);
+        if (cents <= 0) {
+            AccountMetrics.record(AccountMetrics.Operation.WITHDRAW, AccountMetrics.Outcome.INVALID_AMOUNT, start);
+            publish(BalanceEvent.Type.WITHDRAWAL_REJECTED, null, 0, this.balanceCents, 0);
+            return;
+        }
+        long balance = withdrawCents(cents);
+        boolean withdrawn = balance >= 0;
+        if (!withdrawn) {
+            balance = this.balanceCents;
+        }
+        AccountMetrics.record(AccountMetrics.Operation.WITHDRAW,
+                withdrawn ? AccountMetrics.Outcome.SUCCESS : AccountMetrics.Outcome.INSUFFICIENT_FUNDS, start);
+        if (withdrawn) {
+            publish(BalanceEvent.Type.WITHDRAWN, null, cents, balance, 0);
         } else {
-            this.balance -= amount;
-            System.out.println("Withdrew: $" + amount);
-            System.out.println("New balance: $" + this.balance);
+            publish(BalanceEvent.Type.WITHDRAWAL_INSUFFICIENT_FUNDS, null, 0, balance, 0);
         }
     }
     
-    // Method to transfer money to another account
+    // Method to transfer money to another account.
+    // Both accounts are locked for the whole transfer, so nobody sees the money "in flight"
     public void transferTo(BankAccount targetAccount, double amount) {
-        if (amount <= 0) {
-            System.out.println("Error: Transfer amount must be positive.");
+        long start = AccountMetrics.start();
+        long cents = positiveCents(amount);
+        if (cents <= 0) {
+            AccountMetrics.record(AccountMetrics.Operation.TRANSFER, AccountMetrics.Outcome.INVALID_AMOUNT, start);
+            publish(BalanceEvent.Type.TRANSFER_REJECTED, targetAccount, 0, this.balanceCents, 0);
             return;
         }
         
-        if (amount > this.balance) {
-            System.out.println("Error: Insufficient funds for transfer. Current balance: $" + this.balance);
-            return;
+        long balance;
+        boolean transferred;
+        lockBoth(this, targetAccount);
+        try {
+            transferred = transferLocked(targetAccount, cents);
+            balance = this.balanceCents;
+        } finally {
+            unlockBoth(this, targetAccount);
         }
+        AccountMetrics.record(AccountMetrics.Operation.TRANSFER,
+                transferred ? AccountMetrics.Outcome.SUCCESS : AccountMetrics.Outcome.INSUFFICIENT_FUNDS, start);
         
-        // Perform the transfer
-        this.balance -= amount;
-        targetAccount.balance += amount; // Direct access allowed within same class
-        
-        System.out.println("Transferred $" + amount + " to account " + targetAccount.getAccountNumber());
-        System.out.println("Your new balance: $" + this.balance);
+        if (!transferred) {
+            publish(BalanceEvent.Type.TRANSFER_INSUFFICIENT_FUNDS, targetAccount, 0, balance, 0);
+            return;
+        }
+        publish(BalanceEvent.Type.TRANSFERRED, targetAccount, cents, balance, 0);
     }
     
     // Method to display account information
@@ -99,27 +174,360 @@ public class BankAccount {
         System.out.println("=== Account Information ===");
         System.out.println("Account Number: " + this.accountNumber);
         System.out.println("Account Holder: " + this.accountHolderName);
-        System.out.println("Current Balance: $" + this.balance);
+        System.out.println("Current Balance: $" + getBalance());
         System.out.println("===========================");
     }
     
-    // Method to check if account has sufficient funds
+    // Method to check if account has sufficient funds (lock-free, like getBalance)
     public boolean hasSufficientFunds(double amount) {
-        return this.balance >= amount;
+        return this.balanceCents >= toCents(amount);
     }
     
-    // Method to calculate interest (example of internal calculation)
+    // Method to calculate interest (example of internal calculation).
+    // Interest is rounded half up to whole cents, like the amounts printed below
     public void addInterest(double interestRate) {
+        addInterest(interestRate, RoundingMode.HALF_UP);
+    }
+    
+    // Same as addInterest(double), with an explicit rule for rounding the interest to cents
+    public void addInterest(double interestRate, RoundingMode rounding) {
+        long start = AccountMetrics.start();
         if (interestRate < 0) {
-            System.out.println("Error: Interest rate cannot be negative.");
+            AccountMetrics.record(AccountMetrics.Operation.INTEREST, AccountMetrics.Outcome.INVALID_AMOUNT, start);
+            publish(BalanceEvent.Type.INTEREST_REJECTED, null, 0, this.balanceCents, 0);
             return;
         }
         
-        double interest = this.balance * (interestRate / 100);
-        this.balance += interest;
-        System.out.println("Interest added: $" + String.format("%.2f", interest) + 
-                          " at rate " + interestRate + "%");
-        System.out.println("New balance: $" + String.format("%.2f", this.balance));
+        long interest;
+        long newBalance;
+        lock().lock();
+        try {
+            interest = Money.percentOf(this.balanceCents, interestRate, rounding);
+            newBalance = Money.add(this.balanceCents, interest);
+            record(AccountLedger.INTEREST, interest, newBalance);
+            this.balanceCents = newBalance;
+        } finally {
+            lock().unlock();
+        }
+        AccountMetrics.record(AccountMetrics.Operation.INTEREST, AccountMetrics.Outcome.SUCCESS, start);
+        publish(BalanceEvent.Type.INTEREST_ADDED, null, interest, newBalance, interestRate);
+    }
+    
+    // ---- Balance events ----
+    
+    // Sends an event to the event bus, or prints it right away when no bus is set
+    private void publish(BalanceEvent.Type type, BankAccount target, long amountCents, long balanceAfter,
+                         double interestRate) {
+        BalanceEventBus bus = eventBus;
+        if (bus != null) {
+            bus.publish(type, this, target, amountCents, balanceAfter, interestRate);
+        } else {
+            BalanceListener.CONSOLE.onBalanceEvent(
+                    new BalanceEvent(type, this, target, amountCents, balanceAfter, interestRate));
+        }
+    }
+    
+    // Routes the messages of all accounts through 'bus' (null = print them synchronously again)
+    public static void setEventBus(BalanceEventBus bus) {
+        eventBus = bus;
+    }
+    
+    public static BalanceEventBus getEventBus() {
+        return eventBus;
+    }
+    
+    // The silent cores of deposit and withdraw (no events, no metrics; still recorded in the ledger).
+    // depositCents returns the new balance; withdrawCents returns it too, or -1 if the money is not there
+    long depositCents(long cents) {
+        lock().lock();
+        try {
+            long newBalance = Money.add(this.balanceCents, cents);
+            record(AccountLedger.DEPOSIT, cents, newBalance);
+            this.balanceCents = newBalance;
+            return newBalance;
+        } finally {
+            lock().unlock();
+        }
+    }
+    
+    long withdrawCents(long cents) {
+        lock().lock();
+        try {
+            long balance = this.balanceCents;
+            if (cents > balance) {
+                return -1;
+            }
+            balance -= cents;
+            record(AccountLedger.WITHDRAWAL, cents, balance);
+            this.balanceCents = balance;
+            return balance;
+        } finally {
+            lock().unlock();
+        }
+    }
+    
+    // Moves 'cents' to the target if this account has enough money; returns false otherwise.
+    // The caller must hold the locks of both accounts (see lockBoth and TransferBatch)
+    boolean transferLocked(BankAccount targetAccount, long cents) {
+        long balance = this.balanceCents;
+        if (cents > balance) {
+            return false;
+        }
+        if (targetAccount == this) {
+            record(AccountLedger.TRANSFER, cents, balance); // money moves nowhere
+        } else {
+            balance -= cents;
+            long targetBalance = Money.add(targetAccount.balanceCents, cents); // Direct access allowed within same class
+            recordTransfer(targetAccount, cents, balance, targetBalance);
+            this.balanceCents = balance;
+            targetAccount.balanceCents = targetBalance;
+        }
+        return true;
+    }
+    
+    // Adds already computed interest; the caller must hold the account's stripe (see lockStripe)
+    void addInterestLocked(long interestCents) {
+        long newBalance = Money.add(this.balanceCents, interestCents);
+        record(AccountLedger.INTEREST, interestCents, newBalance);
+        this.balanceCents = newBalance;
+    }
+    
+    // ---- Ledger hook ----
+    
+    // Writes the change to the ledger before it is applied; call with the account's lock held
+    private void record(byte type, long amountCents, long balanceAfter) {
+        AccountLedger current = this.ledger;
+        if (current != null) {
+            if (type == AccountLedger.TRANSFER) {
+                current.recordTransfer(ledgerId, ledgerId, amountCents, balanceAfter, balanceAfter);
+            } else {
+                current.record(type, ledgerId, amountCents, balanceAfter);
+            }
+        }
+    }
+    
+    // A transfer between two accounts of the same ledger is one entry; otherwise each
+    // ledger sees its side of the transfer as a withdrawal or a deposit
+    private void recordTransfer(BankAccount target, long amountCents, long balanceAfter, long targetBalanceAfter) {
+        AccountLedger current = this.ledger;
+        AccountLedger targetLedger = target.ledger;
+        if (current != null && current == targetLedger) {
+            current.recordTransfer(ledgerId, target.ledgerId, amountCents, balanceAfter, targetBalanceAfter);
+            return;
+        }
+        if (current != null) {
+            current.record(AccountLedger.WITHDRAWAL, ledgerId, amountCents, balanceAfter);
+        }
+        if (targetLedger != null) {
+            targetLedger.record(AccountLedger.DEPOSIT, target.ledgerId, amountCents, targetBalanceAfter);
+        }
+    }
+    
+    // Called by AccountLedger.register: records the opening balance and every change after it
+    void attachLedger(AccountLedger newLedger) {
+        lock().lock();
+        try {
+            if (this.ledger != null) {
+                throw new IllegalStateException("Account " + accountNumber + " is already recorded in a ledger");
+            }
+            this.ledgerId = newLedger.recordOpen(this, this.balanceCents);
+            this.ledger = newLedger;
+        } finally {
+            lock().unlock();
+        }
+    }
+    
+    AccountLedger getLedger() {
+        return this.ledger;
+    }
+    
+    // Used by AccountLedger while rebuilding accounts from disk: nothing is printed or recorded
+    void restoreLedger(AccountLedger restoredFrom, int id) {
+        lock().lock();
+        try {
+            this.ledger = restoredFrom;
+            this.ledgerId = id;
+        } finally {
+            lock().unlock();
+        }
+    }
+    
+    void restoreBalance(long cents) {
+        lock().lock();
+        try {
+            this.balanceCents = cents;
+        } finally {
+            lock().unlock();
+        }
+    }
+    
+    // ---- Consistent reads across accounts ----
+    
+    /**
+     * Balances (in cents) of several accounts as of one single moment: a transfer between
+     * two of them is seen either completely or not at all, so the total is always right.
+     * Reads optimistically without locking and only falls back to read locks when writers
+     * keep changing the accounts.
+     */
+    public static long[] getBalancesCents(BankAccount... accounts) {
+        long[] balances = new long[accounts.length];
+        readBalances(accounts, balances);
+        return balances;
+    }
+    
+    // Sum of several balances, consistent in the same way as getBalancesCents
+    public static long getTotalBalanceCents(BankAccount... accounts) {
+        long total = 0;
+        for (long balance : getBalancesCents(accounts)) {
+            total += balance;
+        }
+        return total;
+    }
+    
+    static void readBalances(BankAccount[] accounts, long[] balances) {
+        long[] stamps = new long[accounts.length];
+        for (int attempt = 0; attempt < OPTIMISTIC_ATTEMPTS; attempt++) {
+            // 1. note every stripe's version (0 = a writer holds it right now)
+            boolean valid = true;
+            for (int i = 0; i < accounts.length && valid; i++) {
+                stamps[i] = STRIPES[accounts[i].stripe].tryOptimisticRead();
+                valid = stamps[i] != 0;
+            }
+            if (!valid) {
+                continue;
+            }
+            // 2. read the balances, 3. check no stripe was write-locked in the meantime
+            for (int i = 0; i < accounts.length; i++) {
+                balances[i] = accounts[i].balanceCents;
+            }
+            for (int i = 0; i < accounts.length && valid; i++) {
+                valid = STRIPES[accounts[i].stripe].validate(stamps[i]);
+            }
+            if (valid) {
+                return;
+            }
+        }
+        readBalancesLocked(accounts, balances);
+    }
+    
+    // The pessimistic path: read-lock every stripe involved (lowest first, like the writers)
+    static void readBalancesLocked(BankAccount[] accounts, long[] balances) {
+        boolean[] used = new boolean[LOCK_STRIPES];
+        int distinct = 0;
+        for (BankAccount account : accounts) {
+            distinct += mark(used, account.stripe);
+        }
+        int[] stripes = new int[distinct];
+        long[] stamps = new long[distinct];
+        int locked = 0;
+        for (int stripe = 0; stripe < LOCK_STRIPES; stripe++) {
+            if (used[stripe]) {
+                stamps[locked] = STRIPES[stripe].readLock();
+                stripes[locked++] = stripe;
+            }
+        }
+        try {
+            for (int i = 0; i < accounts.length; i++) {
+                balances[i] = accounts[i].balanceCents;
+            }
+        } finally {
+            for (int i = locked - 1; i >= 0; i--) {
+                STRIPES[stripes[i]].unlockRead(stamps[i]);
+            }
+        }
+    }
+    
+    // ---- Locking helpers ----
+    
+    private Lock lock() {
+        return WRITE_LOCKS[stripe];
+    }
+    
+    // Lock stripes double as partitions for bulk jobs such as InterestPostingJob
+    static int stripeCount() {
+        return LOCK_STRIPES;
+    }
+    
+    int getStripe() {
+        return stripe;
+    }
+    
+    static void lockStripe(int stripe) {
+        WRITE_LOCKS[stripe].lock();
+    }
+    
+    static void unlockStripe(int stripe) {
+        WRITE_LOCKS[stripe].unlock();
+    }
+    
+    // Always locks the lower stripe first: every thread takes locks in the same global order,
+    // so two opposite transfers (A->B and B->A) can never deadlock
+    static void lockBoth(BankAccount first, BankAccount second) {
+        int low = Math.min(first.stripe, second.stripe);
+        int high = Math.max(first.stripe, second.stripe);
+        WRITE_LOCKS[low].lock();
+        if (high != low) {
+            WRITE_LOCKS[high].lock();
+        }
+    }
+    
+    static void unlockBoth(BankAccount first, BankAccount second) {
+        int low = Math.min(first.stripe, second.stripe);
+        int high = Math.max(first.stripe, second.stripe);
+        if (high != low) {
+            WRITE_LOCKS[high].unlock();
+        }
+        WRITE_LOCKS[low].unlock();
+    }
+    
+    // Locks the stripes of the first 'count' accounts of both arrays, lowest stripe first like
+    // lockBoth, so batches and single transfers can never deadlock each other.
+    // Returns the locked stripes (in locking order) for unlockAll
+    static int[] lockAll(BankAccount[] first, BankAccount[] second, int count) {
+        boolean[] used = new boolean[LOCK_STRIPES];
+        int distinct = 0;
+        for (int i = 0; i < count; i++) {
+            distinct += mark(used, first[i].stripe) + mark(used, second[i].stripe);
+        }
+        int[] stripes = new int[distinct];
+        int locked = 0;
+        for (int stripe = 0; stripe < LOCK_STRIPES; stripe++) {
+            if (used[stripe]) {
+                WRITE_LOCKS[stripe].lock();
+                stripes[locked++] = stripe;
+            }
+        }
+        return stripes;
+    }
+    
+    private static int mark(boolean[] used, int stripe) {
+        if (used[stripe]) {
+            return 0;
+        }
+        used[stripe] = true;
+        return 1;
+    }
+    
+    static void unlockAll(int[] stripes) {
+        for (int i = stripes.length - 1; i >= 0; i--) {
+            WRITE_LOCKS[stripes[i]].unlock();
+        }
+    }
+    
+    // ---- Conversion between dollars and cents ----
+    
+    private static long toCents(double dollars) {
+        return Money.fromDollars(dollars);
+    }
+    
+    // The amount of a deposit, withdrawal or transfer in cents; 0 if it is not positive or
+    // rounds to 0 cents (less than half a cent), so such amounts are rejected, not "done"
+    private static long positiveCents(double dollars) {
+        return dollars > 0 ? toCents(dollars) : 0;
+    }
+    
+    private static double toDollars(long cents) {
+        return Money.toDollars(cents);
     }
 }
 
@@ -0,0 +1,114 @@
+/*
+ * AdoptionFeeCalculator.java - Synthesis Project
+ * Computes adoption fees for a whole shelter (or a subset) in one pass.
+ *
+ * Animal objects are priced with their own calculateAdoptionFee(): reading the animal is
+ * most of the work, so on one thread this is the same as calling it in a loop. The gain
+ * comes from parallel = true, where every task reads and prices its own range of animals.
+ *
+ * Without animal objects, Animal.calculateAdoptionFee() plus the Dog/Cat overrides boil
+ * down to
+ *   fee = base fee for the age bracket + bonus for the trait flags
+ * so an AnimalColumnStore (or any age and flags arrays) is priced with two table lookups
+ * per animal, with the same results.
+ */
+import java.util.List;
+import java.util.stream.IntStream;
+
+public class AdoptionFeeCalculator {
+    // Arrays smaller than this are priced on the calling thread even in parallel mode
+    private static final int PARALLEL_THRESHOLD = 1 << 14;
+    // Animals per parallel task
+    private static final int TASK_SIZE = 1 << 12;
+
+    // Trait flags use the same bits as AnimalColumnStore's flags column
+    private static final int FEE_FLAGS = AnimalColumnStore.FLAG_CAT
+                                       | AnimalColumnStore.FLAG_TRAINED_OR_INDOOR
+                                       | AnimalColumnStore.FLAG_GOOD_WITH_KIDS;
+
+    // Bonus for every combination of the FEE_FLAGS bits (Dog: trained +25, kids +15;
+    // Cat: indoor +10, kids +10)
+    private static final double[] BONUS = new double[FEE_FLAGS + 1];
+
+    static {
+        for (int flags = 0; flags <= FEE_FLAGS; flags++) {
+            boolean cat = (flags & AnimalColumnStore.FLAG_CAT) != 0;
+            boolean trainedOrIndoor = (flags & AnimalColumnStore.FLAG_TRAINED_OR_INDOOR) != 0;
+            boolean kids = (flags & AnimalColumnStore.FLAG_GOOD_WITH_KIDS) != 0;
+            double bonus = 0.0;
+            if (trainedOrIndoor) bonus += cat ? 10.0 : 25.0;
+            if (kids) bonus += cat ? 10.0 : 15.0;
+            BONUS[flags] = bonus;
+        }
+    }
+
+    private AdoptionFeeCalculator() {
+    }
+
+    // Fees for every animal in the shelter; fees[id] belongs to shelter.getAnimal(id)
+    public static double[] calculateFees(Shelter shelter, boolean parallel) {
+        return calculateFees(shelter.getAnimals(), parallel);
+    }
+
+    // Fees for a subset (for example a findAnimals() result); fees[i] belongs to animals.get(i)
+    public static double[] calculateFees(final List<Animal> animals, boolean parallel) {
+        final int count = animals.size();
+        final double[] fees = new double[count];
+        if (parallel && count >= PARALLEL_THRESHOLD) {
+            // each task reads its own animals: reading them is most of the work
+            IntStream.range(0, (count + TASK_SIZE - 1) / TASK_SIZE).parallel().forEach(task -> {
+                int from = task * TASK_SIZE;
+                priceAnimals(animals, from, Math.min(count, from + TASK_SIZE), fees);
+            });
+        } else {
+            priceAnimals(animals, 0, count, fees);
+        }
+        return fees;
+    }
+
+    private static void priceAnimals(List<Animal> animals, int from, int to, double[] fees) {
+        for (int i = from; i < to; i++) {
+            fees[i] = animals.get(i).calculateAdoptionFee();
+        }
+    }
+
+    // Fees straight from the age and flags columns - no animal objects are touched
+    public static double[] calculateFees(final AnimalColumnStore store, boolean parallel) {
+        final int count = store.size();
+        final double[] fees = new double[count];
+        if (parallel && count >= PARALLEL_THRESHOLD) {
+            IntStream.range(0, count).parallel().forEach(i -> fees[i] = feeFor(store.getAge(i), store.getFlags(i)));
+        } else {
+            for (int i = 0; i < count; i++) {
+                fees[i] = feeFor(store.getAge(i), store.getFlags(i));
+            }
+        }
+        return fees;
+    }
+
+    /**
+     * The bulk kernel: fees[i] = fee for ages[i] and the trait bits in flags[i].
+     * Entries whose flags are negative are left untouched.
+     */
+    public static void calculateFees(final int[] ages, final int[] flags, final double[] fees, boolean parallel) {
+        if (parallel && ages.length >= PARALLEL_THRESHOLD) {
+            IntStream.range(0, ages.length).parallel().forEach(i -> {
+                if (flags[i] >= 0) {
+                    fees[i] = feeFor(ages[i], flags[i]);
+                }
+            });
+        } else {
+            for (int i = 0; i < ages.length; i++) {
+                if (flags[i] >= 0) {
+                    fees[i] = feeFor(ages[i], flags[i]);
+                }
+            }
+        }
+    }
+
+    // Same brackets as Animal.calculateAdoptionFee(), then the trait bonus
+    private static double feeFor(int age, int flags) {
+        double baseFee = age < 1 ? 150.0 : age < 3 ? 100.0 : age > 8 ? 25.0 : 50.0;
+        return Math.max(baseFee, 25.0) + BONUS[flags & FEE_FLAGS];
+    }
+}
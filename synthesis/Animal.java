@@ -4,23 +4,56 @@
  * Demonstrates the integration of all four OOP pillars
  * Part of the Java Basics and OOP Tutorial - Synthesis Project
  */
+import java.util.concurrent.atomic.AtomicIntegerFieldUpdater;
+
 public abstract class Animal {
     // Encapsulation: Fields are private to protect data
     private String name;
     private int age;
     private String breed;
-    private boolean isAdopted;
+    // 0 = in the shelter, 1 = adopted; an int so adopt() can use compare-and-set
+    private volatile int adoptionState;
     private String arrivalDate;
     
+    // Shelter bookkeeping: set when the animal is admitted to a Shelter
+    private Shelter shelter;
+    private int id = -1;
+    // Composite index cell the Shelter filed the animal in (-1 = none; guarded by this animal)
+    int shelterCell = -1;
+    
+    // Lets adopt()/returnToShelter() flip adoptionState atomically without a lock
+    private static final AtomicIntegerFieldUpdater<Animal> ADOPTION_STATE =
+            AtomicIntegerFieldUpdater.newUpdater(Animal.class, "adoptionState");
+    
+    // Where profiles, care routines and adoption messages are written (System.out by default)
+    private static volatile OutputSink outputSink = OutputSink.CONSOLE;
+    
     // Constructor to initialize the common state
     public Animal(String name, int age, String breed, String arrivalDate) {
         this.name = name;
         this.age = age;
         this.breed = breed;
-        this.isAdopted = false; // New animals start as not adopted
+        this.adoptionState = 0; // New animals start as not adopted
         this.arrivalDate = arrivalDate;
     }
     
+    // Selects the output sink for all animals, e.g. OutputSink.NONE for bulk runs
+    public static void setOutputSink(OutputSink sink) {
+        if (sink == null) {
+            throw new IllegalArgumentException("Output sink cannot be null");
+        }
+        outputSink = sink;
+    }
+    
+    public static OutputSink getOutputSink() {
+        return outputSink;
+    }
+    
+    // Shorthand used by the animal classes and the Shelter for their messages
+    static OutputSink out() {
+        return outputSink;
+    }
+    
     // Getter methods for controlled access (Encapsulation)
     public String getName() {
         return name;
@@ -35,57 +68,116 @@ public abstract class Animal {
     }
     
     public boolean isAdopted() {
-        return isAdopted;
+        return adoptionState == 1;
     }
     
     public String getArrivalDate() {
         return arrivalDate;
     }
     
+    // Id assigned by the Shelter on admission (-1 if not in a shelter)
+    public int getId() {
+        return id;
+    }
+    
+    // Called by Shelter.addAnimal so the animal can report changes to the shelter's indexes
+    void admitTo(Shelter shelter, int id) {
+        this.shelter = shelter;
+        this.id = id;
+    }
+    
     // Setter methods with validation (Encapsulation)
     public void setName(String name) {
         if (name != null && !name.trim().isEmpty()) {
             this.name = name;
         } else {
-            System.out.println("Error: Name cannot be empty.");
+            out().println("Error: Name cannot be empty.");
         }
     }
     
     public void setAge(int age) {
         if (age >= 0) {
-            this.age = age;
+            int oldAge;
+            synchronized (this) {
+                oldAge = this.age;
+                this.age = age;
+            }
+            ageChanged(oldAge);
         } else {
-            System.out.println("Error: Age cannot be negative.");
+            out().println("Error: Age cannot be negative.");
+        }
+    }
+    
+    // Called after the age changed so the shelter can move the animal in its age index
+    // (subclasses that store the age elsewhere call it from their setAge)
+    protected void ageChanged(int oldAge) {
+        if (shelter != null) {
+            shelter.ageChanged(this, oldAge);
+        }
+    }
+    
+    // Called by subclasses after a trait used for matching changed (e.g. Dog.setTrained)
+    // so the shelter can tell its listeners
+    protected void traitsChanged() {
+        if (shelter != null) {
+            shelter.traitsChanged(this);
+        }
+    }
+    
+    // Atomically sets the adoption status to 'adopted' if it is currently the opposite.
+    // Subclasses that keep the status elsewhere (e.g. in AnimalColumnStore) override this
+    protected boolean compareAndSetAdopted(boolean adopted) {
+        return adopted ? ADOPTION_STATE.compareAndSet(this, 0, 1) : ADOPTION_STATE.compareAndSet(this, 1, 0);
+    }
+    
+    // Atomically marks the animal as adopted.
+    // Returns false if it was already adopted - only one of two racing clerks can win
+    public boolean tryAdopt() {
+        if (!compareAndSetAdopted(true)) {
+            return false;
+        }
+        if (shelter != null) {
+            shelter.adoptionStatusChanged(this);
+        }
+        return true;
+    }
+    
+    // Atomically returns an adopted animal to the shelter; false if it was not adopted
+    public boolean tryReturnToShelter() {
+        if (!compareAndSetAdopted(false)) {
+            return false;
+        }
+        if (shelter != null) {
+            shelter.adoptionStatusChanged(this);
         }
+        return true;
     }
     
     // Method to mark animal as adopted
     public void adopt() {
-        if (!isAdopted) {
-            this.isAdopted = true;
-            System.out.println("🎉 " + name + " has been adopted! Congratulations!");
+        if (tryAdopt()) {
+            out().println("🎉 " + getName() + " has been adopted! Congratulations!");
         } else {
-            System.out.println(name + " has already been adopted.");
+            out().println(getName() + " has already been adopted.");
         }
     }
     
     // Method to return animal to shelter (unadopt)
     public void returnToShelter() {
-        if (isAdopted) {
-            this.isAdopted = false;
-            System.out.println("😢 " + name + " has been returned to the shelter.");
+        if (tryReturnToShelter()) {
+            out().println("😢 " + getName() + " has been returned to the shelter.");
         } else {
-            System.out.println(name + " is already in the shelter.");
+            out().println(getName() + " is already in the shelter.");
         }
     }
     
     // Concrete method shared by all animals
     public void displayBasicInfo() {
-        System.out.println("Name: " + name);
-        System.out.println("Age: " + age + " years old");
-        System.out.println("Breed: " + breed);
-        System.out.println("Arrival Date: " + arrivalDate);
-        System.out.println("Status: " + (isAdopted ? "Adopted ✅" : "Available for adoption ❤️"));
+        out().println("Name: " + getName());
+        out().println("Age: " + getAge() + " years old");
+        out().println("Breed: " + getBreed());
+        out().println("Arrival Date: " + getArrivalDate());
+        out().println("Status: " + (isAdopted() ? "Adopted ✅" : "Available for adoption ❤️"));
     }
     
     // Abstract method: A contract forcing subclasses to provide their own implementation
@@ -103,23 +195,23 @@ public abstract class Animal {
     
     // Concrete method that uses abstract methods (Template Method pattern)
     public void displayFullProfile() {
-        System.out.println("🐾 === Animal Profile === 🐾");
+        out().println("🐾 === Animal Profile === 🐾");
         displayBasicInfo();
-        System.out.println("Sound: " + makeSound());
-        System.out.println("Care Instructions: " + getCareInstructions());
-        System.out.println("Exercise Needs: " + getExerciseNeeds());
-        System.out.println("Dietary Needs: " + getDietaryNeeds());
-        System.out.println("========================");
+        out().println("Sound: " + makeSound());
+        out().println("Care Instructions: " + getCareInstructions());
+        out().println("Exercise Needs: " + getExerciseNeeds());
+        out().println("Dietary Needs: " + getDietaryNeeds());
+        out().println("========================");
     }
     
     // Method to simulate daily care routine
     public void performDailyCare() {
-        System.out.println("🏥 Daily care for " + name + ":");
-        System.out.println("  - Feeding: " + getDietaryNeeds());
-        System.out.println("  - Exercise: " + getExerciseNeeds());
-        System.out.println("  - Special care: " + getCareInstructions());
-        System.out.println("  - Health check: " + name + " says " + makeSound());
-        System.out.println("  ✅ Daily care completed for " + name);
+        out().println("🏥 Daily care for " + getName() + ":");
+        out().println("  - Feeding: " + getDietaryNeeds());
+        out().println("  - Exercise: " + getExerciseNeeds());
+        out().println("  - Special care: " + getCareInstructions());
+        out().println("  - Health check: " + getName() + " says " + makeSound());
+        out().println("  ✅ Daily care completed for " + getName());
     }
     
     // Method to calculate adoption fee based on age and other factors
@@ -127,11 +219,11 @@ public abstract class Animal {
         double baseFee = 50.0;
         
         // Younger animals have higher adoption fees
-        if (age < 1) {
+        if (getAge() < 1) {
             baseFee += 100.0; // Puppies/kittens
-        } else if (age < 3) {
+        } else if (getAge() < 3) {
             baseFee += 50.0;  // Young adults
-        } else if (age > 8) {
+        } else if (getAge() > 8) {
             baseFee -= 25.0;  // Senior discount
         }
         
@@ -141,17 +233,17 @@ public abstract class Animal {
     // Method to check if animal is suitable for a family with children
     public boolean isSuitableForChildren() {
         // Default implementation - subclasses can override
-        return age >= 2 && age <= 10; // Generally, not too young or too old
+        return getAge() >= 2 && getAge() <= 10; // Generally, not too young or too old
     }
     
     // Method to get a brief description for adoption listings
     public String getAdoptionListing() {
         return String.format("%s - %d year old %s. %s Adoption fee: $%.2f. %s", 
-                           name, 
-                           age, 
-                           breed,
-                           isAdopted ? "ADOPTED" : "AVAILABLE", 
+                           getName(), 
+                           getAge(), 
+                           getBreed(),
+                           isAdopted() ? "ADOPTED" : "AVAILABLE", 
                            calculateAdoptionFee(),
-                           isAdopted ? "" : "Contact shelter for more info!");
+                           isAdopted() ? "" : "Contact shelter for more info!");
     }
 }
\ No newline at end of file
@@ -0,0 +1,658 @@
+/*
+ * AnimalColumnStore.java - Synthesis Project
+ * Off-heap, memory-mapped column storage for shelters with millions of animals.
+ *
+ * Instead of one heap object per animal (with its own name, breed, temperament and
+ * arrival date Strings) every field lives in its own memory-mapped column file:
+ *   ages.col         short per animal
+ *   flags.col        byte per animal (species, adopted, trained/indoor, kids, other pets)
+ *   breeds.col       char per animal - id in the breed dictionary
+ *   temperaments.col char per animal - id in the temperament dictionary
+ *   arrivals.col     int per animal  - id in the arrival date dictionary
+ *   names.col        int per animal  - offset of the name in the name heap
+ *   names.heap       interned names: [short length][UTF-8 bytes], each distinct name once
+ *
+ * get(index) returns a small flyweight Dog or Cat view that reads and writes the columns,
+ * so existing code calling getName(), getAge(), calculateAdoptionFee(), ... keeps working.
+ * A view can be admitted to a Shelter like any animal: getId() is then its Shelter id and
+ * indexOf(view) its column index. Make all changes through the admitted view - another
+ * view of the same index writes the same columns but does not update the Shelter's indexes.
+ */
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+public class AnimalColumnStore implements AutoCloseable {
+    // Bits of the flags column
+    public static final int FLAG_CAT = 1;                // species: set = Cat, clear = Dog
+    public static final int FLAG_ADOPTED = 2;
+    public static final int FLAG_TRAINED_OR_INDOOR = 4;  // Dog.isTrained() / Cat.isIndoor()
+    public static final int FLAG_GOOD_WITH_KIDS = 8;
+    public static final int FLAG_GOOD_WITH_OTHERS = 16;  // goodWithOtherDogs / goodWithOtherCats
+
+    private static final int NO_NAME = -1;
+    private static final int LOCK_STRIPES = 64;
+
+    private final Path directory;
+    private final Column ages;
+    private final Column flags;
+    private final Column breeds;
+    private final Column temperaments;
+    private final Column arrivals;
+    private final Column nameOffsets;
+    private final Column nameHeap;
+    private final Dictionary breedDictionary;
+    private final Dictionary temperamentDictionary;
+    private final Dictionary dateDictionary;
+
+    // Interning table for the name heap: open addressing, slot = heap offset + 1 (0 = empty)
+    private int[] nameTable = new int[1024];
+    private int nameCount;
+    private int nameHeapSize;
+
+    private volatile int size;
+    private boolean closed;
+
+    // Read-modify-write of one animal's flags (adoption, training, ...) is striped by index
+    private final Object[] flagLocks = new Object[LOCK_STRIPES];
+
+    private AnimalColumnStore(Path directory, int capacity) throws IOException {
+        this.directory = directory;
+        ages = new Column(directory.resolve("ages.col"), 2, capacity);
+        flags = new Column(directory.resolve("flags.col"), 1, capacity);
+        breeds = new Column(directory.resolve("breeds.col"), 2, capacity);
+        temperaments = new Column(directory.resolve("temperaments.col"), 2, capacity);
+        arrivals = new Column(directory.resolve("arrivals.col"), 4, capacity);
+        nameOffsets = new Column(directory.resolve("names.col"), 4, capacity);
+        nameHeap = new Column(directory.resolve("names.heap"), 1, capacity * 8L);
+        breedDictionary = new Dictionary(directory.resolve("breeds.dict"));
+        temperamentDictionary = new Dictionary(directory.resolve("temperaments.dict"));
+        dateDictionary = new Dictionary(directory.resolve("arrivals.dict"));
+        for (int i = 0; i < LOCK_STRIPES; i++) {
+            flagLocks[i] = new Object();
+        }
+    }
+
+    // Opens the store in 'directory', creating an empty one if there is none yet
+    public static AnimalColumnStore open(Path directory, int initialCapacity) throws IOException {
+        Files.createDirectories(directory);
+        AnimalColumnStore store = new AnimalColumnStore(directory, Math.max(initialCapacity, 1024));
+        Path meta = directory.resolve("store.meta");
+        if (Files.exists(meta)) {
+            try (DataInputStream in = new DataInputStream(Files.newInputStream(meta))) {
+                store.size = in.readInt();
+                store.nameHeapSize = in.readInt();
+            }
+            store.rebuildNameTable();
+        }
+        return store;
+    }
+
+    public static AnimalColumnStore open(Path directory) throws IOException {
+        return open(directory, 1 << 16);
+    }
+
+    // Copies every animal of a shelter into a new store (ids become store indexes)
+    public static AnimalColumnStore copyOf(Shelter shelter, Path directory) throws IOException {
+        AnimalColumnStore store = open(directory, shelter.size());
+        for (Animal animal : shelter.getAnimals()) {
+            store.append(animal);
+        }
+        return store;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    // Stores a Dog or Cat and returns its index
+    public synchronized int append(Animal animal) {
+        checkOpen();
+        int flagBits = animal.isAdopted() ? FLAG_ADOPTED : 0;
+        String temperament;
+        if (animal instanceof Dog) {
+            Dog dog = (Dog) animal;
+            temperament = dog.getTemperament();
+            flagBits |= (dog.isTrained() ? FLAG_TRAINED_OR_INDOOR : 0)
+                      | (dog.isGoodWithKids() ? FLAG_GOOD_WITH_KIDS : 0)
+                      | (dog.isGoodWithOtherDogs() ? FLAG_GOOD_WITH_OTHERS : 0);
+        } else if (animal instanceof Cat) {
+            Cat cat = (Cat) animal;
+            temperament = cat.getTemperament();
+            flagBits |= FLAG_CAT
+                      | (cat.isIndoor() ? FLAG_TRAINED_OR_INDOOR : 0)
+                      | (cat.isGoodWithKids() ? FLAG_GOOD_WITH_KIDS : 0)
+                      | (cat.isGoodWithOtherCats() ? FLAG_GOOD_WITH_OTHERS : 0);
+        } else {
+            throw new IllegalArgumentException("Cannot store animal type " + animal.getClass().getName());
+        }
+        if (animal.getAge() > Short.MAX_VALUE) {
+            throw new IllegalArgumentException("Age too large for the age column: " + animal.getAge());
+        }
+
+        int index = size;
+        ages.ensureCapacity(index + 1);
+        flags.ensureCapacity(index + 1);
+        breeds.ensureCapacity(index + 1);
+        temperaments.ensureCapacity(index + 1);
+        arrivals.ensureCapacity(index + 1);
+        nameOffsets.ensureCapacity(index + 1);
+
+        ages.buffer.putShort(index * 2, (short) animal.getAge());
+        flags.buffer.put(index, (byte) flagBits);
+        breeds.buffer.putChar(index * 2, (char) breedDictionary.idOf(animal.getBreed()));
+        temperaments.buffer.putChar(index * 2, (char) temperamentDictionary.idOf(temperament));
+        arrivals.buffer.putInt(index * 4, dateDictionary.idOf(animal.getArrivalDate()));
+        nameOffsets.buffer.putInt(index * 4, internName(animal.getName()));
+        size = index + 1; // publishes the row to readers
+        return index;
+    }
+
+    // Flyweight view of the animal at 'index' - a Dog or a Cat backed by the columns
+    public Animal get(int index) {
+        checkIndex(index);
+        return isCat(index) ? new StoredCat(this, index) : new StoredDog(this, index);
+    }
+
+    // Column index of a view returned by this store's get(), or -1 for any other animal
+    public int indexOf(Animal animal) {
+        if (animal instanceof StoredDog && ((StoredDog) animal).store == this) {
+            return ((StoredDog) animal).getIndex();
+        }
+        if (animal instanceof StoredCat && ((StoredCat) animal).store == this) {
+            return ((StoredCat) animal).getIndex();
+        }
+        return -1;
+    }
+
+    // ---- Primitive column access (no objects created) for bulk jobs ----
+
+    public int getAge(int index) {
+        checkIndex(index);
+        return ages.buffer.getShort(index * 2);
+    }
+
+    public int getFlags(int index) {
+        checkIndex(index);
+        return flags.buffer.get(index) & 0xFF;
+    }
+
+    public boolean isCat(int index) {
+        return (getFlags(index) & FLAG_CAT) != 0;
+    }
+
+    public int getBreedId(int index) {
+        checkIndex(index);
+        return breeds.buffer.getChar(index * 2);
+    }
+
+    public String getBreedName(int breedId) {
+        return breedDictionary.valueOf(breedId);
+    }
+
+    public String getName(int index) {
+        checkIndex(index);
+        return readName(nameOffsets.buffer.getInt(index * 4));
+    }
+
+    public String getBreed(int index) {
+        return breedDictionary.valueOf(getBreedId(index));
+    }
+
+    public String getTemperament(int index) {
+        checkIndex(index);
+        return temperamentDictionary.valueOf(temperaments.buffer.getChar(index * 2));
+    }
+
+    public String getArrivalDate(int index) {
+        checkIndex(index);
+        return dateDictionary.valueOf(arrivals.buffer.getInt(index * 4));
+    }
+
+    // ---- Updates used by the views ----
+
+    void setAge(int index, int age) {
+        if (age > Short.MAX_VALUE) {
+            throw new IllegalArgumentException("Age too large for the age column: " + age);
+        }
+        ages.buffer.putShort(index * 2, (short) age);
+    }
+
+    synchronized void setName(int index, String name) {
+        nameOffsets.buffer.putInt(index * 4, internName(name));
+    }
+
+    synchronized void setTemperament(int index, String temperament) {
+        temperaments.buffer.putChar(index * 2, (char) temperamentDictionary.idOf(temperament));
+    }
+
+    void setFlag(int index, int flag, boolean value) {
+        synchronized (flagLocks[index & (LOCK_STRIPES - 1)]) {
+            int bits = flags.buffer.get(index);
+            flags.buffer.put(index, (byte) (value ? bits | flag : bits & ~flag));
+        }
+    }
+
+    // Atomically changes a flag from 'expected' to '!expected'; false if it was not 'expected'
+    boolean compareAndSetFlag(int index, int flag, boolean expected) {
+        synchronized (flagLocks[index & (LOCK_STRIPES - 1)]) {
+            int bits = flags.buffer.get(index);
+            if (((bits & flag) != 0) != expected) {
+                return false;
+            }
+            flags.buffer.put(index, (byte) (expected ? bits & ~flag : bits | flag));
+            return true;
+        }
+    }
+
+    // ---- Name heap ----
+
+    // Returns the heap offset of 'name', appending it only if it is not stored yet
+    private int internName(String name) {
+        if (name == null) {
+            return NO_NAME;
+        }
+        byte[] bytes = name.getBytes(StandardCharsets.UTF_8);
+        if (bytes.length > Short.MAX_VALUE) {
+            throw new IllegalArgumentException("Name too long: " + bytes.length + " bytes");
+        }
+        int mask = nameTable.length - 1;
+        int slot = Arrays.hashCode(bytes) & mask;
+        while (nameTable[slot] != 0) {
+            int offset = nameTable[slot] - 1;
+            if (heapEntryEquals(offset, bytes)) {
+                return offset;
+            }
+            slot = (slot + 1) & mask;
+        }
+        int offset = nameHeapSize;
+        nameHeap.ensureCapacity(offset + 2L + bytes.length);
+        ByteBuffer heap = nameHeap.buffer.duplicate();
+        heap.position(offset);
+        heap.putShort((short) bytes.length);
+        heap.put(bytes);
+        nameHeapSize = offset + 2 + bytes.length;
+        nameTable[slot] = offset + 1;
+        if (++nameCount * 2 > nameTable.length) {
+            resizeNameTable();
+        }
+        return offset;
+    }
+
+    private boolean heapEntryEquals(int offset, byte[] bytes) {
+        ByteBuffer heap = nameHeap.buffer;
+        if (heap.getShort(offset) != bytes.length) {
+            return false;
+        }
+        for (int i = 0; i < bytes.length; i++) {
+            if (heap.get(offset + 2 + i) != bytes[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private void resizeNameTable() {
+        int[] old = nameTable;
+        nameTable = new int[old.length * 2];
+        for (int entry : old) {
+            if (entry != 0) {
+                insertIntoNameTable(entry - 1);
+            }
+        }
+    }
+
+    private void rebuildNameTable() {
+        int offset = 0;
+        while (offset < nameHeapSize) {
+            insertIntoNameTable(offset);
+            if (++nameCount * 2 > nameTable.length) {
+                resizeNameTable();
+            }
+            offset += 2 + nameHeap.buffer.getShort(offset);
+        }
+    }
+
+    private void insertIntoNameTable(int offset) {
+        ByteBuffer heap = nameHeap.buffer;
+        int length = heap.getShort(offset);
+        int hash = 1;
+        for (int i = 0; i < length; i++) {
+            hash = 31 * hash + heap.get(offset + 2 + i); // same as Arrays.hashCode(byte[])
+        }
+        int mask = nameTable.length - 1;
+        int slot = hash & mask;
+        while (nameTable[slot] != 0) {
+            slot = (slot + 1) & mask;
+        }
+        nameTable[slot] = offset + 1;
+    }
+
+    private String readName(int offset) {
+        if (offset == NO_NAME) {
+            return null;
+        }
+        ByteBuffer heap = nameHeap.buffer.duplicate();
+        int length = heap.getShort(offset);
+        byte[] bytes = new byte[length];
+        heap.position(offset + 2);
+        heap.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    // ---- Lifecycle ----
+
+    // Forces the columns to disk and saves the dictionaries and row count
+    public synchronized void flush() throws IOException {
+        checkOpen();
+        for (Column column : columns()) {
+            column.buffer.force();
+        }
+        breedDictionary.save();
+        temperamentDictionary.save();
+        dateDictionary.save();
+        try (DataOutputStream out = new DataOutputStream(Files.newOutputStream(directory.resolve("store.meta")))) {
+            out.writeInt(size);
+            out.writeInt(nameHeapSize);
+        }
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        if (closed) {
+            return;
+        }
+        flush();
+        closed = true;
+        for (Column column : columns()) {
+            column.channel.close();
+        }
+    }
+
+    private Column[] columns() {
+        return new Column[] { ages, flags, breeds, temperaments, arrivals, nameOffsets, nameHeap };
+    }
+
+    private void checkOpen() {
+        if (closed) {
+            throw new IllegalStateException("Store is closed");
+        }
+    }
+
+    private void checkIndex(int index) {
+        if (index < 0 || index >= size) {
+            throw new IndexOutOfBoundsException("No animal at index " + index);
+        }
+    }
+
+    // One memory-mapped file; grows by remapping a larger region when full
+    private static final class Column {
+        private final FileChannel channel;
+        private final int width;
+        private volatile MappedByteBuffer buffer;
+
+        Column(Path file, int width, long capacity) throws IOException {
+            this.channel = FileChannel.open(file, StandardOpenOption.CREATE,
+                                            StandardOpenOption.READ, StandardOpenOption.WRITE);
+            this.width = width;
+            map(Math.max(channel.size(), capacity * width));
+        }
+
+        // Makes room for 'count' values
+        void ensureCapacity(long count) {
+            long needed = count * width;
+            if (needed > buffer.capacity()) {
+                try {
+                    map(Math.max(needed, Math.min(buffer.capacity() * 2L, Integer.MAX_VALUE)));
+                } catch (IOException e) {
+                    throw new IllegalStateException("Could not grow column file", e);
+                }
+            }
+        }
+
+        private void map(long bytes) throws IOException {
+            if (bytes > Integer.MAX_VALUE) {
+                throw new IllegalStateException("Column file would exceed 2 GB");
+            }
+            buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, bytes);
+        }
+    }
+
+    // Small on-heap dictionary: id 0 is null, every other id maps to one distinct String
+    private static final class Dictionary {
+        private final Path file;
+        private final Map<String, Integer> ids = new HashMap<>();
+        private volatile String[] values = new String[16];
+        private int count = 1;
+
+        Dictionary(Path file) throws IOException {
+            this.file = file;
+            if (Files.exists(file)) {
+                try (DataInputStream in = new DataInputStream(Files.newInputStream(file))) {
+                    int size = in.readInt();
+                    for (int i = 1; i < size; i++) {
+                        idOf(in.readUTF());
+                    }
+                }
+            }
+        }
+
+        int idOf(String value) {
+            if (value == null) {
+                return 0;
+            }
+            Integer id = ids.get(value);
+            if (id != null) {
+                return id;
+            }
+            if (count > Character.MAX_VALUE) {
+                throw new IllegalStateException("Too many distinct values for dictionary " + file.getFileName());
+            }
+            String[] table = values;
+            if (count == table.length) {
+                table = Arrays.copyOf(table, table.length * 2);
+            }
+            table[count] = value;
+            values = table;
+            ids.put(value, count);
+            return count++;
+        }
+
+        String valueOf(int id) {
+            return values[id];
+        }
+
+        void save() throws IOException {
+            try (DataOutputStream out = new DataOutputStream(Files.newOutputStream(file))) {
+                out.writeInt(count);
+                for (int i = 1; i < count; i++) {
+                    out.writeUTF(values[i]);
+                }
+            }
+        }
+    }
+
+    // ---- Flyweight views: all state lives in the store, the view only knows its index ----
+
+    static final class StoredDog extends Dog {
+        private final AnimalColumnStore store;
+        private final int index;
+
+        StoredDog(AnimalColumnStore store, int index) {
+            super(null, 0, null, null);
+            this.store = store;
+            this.index = index;
+        }
+
+        @Override public String getName() { return store.getName(index); }
+        @Override public int getAge() { return store.getAge(index); }
+        @Override public String getBreed() { return store.getBreed(index); }
+        @Override public String getArrivalDate() { return store.getArrivalDate(index); }
+        @Override public boolean isAdopted() { return has(FLAG_ADOPTED); }
+        @Override public boolean isTrained() { return has(FLAG_TRAINED_OR_INDOOR); }
+        @Override public String getTemperament() { return store.getTemperament(index); }
+        @Override public boolean isGoodWithKids() { return has(FLAG_GOOD_WITH_KIDS); }
+        @Override public boolean isGoodWithOtherDogs() { return has(FLAG_GOOD_WITH_OTHERS); }
+
+        private boolean has(int flag) {
+            return (store.getFlags(index) & flag) != 0;
+        }
+
+        // The column index; getId() stays the Shelter id, so views can be admitted to a Shelter
+        int getIndex() {
+            return index;
+        }
+
+        @Override
+        protected boolean compareAndSetAdopted(boolean adopted) {
+            return store.compareAndSetFlag(index, FLAG_ADOPTED, !adopted);
+        }
+
+        // Setters write the columns; super keeps the original validation and messages
+        @Override
+        public void setName(String name) {
+            if (name != null && !name.trim().isEmpty()) {
+                store.setName(index, name);
+            } else {
+                super.setName(name);
+            }
+        }
+
+        @Override
+        public void setAge(int age) {
+            if (age >= 0) {
+                int oldAge;
+                synchronized (this) {
+                    oldAge = getAge();
+                    store.setAge(index, age);
+                }
+                ageChanged(oldAge);
+            } else {
+                super.setAge(age);
+            }
+        }
+
+        @Override
+        public void setTrained(boolean trained) {
+            setTrait(FLAG_TRAINED_OR_INDOOR, trained);
+            super.setTrained(trained); // prints the message; the trait already has the new value
+        }
+
+        @Override
+        public void setTemperament(String temperament) {
+            store.setTemperament(index, temperament);
+        }
+
+        @Override
+        public void setGoodWithKids(boolean goodWithKids) {
+            setTrait(FLAG_GOOD_WITH_KIDS, goodWithKids);
+        }
+
+        @Override
+        public void setGoodWithOtherDogs(boolean goodWithOtherDogs) {
+            setTrait(FLAG_GOOD_WITH_OTHERS, goodWithOtherDogs);
+        }
+
+        private void setTrait(int flag, boolean value) {
+            if (has(flag) != value) {
+                store.setFlag(index, flag, value);
+                traitsChanged();
+            }
+        }
+    }
+
+    static final class StoredCat extends Cat {
+        private final AnimalColumnStore store;
+        private final int index;
+
+        StoredCat(AnimalColumnStore store, int index) {
+            super(null, 0, null, null);
+            this.store = store;
+            this.index = index;
+        }
+
+        @Override public String getName() { return store.getName(index); }
+        @Override public int getAge() { return store.getAge(index); }
+        @Override public String getBreed() { return store.getBreed(index); }
+        @Override public String getArrivalDate() { return store.getArrivalDate(index); }
+        @Override public boolean isAdopted() { return has(FLAG_ADOPTED); }
+        @Override public boolean isIndoor() { return has(FLAG_TRAINED_OR_INDOOR); }
+        @Override public String getTemperament() { return store.getTemperament(index); }
+        @Override public boolean isGoodWithKids() { return has(FLAG_GOOD_WITH_KIDS); }
+        @Override public boolean isGoodWithOtherCats() { return has(FLAG_GOOD_WITH_OTHERS); }
+
+        private boolean has(int flag) {
+            return (store.getFlags(index) & flag) != 0;
+        }
+
+        // The column index; getId() stays the Shelter id, so views can be admitted to a Shelter
+        int getIndex() {
+            return index;
+        }
+
+        @Override
+        protected boolean compareAndSetAdopted(boolean adopted) {
+            return store.compareAndSetFlag(index, FLAG_ADOPTED, !adopted);
+        }
+
+        @Override
+        public void setName(String name) {
+            if (name != null && !name.trim().isEmpty()) {
+                store.setName(index, name);
+            } else {
+                super.setName(name);
+            }
+        }
+
+        @Override
+        public void setAge(int age) {
+            if (age >= 0) {
+                int oldAge;
+                synchronized (this) {
+                    oldAge = getAge();
+                    store.setAge(index, age);
+                }
+                ageChanged(oldAge);
+            } else {
+                super.setAge(age);
+            }
+        }
+
+        @Override
+        public void setIndoor(boolean indoor) {
+            setTrait(FLAG_TRAINED_OR_INDOOR, indoor);
+        }
+
+        @Override
+        public void setTemperament(String temperament) {
+            store.setTemperament(index, temperament);
+        }
+
+        @Override
+        public void setGoodWithKids(boolean goodWithKids) {
+            setTrait(FLAG_GOOD_WITH_KIDS, goodWithKids);
+        }
+
+        @Override
+        public void setGoodWithOtherCats(boolean goodWithOtherCats) {
+            setTrait(FLAG_GOOD_WITH_OTHERS, goodWithOtherCats);
+        }
+
+        private void setTrait(int flag, boolean value) {
+            if (has(flag) != value) {
+                store.setFlag(index, flag, value);
+                traitsChanged();
+            }
+        }
+    }
+}
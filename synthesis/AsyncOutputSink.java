@@ -0,0 +1,108 @@
+/*
+ * AsyncOutputSink.java - Synthesis Project
+ * An OutputSink that hands lines to a background thread instead of writing them itself.
+ * The writer thread drains the queue in batches and writes each batch with a single
+ * call, so worker threads only pay for a queue insert.
+ * When the queue is full, callers wait for the writer (nothing is dropped).
+ */
+import java.io.PrintStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+public class AsyncOutputSink implements OutputSink, AutoCloseable {
+    private static final int MAX_BATCH = 1024;
+
+    private final BlockingQueue<String> queue;
+    private final PrintStream target;
+    private final Thread writer;
+    private final Object drained = new Object();
+    private volatile boolean closed;
+    private final AtomicLong accepted = new AtomicLong(); // lines handed to the queue
+    private volatile long written;                          // lines written (only the writer updates it)
+
+    public AsyncOutputSink(PrintStream target, int capacity) {
+        this.target = target;
+        this.queue = new ArrayBlockingQueue<>(capacity);
+        this.writer = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                writeLoop();
+            }
+        }, "async-output-sink");
+        writer.setDaemon(true);
+        writer.start();
+    }
+
+    public AsyncOutputSink() {
+        this(System.out, 1 << 16);
+    }
+
+    @Override
+    public void println(String line) {
+        if (closed) {
+            throw new IllegalStateException("Output sink is closed");
+        }
+        try {
+            queue.put(line);
+            accepted.incrementAndGet();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void writeLoop() {
+        List<String> batch = new ArrayList<>(MAX_BATCH);
+        StringBuilder text = new StringBuilder(MAX_BATCH * 64);
+        String separator = System.lineSeparator();
+        while (!closed || !queue.isEmpty()) {
+            try {
+                String first = queue.poll(100, TimeUnit.MILLISECONDS);
+                if (first == null) {
+                    continue;
+                }
+                batch.add(first);
+                queue.drainTo(batch, MAX_BATCH - 1);
+            } catch (InterruptedException e) {
+                // close() interrupts a waiting writer; the loop condition decides whether to stop
+                continue;
+            }
+            for (String line : batch) {
+                text.append(line).append(separator);
+            }
+            target.print(text);
+            target.flush();
+            written += batch.size();
+            synchronized (drained) {
+                drained.notifyAll();
+            }
+            batch.clear();
+            text.setLength(0);
+        }
+    }
+
+    // Waits until every line accepted so far has been written
+    public void flush() throws InterruptedException {
+        long goal = accepted.get();
+        synchronized (drained) {
+            while (written < goal && writer.isAlive()) {
+                drained.wait(100);
+            }
+        }
+    }
+
+    // Writes the remaining lines and stops the writer thread
+    @Override
+    public void close() {
+        closed = true;
+        writer.interrupt();
+        try {
+            writer.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,211 @@
+/*
+ * CareScheduler.java - Synthesis Project
+ * Runs performDailyCare() for every animal still in the shelter on a work-stealing
+ * fork/join pool and reports how long it took.
+ *
+ * Animals are split into one queue per species. The Dog routine is heavier than the
+ * Cat routine, so the dog queue is started first and both queues are cut into small
+ * batches that idle workers can steal. The report contains the wall-clock throughput
+ * and per-animal latency percentiles for each species.
+ *
+ * Tip: combine with Animal.setOutputSink(OutputSink.NONE) or an AsyncOutputSink so the
+ * care routines are not limited by console output.
+ */
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+public class CareScheduler implements AutoCloseable {
+    private final ForkJoinPool pool;
+    private final int batchSize;
+
+    // parallelism = number of worker threads; batchSize = animals per task that is not split further
+    public CareScheduler(int parallelism, int batchSize) {
+        if (parallelism < 1 || batchSize < 1) {
+            throw new IllegalArgumentException("parallelism and batchSize must be at least 1");
+        }
+        this.pool = new ForkJoinPool(parallelism);
+        this.batchSize = batchSize;
+    }
+
+    public CareScheduler() {
+        this(Runtime.getRuntime().availableProcessors(), 64);
+    }
+
+    public int getParallelism() {
+        return pool.getParallelism();
+    }
+
+    // Performs daily care for every unadopted animal and returns the timing report
+    public CareReport runDailyCare(Shelter shelter) {
+        List<Animal> dogs = new ArrayList<>();
+        List<Animal> cats = new ArrayList<>();
+        List<Animal> others = new ArrayList<>();
+        for (Animal animal : shelter.getAvailableAnimals()) {
+            if (animal instanceof Dog) {
+                dogs.add(animal);
+            } else if (animal instanceof Cat) {
+                cats.add(animal);
+            } else {
+                others.add(animal);
+            }
+        }
+        final CareQueue dogQueue = new CareQueue("Dogs", dogs);
+        final CareQueue catQueue = new CareQueue("Cats", cats);
+        final CareQueue otherQueue = new CareQueue("Other", others);
+
+        long start = System.nanoTime();
+        pool.invoke(new RecursiveAction() {
+            @Override
+            protected void compute() {
+                // heaviest queue first so it is not left running alone at the end
+                invokeAll(dogQueue.task(), catQueue.task(), otherQueue.task());
+            }
+        });
+        long wallClockNanos = System.nanoTime() - start;
+
+        return new CareReport(wallClockNanos, getParallelism(),
+                              Arrays.asList(dogQueue.stats(), catQueue.stats(), otherQueue.stats()));
+    }
+
+    @Override
+    public void close() {
+        pool.shutdown();
+    }
+
+    // Animals of one species plus the care latency of each of them
+    private final class CareQueue {
+        private final String name;
+        private final Animal[] animals;
+        private final long[] latencies;
+
+        CareQueue(String name, List<Animal> animals) {
+            this.name = name;
+            this.animals = animals.toArray(new Animal[0]);
+            this.latencies = new long[this.animals.length];
+        }
+
+        RecursiveAction task() {
+            return new CareTask(this, 0, animals.length);
+        }
+
+        SpeciesStats stats() {
+            return new SpeciesStats(name, latencies);
+        }
+    }
+
+    // Cares for animals [from, to) of a queue, splitting big ranges so idle workers can steal them
+    private final class CareTask extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+        private final CareQueue queue;
+        private final int from;
+        private final int to;
+
+        CareTask(CareQueue queue, int from, int to) {
+            this.queue = queue;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from <= batchSize) {
+                for (int i = from; i < to; i++) {
+                    long start = System.nanoTime();
+                    queue.animals[i].performDailyCare();
+                    queue.latencies[i] = System.nanoTime() - start;
+                }
+                return;
+            }
+            int middle = (from + to) >>> 1;
+            invokeAll(new CareTask(queue, from, middle), new CareTask(queue, middle, to));
+        }
+    }
+
+    // Latency percentiles for one species
+    public static class SpeciesStats {
+        private final String species;
+        private final int count;
+        private final long[] sortedLatencies;
+
+        SpeciesStats(String species, long[] latencies) {
+            this.species = species;
+            this.count = latencies.length;
+            this.sortedLatencies = latencies.clone();
+            Arrays.sort(sortedLatencies);
+        }
+
+        public String getSpecies() {
+            return species;
+        }
+
+        public int getCount() {
+            return count;
+        }
+
+        // Latency in nanoseconds below which 'percent' percent of the animals were cared for
+        public long getPercentileNanos(double percent) {
+            if (count == 0) {
+                return 0;
+            }
+            int index = (int) Math.ceil(percent / 100.0 * count) - 1;
+            return sortedLatencies[Math.max(0, Math.min(index, count - 1))];
+        }
+
+        public long getMaxNanos() {
+            return count == 0 ? 0 : sortedLatencies[count - 1];
+        }
+    }
+
+    // Result of one daily care run
+    public static class CareReport {
+        private final long wallClockNanos;
+        private final int parallelism;
+        private final List<SpeciesStats> species;
+
+        CareReport(long wallClockNanos, int parallelism, List<SpeciesStats> species) {
+            this.wallClockNanos = wallClockNanos;
+            this.parallelism = parallelism;
+            this.species = species;
+        }
+
+        public long getWallClockNanos() {
+            return wallClockNanos;
+        }
+
+        public int getAnimalsCaredFor() {
+            int total = 0;
+            for (SpeciesStats stats : species) {
+                total += stats.getCount();
+            }
+            return total;
+        }
+
+        public double getAnimalsPerSecond() {
+            return wallClockNanos == 0 ? 0 : getAnimalsCaredFor() * 1e9 / wallClockNanos;
+        }
+
+        public List<SpeciesStats> getSpeciesStats() {
+            return species;
+        }
+
+        @Override
+        public String toString() {
+            StringBuilder text = new StringBuilder();
+            text.append(String.format("Daily care: %d animals in %.1f ms on %d threads (%.0f animals/s)%n",
+                    getAnimalsCaredFor(), wallClockNanos / 1e6, parallelism, getAnimalsPerSecond()));
+            for (SpeciesStats stats : species) {
+                if (stats.getCount() == 0) {
+                    continue;
+                }
+                text.append(String.format("  %-5s n=%d  p50=%.1fus  p90=%.1fus  p99=%.1fus  max=%.1fus%n",
+                        stats.getSpecies(), stats.getCount(),
+                        stats.getPercentileNanos(50) / 1e3, stats.getPercentileNanos(90) / 1e3,
+                        stats.getPercentileNanos(99) / 1e3, stats.getMaxNanos() / 1e3));
+            }
+            return text.toString();
+        }
+    }
+}
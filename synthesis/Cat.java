@@ -40,13 +40,13 @@ public class Cat extends Animal {
     public String getCareInstructions() {
         StringBuilder instructions = new StringBuilder();
         instructions.append("Regular grooming, clean litter box");
-        if (!isIndoor) {
+        if (!isIndoor()) {
             instructions.append(", monitor outdoor activity");
         }
-        if (!goodWithKids) {
+        if (!isGoodWithKids()) {
             instructions.append(", requires adult supervision around children");
         }
-        if (!goodWithOtherCats) {
+        if (!isGoodWithOtherCats()) {
             instructions.append(", should be the only cat in household");
         }
         return instructions.toString();
@@ -83,7 +83,10 @@ public class Cat extends Animal {
         return isIndoor;
     }
     public void setIndoor(boolean indoor) {
-        this.isIndoor = indoor;
+        if (this.isIndoor != indoor) {
+            this.isIndoor = indoor;
+            traitsChanged();
+        }
     }
     public String getTemperament() {
         return temperament;
@@ -95,79 +98,85 @@ public class Cat extends Animal {
         return goodWithKids;
     }
     public void setGoodWithKids(boolean goodWithKids) {
-        this.goodWithKids = goodWithKids;
+        if (this.goodWithKids != goodWithKids) {
+            this.goodWithKids = goodWithKids;
+            traitsChanged();
+        }
     }
     public boolean isGoodWithOtherCats() {
         return goodWithOtherCats;
     }
     public void setGoodWithOtherCats(boolean goodWithOtherCats) {
-        this.goodWithOtherCats = goodWithOtherCats;
+        if (this.goodWithOtherCats != goodWithOtherCats) {
+            this.goodWithOtherCats = goodWithOtherCats;
+            traitsChanged();
+        }
     }
 
     // Cat-specific behaviors
     public void purr() {
-        System.out.println(getName() + " purrs softly. 63B");
+        out().println(getName() + " purrs softly. 63B");
     }
     public void scratch() {
-        System.out.println(getName() + " is scratching the post! 408");
+        out().println(getName() + " is scratching the post! 408");
     }
     public void nap() {
-        System.out.println(getName() + " is taking a cozy nap. 431");
+        out().println(getName() + " is taking a cozy nap. 431");
     }
     public void play() {
-        System.out.println(getName() + " is playing with a toy! 638");
+        out().println(getName() + " is playing with a toy! 638");
     }
 
     // Override adoption fee calculation with cat-specific logic
     @Override
     public double calculateAdoptionFee() {
         double fee = super.calculateAdoptionFee();
-        if (isIndoor) fee += 10.0;
-        if (goodWithKids) fee += 10.0;
+        if (isIndoor()) fee += 10.0;
+        if (isGoodWithKids()) fee += 10.0;
         return fee;
     }
 
     @Override
     public boolean isSuitableForChildren() {
-        return goodWithKids && getAge() >= 1 && getAge() <= 15;
+        return isGoodWithKids() && getAge() >= 1 && getAge() <= 15;
     }
 
     @Override
     public void displayFullProfile() {
-        System.out.println("408 === Cat Profile === 408");
+        out().println("408 === Cat Profile === 408");
         displayBasicInfo();
-        System.out.println("Temperament: " + temperament);
-        System.out.println("Indoor Cat: " + (isIndoor ? "Yes 3E0" : "No 30D"));
-        System.out.println("Good with Kids: " + (goodWithKids ? "Yes 44D" : "No 44E"));
-        System.out.println("Good with Other Cats: " + (goodWithOtherCats ? "Yes 408" : "No 63F"));
-        System.out.println("Sound: " + makeSound());
-        System.out.println("Care Instructions: " + getCareInstructions());
-        System.out.println("Exercise Needs: " + getExerciseNeeds());
-        System.out.println("Dietary Needs: " + getDietaryNeeds());
-        System.out.printf("Adoption Fee: $%.2f%n", calculateAdoptionFee());
-        System.out.println("=======================");
+        out().println("Temperament: " + getTemperament());
+        out().println("Indoor Cat: " + (isIndoor() ? "Yes 3E0" : "No 30D"));
+        out().println("Good with Kids: " + (isGoodWithKids() ? "Yes 44D" : "No 44E"));
+        out().println("Good with Other Cats: " + (isGoodWithOtherCats() ? "Yes 408" : "No 63F"));
+        out().println("Sound: " + makeSound());
+        out().println("Care Instructions: " + getCareInstructions());
+        out().println("Exercise Needs: " + getExerciseNeeds());
+        out().println("Dietary Needs: " + getDietaryNeeds());
+        out().println(String.format("Adoption Fee: $%.2f", calculateAdoptionFee()));
+        out().println("=======================");
     }
 
     @Override
     public void performDailyCare() {
-        System.out.println("\u001F408 Daily care routine for " + getName() + ":");
-        System.out.println("  - Morning feeding: " + getDietaryNeeds());
-        System.out.println("  - Litter box cleaning");
-        System.out.println("  - Playtime: " + getExerciseNeeds());
+        out().println("\u001F408 Daily care routine for " + getName() + ":");
+        out().println("  - Morning feeding: " + getDietaryNeeds());
+        out().println("  - Litter box cleaning");
+        out().println("  - Playtime: " + getExerciseNeeds());
         nap();
         purr();
-        System.out.println("  - Grooming and health check");
-        System.out.println("  - Evening feeding");
+        out().println("  - Grooming and health check");
+        out().println("  - Evening feeding");
         play();
-        System.out.println("  ✅ Daily care completed for " + getName());
+        out().println("  ✅ Daily care completed for " + getName());
     }
 
     // Method to get compatibility score with potential adopters
     public int getCompatibilityScore(boolean hasKids, boolean hasOtherCats, boolean wantsIndoorCat) {
         int score = 100;
-        if (hasKids && !goodWithKids) score -= 40;
-        if (hasOtherCats && !goodWithOtherCats) score -= 30;
-        if (wantsIndoorCat && !isIndoor) score -= 20;
+        if (hasKids && !isGoodWithKids()) score -= 40;
+        if (hasOtherCats && !isGoodWithOtherCats()) score -= 30;
+        if (wantsIndoorCat && !isIndoor()) score -= 20;
         return Math.max(score, 0);
     }
 }
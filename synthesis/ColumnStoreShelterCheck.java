@@ -0,0 +1,92 @@
+/*
+ * ColumnStoreShelterCheck.java - Synthesis Project
+ * Checks that the flyweight views of an AnimalColumnStore work inside a Shelter:
+ *   - every view is admitted (getId() is the Shelter id, indexOf() the column index)
+ *   - a view cannot be admitted twice
+ *   - findAnimals, the age index and the available/adopted sets follow changes made
+ *     through the views (adopt, setAge)
+ *   - a MatchingEngine on the shelter follows trait changes (Dog.setTrained)
+ *   - every change is written to the columns
+ * Prints OK or MISMATCH per check; exits with status 1 if any check failed.
+ *
+ * Run:  javac *.java && java ColumnStoreShelterCheck [animals]
+ */
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+public class ColumnStoreShelterCheck {
+    private static final String[] BREEDS = { "Labrador", "Beagle", "Siamese", "Persian" };
+
+    private static boolean allPassed = true;
+
+    public static void main(String[] args) throws Exception {
+        int count = args.length > 0 ? Integer.parseInt(args[0]) : 10_000;
+        Animal.setOutputSink(OutputSink.NONE);
+
+        Path directory = Files.createTempDirectory("column-store-check");
+        try (AnimalColumnStore store = AnimalColumnStore.open(directory, count)) {
+            for (int i = 0; i < count; i++) {
+                String breed = BREEDS[i % BREEDS.length];
+                store.append(i % BREEDS.length < 2
+                        ? new Dog("Dog" + i, i % 12, breed, "2024-01-01", false, "Friendly", true, true)
+                        : new Cat("Cat" + i, i % 12, breed, "2024-01-01", true, "Calm", true, true));
+            }
+
+            // Admit the views in reverse, so Shelter ids and column indexes differ
+            Shelter shelter = new Shelter(true);
+            for (int index = count - 1; index >= 0; index--) {
+                shelter.addAnimal(store.get(index));
+            }
+            check("all views admitted", shelter.size() == count);
+            Animal first = shelter.getAnimal(0);
+            check("id and column index", first.getId() == 0 && store.indexOf(first) == count - 1);
+            shelter.addAnimal(first);
+            check("second admission rejected", shelter.size() == count);
+
+            int labradors = (count + BREEDS.length - 1) / BREEDS.length;
+            check("query by breed", shelter.findAnimals("Labrador", Dog.class, false, 0, 20).size() == labradors);
+
+            // Adopt every Labrador through its admitted view
+            for (Animal animal : shelter.getAnimalsByBreed("Labrador")) {
+                animal.adopt();
+            }
+            check("adopted leave the available index",
+                  shelter.findAnimals("Labrador", Dog.class, false, 0, 20).isEmpty()
+                  && shelter.findAnimals("Labrador", Dog.class, true, 0, 20).size() == labradors
+                  && shelter.getAvailableAnimals().size() == count - labradors);
+            boolean columnsAdopted = true;
+            for (Animal animal : shelter.getAnimalsByBreed("Labrador")) {
+                columnsAdopted &= (store.getFlags(store.indexOf(animal)) & AnimalColumnStore.FLAG_ADOPTED) != 0;
+            }
+            check("adoption written to the columns", columnsAdopted);
+
+            // Make one Beagle a senior and check the age index follows
+            Animal beagle = shelter.findAnimals("Beagle", Dog.class, false, 1, 1).get(0);
+            beagle.setAge(10);
+            List<Animal> seniors = shelter.findAnimals("Beagle", Dog.class, false, 10, 10);
+            check("age change re-indexed", seniors.contains(beagle)
+                  && !shelter.findAnimals("Beagle", Dog.class, false, 1, 1).contains(beagle)
+                  && store.getAge(store.indexOf(beagle)) == 10);
+
+            // Training a dog must raise its score in a MatchingEngine that follows the shelter
+            MatchingEngine engine = new MatchingEngine(shelter);
+            MatchingEngine.AdopterProfile wantsTrainedDog =
+                    new MatchingEngine.AdopterProfile(true, false, false, false, false, true, false);
+            check("untrained dogs score 80", engine.findTopMatches(wantsTrainedDog, 1).get(0).getScore() == 80);
+            ((Dog) beagle).setTrained(true);
+            MatchingEngine.Match best = engine.findTopMatches(wantsTrainedDog, 1).get(0);
+            check("trained dog scores 100", best.getAnimal() == beagle && best.getScore() == 100);
+            engine.detach();
+        }
+
+        if (!allPassed) {
+            System.exit(1);
+        }
+    }
+
+    private static void check(String name, boolean passed) {
+        System.out.printf("%-36s %s%n", name, passed ? "OK" : "MISMATCH");
+        allPassed &= passed;
+    }
+}
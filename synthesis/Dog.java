@@ -42,15 +42,15 @@ public class Dog extends Animal {
         StringBuilder instructions = new StringBuilder();
         instructions.append("Daily brushing, regular vet checkups");
         
-        if (!isTrained) {
+        if (!isTrained()) {
             instructions.append(", needs obedience training");
         }
         
-        if (!goodWithKids) {
+        if (!isGoodWithKids()) {
             instructions.append(", requires adult supervision around children");
         }
         
-        if (!goodWithOtherDogs) {
+        if (!isGoodWithOtherDogs()) {
             instructions.append(", should be the only dog in household");
         }
         
@@ -95,11 +95,14 @@ public class Dog extends Animal {
     }
     
     public void setTrained(boolean trained) {
-        this.isTrained = trained;
+        if (isTrained() != trained) {
+            this.isTrained = trained;
+            traitsChanged();
+        }
         if (trained) {
-            System.out.println("🎓 " + getName() + " is now marked as trained!");
+            out().println("🎓 " + getName() + " is now marked as trained!");
         } else {
-            System.out.println("📚 " + getName() + " needs training.");
+            out().println("📚 " + getName() + " needs training.");
         }
     }
     
@@ -116,7 +119,10 @@ public class Dog extends Animal {
     }
     
     public void setGoodWithKids(boolean goodWithKids) {
-        this.goodWithKids = goodWithKids;
+        if (this.goodWithKids != goodWithKids) {
+            this.goodWithKids = goodWithKids;
+            traitsChanged();
+        }
     }
     
     public boolean isGoodWithOtherDogs() {
@@ -124,35 +130,38 @@ public class Dog extends Animal {
     }
     
     public void setGoodWithOtherDogs(boolean goodWithOtherDogs) {
-        this.goodWithOtherDogs = goodWithOtherDogs;
+        if (this.goodWithOtherDogs != goodWithOtherDogs) {
+            this.goodWithOtherDogs = goodWithOtherDogs;
+            traitsChanged();
+        }
     }
     
     // Dog-specific behaviors
     public void bark() {
-        System.out.println(getName() + " barks: " + makeSound());
+        out().println(getName() + " barks: " + makeSound());
     }
     
     public void wagTail() {
-        System.out.println(getName() + " is wagging its tail happily! 🐕");
+        out().println(getName() + " is wagging its tail happily! 🐕");
     }
     
     public void fetch() {
-        System.out.println(getName() + " is playing fetch! 🎾");
+        out().println(getName() + " is playing fetch! 🎾");
     }
     
     public void sit() {
-        if (isTrained) {
-            System.out.println(getName() + " sits obediently! Good dog! 🐕");
+        if (isTrained()) {
+            out().println(getName() + " sits obediently! Good dog! 🐕");
         } else {
-            System.out.println(getName() + " doesn't know the sit command yet. Training needed! 📚");
+            out().println(getName() + " doesn't know the sit command yet. Training needed! 📚");
         }
     }
     
     public void shake() {
-        if (isTrained) {
-            System.out.println(getName() + " gives you a paw shake! 🐾");
+        if (isTrained()) {
+            out().println(getName() + " gives you a paw shake! 🐾");
         } else {
-            System.out.println(getName() + " tilts head in confusion. Training needed! 🤔");
+            out().println(getName() + " tilts head in confusion. Training needed! 🤔");
         }
     }
     
@@ -162,12 +171,12 @@ public class Dog extends Animal {
         double fee = super.calculateAdoptionFee(); // Get base fee
         
         // Trained dogs have higher adoption fees
-        if (isTrained) {
+        if (isTrained()) {
             fee += 25.0;
         }
         
         // Dogs good with kids are more desirable
-        if (goodWithKids) {
+        if (isGoodWithKids()) {
             fee += 15.0;
         }
         
@@ -177,70 +186,70 @@ public class Dog extends Animal {
     // Override suitability for children
     @Override
     public boolean isSuitableForChildren() {
-        return goodWithKids && getAge() >= 1 && getAge() <= 10;
+        return isGoodWithKids() && getAge() >= 1 && getAge() <= 10;
     }
     
     // Enhanced display method with dog-specific information
     @Override
     public void displayFullProfile() {
-        System.out.println("🐕 === Dog Profile === 🐕");
+        out().println("🐕 === Dog Profile === 🐕");
         displayBasicInfo();
-        System.out.println("Temperament: " + temperament);
-        System.out.println("Training Status: " + (isTrained ? "Trained ✅" : "Needs Training 📚"));
-        System.out.println("Good with Kids: " + (goodWithKids ? "Yes ✅" : "No ❌"));
-        System.out.println("Good with Other Dogs: " + (goodWithOtherDogs ? "Yes ✅" : "No ❌"));
-        System.out.println("Sound: " + makeSound());
-        System.out.println("Care Instructions: " + getCareInstructions());
-        System.out.println("Exercise Needs: " + getExerciseNeeds());
-        System.out.println("Dietary Needs: " + getDietaryNeeds());
-        System.out.printf("Adoption Fee: $%.2f%n", calculateAdoptionFee());
-        System.out.println("=======================");
+        out().println("Temperament: " + getTemperament());
+        out().println("Training Status: " + (isTrained() ? "Trained ✅" : "Needs Training 📚"));
+        out().println("Good with Kids: " + (isGoodWithKids() ? "Yes ✅" : "No ❌"));
+        out().println("Good with Other Dogs: " + (isGoodWithOtherDogs() ? "Yes ✅" : "No ❌"));
+        out().println("Sound: " + makeSound());
+        out().println("Care Instructions: " + getCareInstructions());
+        out().println("Exercise Needs: " + getExerciseNeeds());
+        out().println("Dietary Needs: " + getDietaryNeeds());
+        out().println(String.format("Adoption Fee: $%.2f", calculateAdoptionFee()));
+        out().println("=======================");
     }
     
     // Dog-specific daily routine
     @Override
     public void performDailyCare() {
-        System.out.println("🐕 Daily care routine for " + getName() + ":");
-        System.out.println("  - Morning walk and bathroom break");
-        System.out.println("  - Feeding: " + getDietaryNeeds());
-        System.out.println("  - Playtime and exercise: " + getExerciseNeeds());
+        out().println("🐕 Daily care routine for " + getName() + ":");
+        out().println("  - Morning walk and bathroom break");
+        out().println("  - Feeding: " + getDietaryNeeds());
+        out().println("  - Playtime and exercise: " + getExerciseNeeds());
         
-        if (isTrained) {
-            System.out.println("  - Training reinforcement: practicing commands");
+        if (isTrained()) {
+            out().println("  - Training reinforcement: practicing commands");
             sit();
             shake();
         } else {
-            System.out.println("  - Basic training session");
+            out().println("  - Basic training session");
         }
         
-        System.out.println("  - Grooming and health check");
-        System.out.println("  - Evening walk");
+        out().println("  - Grooming and health check");
+        out().println("  - Evening walk");
         bark(); // Dogs often bark during care
         wagTail(); // Happy dog!
-        System.out.println("  ✅ Daily care completed for " + getName());
+        out().println("  ✅ Daily care completed for " + getName());
     }
     
     // Method to simulate a training session
     public void conductTrainingSession() {
-        System.out.println("🎓 Training session with " + getName() + ":");
+        out().println("🎓 Training session with " + getName() + ":");
         
-        if (!isTrained) {
-            System.out.println("  Teaching basic commands...");
-            System.out.println("  Practicing sit, stay, and shake...");
-            System.out.println("  Using positive reinforcement with treats!");
+        if (!isTrained()) {
+            out().println("  Teaching basic commands...");
+            out().println("  Practicing sit, stay, and shake...");
+            out().println("  Using positive reinforcement with treats!");
             
             // Simulate successful training
             if (Math.random() > 0.3) { // 70% chance of learning
                 setTrained(true);
-                System.out.println("  🎉 Training successful! " + getName() + " learned the commands!");
+                out().println("  🎉 Training successful! " + getName() + " learned the commands!");
             } else {
-                System.out.println("  📚 " + getName() + " needs more practice. Keep training!");
+                out().println("  📚 " + getName() + " needs more practice. Keep training!");
             }
         } else {
-            System.out.println("  Reinforcing existing commands...");
+            out().println("  Reinforcing existing commands...");
             sit();
             shake();
-            System.out.println("  🌟 " + getName() + " is a well-trained dog!");
+            out().println("  🌟 " + getName() + " is a well-trained dog!");
         }
     }
     
@@ -248,9 +257,9 @@ public class Dog extends Animal {
     public int getCompatibilityScore(boolean hasKids, boolean hasOtherDogs, boolean wantsTrainedDog) {
         int score = 100;
         
-        if (hasKids && !goodWithKids) score -= 50;
-        if (hasOtherDogs && !goodWithOtherDogs) score -= 30;
-        if (wantsTrainedDog && !isTrained) score -= 20;
+        if (hasKids && !isGoodWithKids()) score -= 50;
+        if (hasOtherDogs && !isGoodWithOtherDogs()) score -= 30;
+        if (wantsTrainedDog && !isTrained()) score -= 20;
         
         return Math.max(score, 0);
     }
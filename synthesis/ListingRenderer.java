@@ -0,0 +1,200 @@
+/*
+ * ListingRenderer.java - Synthesis Project
+ * Renders adoption listings (the same text as Animal.getAdoptionListing()) without
+ * String.format: listings are appended to a reusable StringBuilder, or streamed as UTF-8
+ * straight into an OutputStream through one reusable byte buffer.
+ *
+ * Names and breeds are encoded to UTF-8 once and cached. Fees are written digit by digit
+ * when the fee is a whole number of cents (always the case for Dog and Cat); anything
+ * else falls back to String.format so the text stays identical.
+ *
+ * A renderer keeps scratch buffers, so use one renderer per thread.
+ */
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.text.DecimalFormatSymbols;
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+
+public class ListingRenderer {
+    private static final byte[] YEAR_OLD = ascii(" year old ");
+    private static final byte[] ADOPTED = ascii(". ADOPTED Adoption fee: $");
+    private static final byte[] AVAILABLE = ascii(". AVAILABLE Adoption fee: $");
+    private static final byte[] ADOPTED_END = ascii(". ");
+    private static final byte[] AVAILABLE_END = ascii(". Contact shelter for more info!");
+    private static final byte[] DASH = ascii(" - ");
+    private static final byte[] NULL = ascii("null");
+    private static final int MAX_CACHED_STRINGS = 1 << 16;
+    private static final long MAX_FAST_CENTS = 1_000_000_000_000_000L;
+
+    private final byte[] buffer = new byte[1 << 16];
+    private final char[] digits = new char[20];
+    private final Map<String, byte[]> utf8Cache = new HashMap<>();
+    private OutputStream out;   // stream being rendered to; the buffer is flushed into it when full
+    private int position;
+
+    // Digit-by-digit output only matches String.format when the locale uses '0'-'9' and '.'
+    private final boolean plainDigits;
+
+    public ListingRenderer() {
+        DecimalFormatSymbols symbols = DecimalFormatSymbols.getInstance(Locale.getDefault(Locale.Category.FORMAT));
+        plainDigits = symbols.getZeroDigit() == '0' && symbols.getDecimalSeparator() == '.';
+    }
+
+    private static byte[] ascii(String text) {
+        return text.getBytes(StandardCharsets.US_ASCII);
+    }
+
+    // ---- StringBuilder output ----
+
+    // Appends the listing of 'animal' to 'out'; same text as animal.getAdoptionListing()
+    public StringBuilder appendListing(Animal animal, StringBuilder out) {
+        double fee = animal.calculateAdoptionFee();
+        long cents = wholeCents(fee);
+        if (cents < 0) {
+            return out.append(animal.getAdoptionListing());
+        }
+        boolean adopted = animal.isAdopted();
+        out.append(animal.getName()).append(" - ")
+           .append(animal.getAge()).append(" year old ")
+           .append(animal.getBreed())
+           .append(adopted ? ". ADOPTED Adoption fee: $" : ". AVAILABLE Adoption fee: $");
+        out.append(cents / 100).append('.');
+        int fraction = (int) (cents % 100);
+        out.append((char) ('0' + fraction / 10)).append((char) ('0' + fraction % 10));
+        return out.append(adopted ? ". " : ". Contact shelter for more info!");
+    }
+
+    // ---- Streaming output ----
+
+    // Streams one listing per line for every animal (or every available animal) in the shelter
+    public void renderShelter(Shelter shelter, OutputStream out, boolean availableOnly) throws IOException {
+        Iterable<Animal> animals = availableOnly ? shelter.getAvailableAnimals() : shelter.getAnimals();
+        start(out);
+        try {
+            for (Animal animal : animals) {
+                writeListing(animal);
+                writeByte('\n');
+            }
+        } finally {
+            finish();
+        }
+        out.flush();
+    }
+
+    // Streams the listing of a single animal (no line break)
+    public void renderListing(Animal animal, OutputStream out) throws IOException {
+        start(out);
+        try {
+            writeListing(animal);
+        } finally {
+            finish();
+        }
+    }
+
+    private void start(OutputStream out) {
+        this.out = out;
+        position = 0;
+    }
+
+    private void finish() throws IOException {
+        try {
+            out.write(buffer, 0, position);
+        } finally {
+            out = null;
+            position = 0;
+        }
+    }
+
+    private void writeListing(Animal animal) throws IOException {
+        double fee = animal.calculateAdoptionFee();
+        long cents = wholeCents(fee);
+        if (cents < 0) {
+            writeBytes(animal.getAdoptionListing().getBytes(StandardCharsets.UTF_8));
+            return;
+        }
+        boolean adopted = animal.isAdopted();
+        writeBytes(utf8(animal.getName()));
+        writeBytes(DASH);
+        writeNumber(animal.getAge());
+        writeBytes(YEAR_OLD);
+        writeBytes(utf8(animal.getBreed()));
+        writeBytes(adopted ? ADOPTED : AVAILABLE);
+        writeNumber(cents / 100);
+        writeByte('.');
+        int fraction = (int) (cents % 100);
+        writeByte('0' + fraction / 10);
+        writeByte('0' + fraction % 10);
+        writeBytes(adopted ? ADOPTED_END : AVAILABLE_END);
+    }
+
+    /**
+     * Returns the fee in cents when printing those cents gives exactly what "%.2f" prints,
+     * i.e. the fee is the double closest to a whole number of cents; otherwise -1.
+     */
+    private long wholeCents(double fee) {
+        if (!plainDigits || !(fee >= 0) || Double.doubleToRawLongBits(fee) < 0) {
+            return -1; // NaN, negative numbers and -0.0 take the String.format path
+        }
+        double scaled = fee * 100;
+        if (scaled >= MAX_FAST_CENTS) {
+            return -1;
+        }
+        long cents = Math.round(scaled);
+        return cents / 100.0 == fee ? cents : -1;
+    }
+
+    private byte[] utf8(String text) {
+        if (text == null) {
+            return NULL;
+        }
+        byte[] bytes = utf8Cache.get(text);
+        if (bytes == null) {
+            if (utf8Cache.size() >= MAX_CACHED_STRINGS) {
+                utf8Cache.clear(); // keeps memory bounded when names are mostly unique
+            }
+            bytes = text.getBytes(StandardCharsets.UTF_8);
+            utf8Cache.put(text, bytes);
+        }
+        return bytes;
+    }
+
+    // Only called with an int age or non-negative cents, so -value cannot overflow
+    private void writeNumber(long value) throws IOException {
+        if (value < 0) {
+            writeByte('-');
+            value = -value;
+        }
+        int count = 0;
+        do {
+            digits[count++] = (char) ('0' + value % 10);
+            value /= 10;
+        } while (value != 0);
+        while (count > 0) {
+            writeByte(digits[--count]);
+        }
+    }
+
+    private void writeBytes(byte[] bytes) throws IOException {
+        if (position + bytes.length > buffer.length) {
+            out.write(buffer, 0, position);
+            position = 0;
+            if (bytes.length > buffer.length) {
+                out.write(bytes);
+                return;
+            }
+        }
+        System.arraycopy(bytes, 0, buffer, position, bytes.length);
+        position += bytes.length;
+    }
+
+    private void writeByte(int value) throws IOException {
+        if (position == buffer.length) {
+            out.write(buffer, 0, position);
+            position = 0;
+        }
+        buffer[position++] = (byte) value;
+    }
+}
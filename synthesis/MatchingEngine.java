@@ -0,0 +1,315 @@
+/*
+ * MatchingEngine.java - Synthesis Project
+ * Finds the best available animals for an adopter without scoring every animal.
+ *
+ * Dog.getCompatibilityScore() and Cat.getCompatibilityScore() only depend on three
+ * boolean traits of the animal (good with kids, good with other dogs/cats, trained/indoor),
+ * so every animal falls into one of 2 species x 8 trait combinations. The engine keeps
+ * the animals of each combination in a bucket and precomputes the score of every
+ * combination for every adopter profile. A top-K query sorts the 16 buckets by score and
+ * reads animals from the best buckets until it has K available animals.
+ *
+ * The engine follows the shelter: admitted and returned animals are put into their bucket,
+ * adopted animals are taken out, and a trait change (e.g. Dog.setTrained) moves the animal
+ * to its new bucket. Each bucket is a bitset of animal ids with its own lock, so a move
+ * costs O(1) and moves in different buckets run in parallel. The moves of one animal are
+ * serialized by a lock stripe of its id, and an animal is always filed by its current
+ * state, so notifications for it may arrive in any order. Queries never lock, so many
+ * adopter queries can run at the same time.
+ */
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+public class MatchingEngine implements ShelterListener {
+    // Trait bits of an animal's bucket
+    private static final int GOOD_WITH_KIDS = 1;
+    private static final int GOOD_WITH_OTHERS = 2;       // other dogs for a Dog, other cats for a Cat
+    private static final int TRAINED_OR_INDOOR = 4;      // isTrained() for a Dog, isIndoor() for a Cat
+    private static final int TRAIT_COMBINATIONS = 8;
+    private static final int CAT_BUCKETS = TRAIT_COMBINATIONS; // cat buckets follow the 8 dog buckets
+
+    // [profile bits][trait bits] -> score; profile bits are hasKids=1, hasOtherPets=2, wants=4.
+    // Filled by asking real Dog/Cat objects, so the scores always match getCompatibilityScore()
+    private static final int[][] DOG_SCORES = new int[8][TRAIT_COMBINATIONS];
+    private static final int[][] CAT_SCORES = new int[8][TRAIT_COMBINATIONS];
+
+    static {
+        for (int traits = 0; traits < TRAIT_COMBINATIONS; traits++) {
+            boolean kids = (traits & GOOD_WITH_KIDS) != 0;
+            boolean others = (traits & GOOD_WITH_OTHERS) != 0;
+            boolean trainedOrIndoor = (traits & TRAINED_OR_INDOOR) != 0;
+            Dog dog = new Dog("probe", 0, null, null, trainedOrIndoor, null, kids, others);
+            Cat cat = new Cat("probe", 0, null, null, trainedOrIndoor, null, kids, others);
+            for (int profile = 0; profile < 8; profile++) {
+                boolean hasKids = (profile & 1) != 0;
+                boolean hasOtherPets = (profile & 2) != 0;
+                boolean wants = (profile & 4) != 0;
+                DOG_SCORES[profile][traits] = dog.getCompatibilityScore(hasKids, hasOtherPets, wants);
+                CAT_SCORES[profile][traits] = cat.getCompatibilityScore(hasKids, hasOtherPets, wants);
+            }
+        }
+    }
+
+    // What an adopter told us; the same arguments getCompatibilityScore() takes
+    public static class AdopterProfile {
+        private final boolean wantsDog;
+        private final boolean wantsCat;
+        private final boolean hasKids;
+        private final boolean hasOtherDogs;
+        private final boolean hasOtherCats;
+        private final boolean wantsTrainedDog;
+        private final boolean wantsIndoorCat;
+
+        public AdopterProfile(boolean wantsDog, boolean wantsCat, boolean hasKids,
+                              boolean hasOtherDogs, boolean hasOtherCats,
+                              boolean wantsTrainedDog, boolean wantsIndoorCat) {
+            this.wantsDog = wantsDog;
+            this.wantsCat = wantsCat;
+            this.hasKids = hasKids;
+            this.hasOtherDogs = hasOtherDogs;
+            this.hasOtherCats = hasOtherCats;
+            this.wantsTrainedDog = wantsTrainedDog;
+            this.wantsIndoorCat = wantsIndoorCat;
+        }
+
+        private int dogProfileBits() {
+            return (hasKids ? 1 : 0) | (hasOtherDogs ? 2 : 0) | (wantsTrainedDog ? 4 : 0);
+        }
+
+        private int catProfileBits() {
+            return (hasKids ? 1 : 0) | (hasOtherCats ? 2 : 0) | (wantsIndoorCat ? 4 : 0);
+        }
+    }
+
+    // One result of a query
+    public static class Match {
+        private final Animal animal;
+        private final int score;
+
+        Match(Animal animal, int score) {
+            this.animal = animal;
+            this.score = score;
+        }
+
+        public Animal getAnimal() {
+            return animal;
+        }
+
+        public int getScore() {
+            return score;
+        }
+
+        @Override
+        public String toString() {
+            return animal.getName() + " (score " + score + ")";
+        }
+    }
+
+    private static final int STRIPES = 64;               // power of two
+    private static final int FILED_CHUNK_BITS = 12;
+    private static final int FILED_CHUNK = 1 << FILED_CHUNK_BITS;
+
+    private final Shelter shelter;
+    private final AnimalBucket[] buckets = new AnimalBucket[2 * TRAIT_COMBINATIONS];
+    // Moves of animal 'id' are serialized by stripeLocks[id & (STRIPES - 1)]
+    private final Object[] stripeLocks = new Object[STRIPES];
+    // [animal id] -> bucket + 1 the animal is filed in, 0 = none; a slot is guarded by its
+    // animal's stripe lock. Chunks never move, so growing the table loses no write
+    private volatile byte[][] filed = new byte[16][];
+    private final Object growLock = new Object();
+
+    public MatchingEngine(Shelter shelter) {
+        this.shelter = shelter;
+        for (int i = 0; i < buckets.length; i++) {
+            buckets[i] = new AnimalBucket();
+        }
+        for (int i = 0; i < STRIPES; i++) {
+            stripeLocks[i] = new Object();
+        }
+        // The buckets exist before the first notification can arrive. Registering before
+        // rebuild() means an animal admitted or changed meanwhile is filed by its
+        // notification, by rebuild(), or by both (filing is idempotent)
+        shelter.addListener(this);
+        rebuild();
+    }
+
+    // Files every animal again from its current state
+    public void rebuild() {
+        for (Animal animal : shelter.getAnimals()) {
+            refile(animal);
+        }
+    }
+
+    @Override
+    public void animalAdded(Animal animal) {
+        refile(animal);
+    }
+
+    @Override
+    public void adoptionStatusChanged(Animal animal, boolean adopted) {
+        refile(animal); // 'adopted' may already be outdated; refile reads the current status
+    }
+
+    @Override
+    public void traitsChanged(Animal animal) {
+        refile(animal);
+    }
+
+    // Stops following the shelter
+    public void detach() {
+        shelter.removeListener(this);
+    }
+
+    // Moves the animal to the bucket of its current status and traits (none if adopted).
+    // Reading the state under the stripe lock makes the last refile of an animal win,
+    // whatever order racing notifications arrive in
+    private void refile(Animal animal) {
+        int id = animal.getId();
+        byte[] chunk = filedChunk(id);
+        int slot = id & (FILED_CHUNK - 1);
+        synchronized (stripeLocks[id & (STRIPES - 1)]) {
+            int bucket = animal.isAdopted() ? -1 : bucketOf(animal);
+            int current = chunk[slot] - 1;
+            if (current == bucket) {
+                return;
+            }
+            if (current >= 0) {
+                buckets[current].remove(id);
+            }
+            if (bucket >= 0) {
+                buckets[bucket].add(id);
+            }
+            chunk[slot] = (byte) (bucket + 1);
+        }
+    }
+
+    private byte[] filedChunk(int id) {
+        int index = id >>> FILED_CHUNK_BITS;
+        byte[][] table = filed;
+        if (index < table.length && table[index] != null) {
+            return table[index];
+        }
+        synchronized (growLock) {
+            table = filed;
+            if (index >= table.length) {
+                table = Arrays.copyOf(table, Math.max(index + 1, table.length * 2)); // copies chunk references only
+            }
+            if (table[index] == null) {
+                table[index] = new byte[FILED_CHUNK];
+            }
+            filed = table;
+            return table[index];
+        }
+    }
+
+    private static int bucketOf(Animal animal) {
+        if (animal instanceof Dog) {
+            Dog dog = (Dog) animal;
+            return (dog.isGoodWithKids() ? GOOD_WITH_KIDS : 0)
+                 | (dog.isGoodWithOtherDogs() ? GOOD_WITH_OTHERS : 0)
+                 | (dog.isTrained() ? TRAINED_OR_INDOOR : 0);
+        } else if (animal instanceof Cat) {
+            Cat cat = (Cat) animal;
+            return CAT_BUCKETS
+                 + ((cat.isGoodWithKids() ? GOOD_WITH_KIDS : 0)
+                 | (cat.isGoodWithOtherCats() ? GOOD_WITH_OTHERS : 0)
+                 | (cat.isIndoor() ? TRAINED_OR_INDOOR : 0));
+        }
+        return -1; // other animal types have no compatibility score
+    }
+
+    /**
+     * Returns up to k available animals with the highest compatibility score for the profile,
+     * best first (ties keep admission order within a trait combination).
+     */
+    public List<Match> findTopMatches(AdopterProfile profile, int k) {
+        if (k <= 0) {
+            return Collections.emptyList();
+        }
+        int admitted = shelter.size(); // ids at or above this may still be in admission
+
+        // Score every bucket for this profile and order the buckets by score (16 entries)
+        int[] order = new int[2 * TRAIT_COMBINATIONS];
+        int[] scores = new int[2 * TRAIT_COMBINATIONS];
+        int used = 0;
+        for (int bucket = 0; bucket < order.length; bucket++) {
+            boolean cat = bucket >= CAT_BUCKETS;
+            if (cat ? !profile.wantsCat : !profile.wantsDog) {
+                continue;
+            }
+            int traits = bucket & (TRAIT_COMBINATIONS - 1);
+            int score = cat ? CAT_SCORES[profile.catProfileBits()][traits]
+                            : DOG_SCORES[profile.dogProfileBits()][traits];
+            // insertion sort by descending score
+            int position = used++;
+            while (position > 0 && scores[position - 1] < score) {
+                order[position] = order[position - 1];
+                scores[position] = scores[position - 1];
+                position--;
+            }
+            order[position] = bucket;
+            scores[position] = score;
+        }
+
+        List<Match> matches = new ArrayList<>(Math.min(k, 64));
+        for (int i = 0; i < used && matches.size() < k; i++) {
+            AnimalBucket bucket = buckets[order[i]];
+            if (bucket.size == 0) {
+                continue;
+            }
+            AtomicLongArray words = bucket.words;
+            scan:
+            for (int word = 0; word < words.length(); word++) {
+                for (long bits = words.get(word); bits != 0; bits &= bits - 1) {
+                    int id = (word << 6) + Long.numberOfTrailingZeros(bits);
+                    if (id >= admitted) {
+                        break scan;
+                    }
+                    Animal animal = shelter.getAnimal(id);
+                    // adopted: a racing adoption has not taken it out yet
+                    if (!animal.isAdopted()) {
+                        matches.add(new Match(animal, scores[i]));
+                        if (matches.size() == k) {
+                            break scan;
+                        }
+                    }
+                }
+            }
+        }
+        return matches;
+    }
+
+    // The ids of the animals in one bucket, as a bitset: readers scan it in id order without
+    // locking, writers take the bucket's own lock. Growing replaces the array under that lock
+    private static final class AnimalBucket {
+        private volatile AtomicLongArray words = new AtomicLongArray(16);
+        private volatile int size;
+
+        synchronized void add(int id) {
+            int word = id >>> 6;
+            AtomicLongArray current = words;
+            if (word >= current.length()) {
+                AtomicLongArray grown = new AtomicLongArray(Math.max(word + 1, current.length() * 2));
+                for (int i = 0; i < current.length(); i++) {
+                    grown.set(i, current.get(i));
+                }
+                words = current = grown;
+            }
+            current.set(word, current.get(word) | 1L << id);
+            size = size + 1;
+        }
+
+        synchronized void remove(int id) {
+            int word = id >>> 6;
+            AtomicLongArray current = words;
+            long bit = 1L << id;
+            if (word < current.length() && (current.get(word) & bit) != 0) {
+                current.set(word, current.get(word) & ~bit);
+                size = size - 1;
+            }
+        }
+    }
+}
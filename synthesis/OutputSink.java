@@ -0,0 +1,29 @@
+/*
+ * OutputSink.java - Synthesis Project
+ * Where the shelter classes write their messages (profiles, daily care, adoptions, ...).
+ * Printing straight to System.out makes every worker thread wait for the console lock,
+ * so the destination is pluggable:
+ *   OutputSink.CONSOLE  - prints to System.out (the default)
+ *   OutputSink.NONE     - discards everything (bulk runs and benchmarks)
+ *   AsyncOutputSink     - queues lines and writes them in batches on a background thread
+ * Select one with Animal.setOutputSink(...).
+ */
+public interface OutputSink {
+    // Writes one line of text (the line separator is added by the sink)
+    void println(String line);
+
+    // Prints to System.out, like the original code
+    OutputSink CONSOLE = new OutputSink() {
+        @Override
+        public void println(String line) {
+            System.out.println(line);
+        }
+    };
+
+    // Discards all output
+    OutputSink NONE = new OutputSink() {
+        @Override
+        public void println(String line) {
+        }
+    };
+}
@@ -1,29 +1,432 @@
 /*
  * synthesis_shelter.java - Synthesis Project
  * Represents the Digital Pet Shelter holding Animal objects
+ * Keeps secondary indexes (breed, species, adoption status, age group) so that
+ * lookups only touch the animals that can match instead of the whole shelter
+ * A concurrent mode (new Shelter(true)) lets many threads admit, adopt and query at once
  */
+import java.util.AbstractList;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.LongAdder;
 
 public class Shelter {
-    private List<Animal> animals;
+    // Age groups used by the age index (same brackets as the adoption fee)
+    public enum AgeGroup {
+        BABY(0, 0),                    // under 1 year
+        YOUNG(1, 2),                   // 1-2 years
+        ADULT(3, 8),                   // 3-8 years
+        SENIOR(9, Integer.MAX_VALUE);  // over 8 years
+
+        private final int minAge;
+        private final int maxAge;
+
+        AgeGroup(int minAge, int maxAge) {
+            this.minAge = minAge;
+            this.maxAge = maxAge;
+        }
+
+        public static AgeGroup of(int age) {
+            if (age < 1) {
+                return BABY;
+            } else if (age < 3) {
+                return YOUNG;
+            } else if (age <= 8) {
+                return ADULT;
+            }
+            return SENIOR;
+        }
+
+        // True if some age in [minAge, maxAge] falls into this group
+        public boolean overlaps(int minAge, int maxAge) {
+            return minAge <= this.maxAge && maxAge >= this.minAge;
+        }
+    }
+
+    private static final AgeGroup[] AGE_GROUPS = AgeGroup.values();
+
+    // Animals stored by id in fixed-size chunks. Only addAnimal writes (under intakeLock);
+    // readers never lock: they read the volatile count first, so every slot below it is visible
+    private static final int CHUNK_BITS = 10;
+    private static final int CHUNK_SIZE = 1 << CHUNK_BITS;
+    private volatile Animal[][] chunks;
+    private volatile int count;
+    private final Object intakeLock = new Object();
+
+    // In concurrent mode the indexes use concurrent sets, so queries never block adoptions
+    private final boolean concurrent;
+
+    // Secondary indexes - updated on addAnimal, adopt/returnToShelter and setAge
+    private final Map<String, Set<Animal>> byBreed;
+    private final Map<Class<? extends Animal>, Set<Animal>> bySpecies;
+    private final Set<Animal> available;
+    private final Set<Animal> adopted;
+    private final Map<AgeGroup, Set<Animal>> byAgeGroup;
+
+    // Composite indexes: the animals of one breed (or species) split into cells by adoption
+    // status and age group (see cellOf), so findAnimals only reads animals that can match
+    private final Map<String, List<Set<Animal>>> cellsByBreed;
+    private final Map<Class<? extends Animal>, List<Set<Animal>>> cellsBySpecies;
+
+    // Observers of admissions and adoptions (e.g. the persistent ShelterJournal)
+    private final List<ShelterListener> listeners = new CopyOnWriteArrayList<>();
+    private final LongAdder listenerFailures = new LongAdder();
 
     public Shelter() {
-        animals = new ArrayList<>();
+        this(false);
+    }
+
+    // concurrent = true: safe for many intake/adoption threads at once
+    public Shelter(boolean concurrent) {
+        this.concurrent = concurrent;
+        chunks = new Animal[16][];
+        byBreed = concurrent ? new ConcurrentHashMap<String, Set<Animal>>() : new HashMap<String, Set<Animal>>();
+        bySpecies = concurrent ? new ConcurrentHashMap<Class<? extends Animal>, Set<Animal>>()
+                               : new HashMap<Class<? extends Animal>, Set<Animal>>();
+        available = newIndexSet();
+        adopted = newIndexSet();
+        byAgeGroup = new EnumMap<>(AgeGroup.class);
+        for (AgeGroup group : AgeGroup.values()) {
+            byAgeGroup.put(group, newIndexSet());
+        }
+        cellsByBreed = concurrent ? new ConcurrentHashMap<String, List<Set<Animal>>>()
+                                  : new HashMap<String, List<Set<Animal>>>();
+        cellsBySpecies = concurrent ? new ConcurrentHashMap<Class<? extends Animal>, List<Set<Animal>>>()
+                                    : new HashMap<Class<? extends Animal>, List<Set<Animal>>>();
+    }
+
+    public boolean isConcurrent() {
+        return concurrent;
+    }
+
+    public void addListener(ShelterListener listener) {
+        listeners.add(listener);
+    }
+
+    public void removeListener(ShelterListener listener) {
+        listeners.remove(listener);
+    }
+
+    // Listener calls that threw; a broken listener (e.g. a journal after a failed write)
+    // must not stop the shelter or the other listeners
+    public long getListenerFailures() {
+        return listenerFailures.sum();
+    }
+
+    private Set<Animal> newIndexSet() {
+        return concurrent ? ConcurrentHashMap.<Animal>newKeySet() : new LinkedHashSet<Animal>();
     }
 
     public void addAnimal(Animal animal) {
-        animals.add(animal);
+        synchronized (intakeLock) {
+            if (animal.getId() >= 0) {
+                Animal.out().println("Error: " + animal.getName() + " is already in a shelter.");
+                return;
+            }
+            int id = count;
+            int chunk = id >>> CHUNK_BITS;
+            Animal[][] table = chunks;
+            if (chunk == table.length) {
+                table = Arrays.copyOf(table, table.length * 2);
+            }
+            if (table[chunk] == null) {
+                table[chunk] = new Animal[CHUNK_SIZE];
+            }
+            table[chunk][id & (CHUNK_SIZE - 1)] = animal;
+            animal.admitTo(this, id);
+            indexOf(byBreed, animal.getBreed()).add(animal);
+            indexOf(bySpecies, speciesOf(animal)).add(animal);
+            cellsOf(cellsByBreed, animal.getBreed());
+            cellsOf(cellsBySpecies, speciesOf(animal));
+            // Listeners hear of the animal before other threads can see it (so a journal writes
+            // the admission before any change to it). A failing listener is counted and the
+            // others still run; the animal is published either way, so its id is never reused
+            try {
+                for (ShelterListener listener : listeners) {
+                    try {
+                        listener.animalAdded(animal);
+                    } catch (RuntimeException e) {
+                        listenerFailures.increment();
+                    }
+                }
+            } finally {
+                chunks = table;
+                count = id + 1; // publishes the new slot to lock-free readers
+            }
+        }
+        // Status and age can change as soon as the animal is visible, so index them under its lock
+        synchronized (animal) {
+            (animal.isAdopted() ? adopted : available).add(animal);
+            byAgeGroup.get(AgeGroup.of(animal.getAge())).add(animal);
+            refile(animal);
+        }
+    }
+
+    // Called by Animal after adopt() or returnToShelter() changed its status.
+    // Locking the animal (not the shelter) keeps racing updates of the same animal in order
+    // while adoptions of different animals run in parallel. Listeners are called after the
+    // lock is released, so a listener with a lock of its own never serializes adoptions
+    // behind the animal's lock; they read the animal's current state (see ShelterListener)
+    void adoptionStatusChanged(Animal animal) {
+        boolean isAdopted;
+        synchronized (animal) {
+            isAdopted = animal.isAdopted();
+            if (isAdopted) {
+                available.remove(animal);
+                adopted.add(animal);
+            } else {
+                adopted.remove(animal);
+                available.add(animal);
+            }
+            refile(animal);
+        }
+        for (ShelterListener listener : listeners) {
+            try {
+                listener.adoptionStatusChanged(animal, isAdopted);
+            } catch (RuntimeException e) {
+                listenerFailures.increment();
+            }
+        }
+    }
+
+    // Called by Animal after setAge() so the age index stays correct
+    void ageChanged(Animal animal, int oldAge) {
+        synchronized (animal) {
+            byAgeGroup.get(AgeGroup.of(oldAge)).remove(animal);
+            byAgeGroup.get(AgeGroup.of(animal.getAge())).add(animal);
+            refile(animal);
+        }
+    }
+
+    // Called by Animal after a subclass changed a trait (Dog.setTrained, Cat.setIndoor, ...).
+    // No index depends on traits, so the listeners are called without any lock
+    void traitsChanged(Animal animal) {
+        for (ShelterListener listener : listeners) {
+            try {
+                listener.traitsChanged(animal);
+            } catch (RuntimeException e) {
+                listenerFailures.increment();
+            }
+        }
+    }
+
+    // Composite cell of an adoption status and age group: available animals first
+    private static int cellOf(boolean isAdopted, AgeGroup group) {
+        return (isAdopted ? AGE_GROUPS.length : 0) + group.ordinal();
+    }
+
+    // Moves the animal into the composite cells for its current status and age.
+    // Called under the animal's lock; the animal remembers its cell, so an age change and
+    // an adoption racing between Animal.setAge and ageChanged cannot leave a stale entry
+    private void refile(Animal animal) {
+        int cell = cellOf(animal.isAdopted(), AgeGroup.of(animal.getAge()));
+        int oldCell = animal.shelterCell;
+        if (cell == oldCell) {
+            return;
+        }
+        List<Set<Animal>> breedCells = cellsByBreed.get(animal.getBreed());
+        List<Set<Animal>> speciesCells = cellsBySpecies.get(speciesOf(animal));
+        if (oldCell >= 0) {
+            breedCells.get(oldCell).remove(animal);
+            speciesCells.get(oldCell).remove(animal);
+        }
+        breedCells.get(cell).add(animal);
+        speciesCells.get(cell).add(animal);
+        animal.shelterCell = cell;
+    }
+
+    private <K> List<Set<Animal>> cellsOf(Map<K, List<Set<Animal>>> index, K key) {
+        List<Set<Animal>> cells = index.get(key);
+        if (cells == null) {
+            cells = new ArrayList<>(2 * AGE_GROUPS.length);
+            for (int i = 0; i < 2 * AGE_GROUPS.length; i++) {
+                cells.add(newIndexSet());
+            }
+            index.put(key, cells);
+        }
+        return cells;
+    }
+
+    // The class directly below Animal (Dog, Cat, ...): subclasses such as the
+    // AnimalColumnStore views are indexed and found under their species
+    static Class<? extends Animal> speciesOf(Animal animal) {
+        Class<?> type = animal.getClass();
+        while (type.getSuperclass() != Animal.class) {
+            type = type.getSuperclass();
+        }
+        return type.asSubclass(Animal.class);
+    }
+
+    private <K> Set<Animal> indexOf(Map<K, Set<Animal>> index, K key) {
+        Set<Animal> set = index.get(key);
+        if (set == null) {
+            set = newIndexSet();
+            index.put(key, set);
+        }
+        return set;
     }
 
     public void displayAllProfiles() {
-        for (Animal animal : animals) {
+        for (Animal animal : getAnimals()) {
             animal.displayFullProfile();
-            System.out.println();
+            Animal.out().println("");
         }
     }
 
+    // Read-only view of the animals admitted so far (later admissions are not included)
     public List<Animal> getAnimals() {
-        return animals;
+        final Animal[][] table = chunks;
+        final int size = count;
+        return new AbstractList<Animal>() {
+            @Override
+            public Animal get(int id) {
+                if (id < 0 || id >= size) {
+                    throw new IndexOutOfBoundsException("No animal with id " + id);
+                }
+                return table[id >>> CHUNK_BITS][id & (CHUNK_SIZE - 1)];
+            }
+
+            @Override
+            public int size() {
+                return size;
+            }
+        };
+    }
+
+    public Animal getAnimal(int id) {
+        int size = count;
+        if (id < 0 || id >= size) {
+            throw new IndexOutOfBoundsException("No animal with id " + id);
+        }
+        return chunks[id >>> CHUNK_BITS][id & (CHUNK_SIZE - 1)];
+    }
+
+    public int size() {
+        return count;
+    }
+
+    // Direct index lookups - read-only views, no scanning
+    public Set<Animal> getAnimalsByBreed(String breed) {
+        Set<Animal> set = byBreed.get(breed);
+        return set == null ? Collections.<Animal>emptySet() : Collections.unmodifiableSet(set);
+    }
+
+    public Set<Animal> getAnimalsBySpecies(Class<? extends Animal> species) {
+        Set<Animal> set = bySpecies.get(species);
+        return set == null ? Collections.<Animal>emptySet() : Collections.unmodifiableSet(set);
+    }
+
+    public Set<Animal> getAvailableAnimals() {
+        return Collections.unmodifiableSet(available);
+    }
+
+    public Set<Animal> getAdoptedAnimals() {
+        return Collections.unmodifiableSet(adopted);
+    }
+
+    public Set<Animal> getAnimalsInAgeGroup(AgeGroup group) {
+        return Collections.unmodifiableSet(byAgeGroup.get(group));
+    }
+
+    /**
+     * Finds animals matching all given criteria; null means "any".
+     * Example: findAnimals("Labrador", Dog.class, false, 0, 2) = available Labradors under 3.
+     * With a breed or species, only the composite cells of the matching adoption status and
+     * age groups are read; otherwise the smallest of the status and age indexes is walked.
+     */
+    public List<Animal> findAnimals(String breed, Class<? extends Animal> species,
+                                    Boolean isAdopted, int minAge, int maxAge) {
+        List<Animal> result = new ArrayList<>();
+        if (minAge > maxAge) {
+            return result;
+        }
+
+        // Pick the smallest candidate sets among the criteria that were given
+        List<? extends Iterable<Animal>> candidates = Collections.singletonList(getAnimals());
+        int candidateCount = size();
+        if (breed != null || species != null) {
+            List<Set<Animal>> breedCells = breed == null ? null : matchingCells(cellsByBreed.get(breed),
+                                                                                isAdopted, minAge, maxAge);
+            List<Set<Animal>> speciesCells = species == null ? null : matchingCells(cellsBySpecies.get(species),
+                                                                                    isAdopted, minAge, maxAge);
+            candidates = breedCells == null
+                    || (speciesCells != null && count(speciesCells) < count(breedCells)) ? speciesCells : breedCells;
+            candidateCount = count(candidates);
+        } else {
+            if (isAdopted != null) {
+                Set<Animal> set = isAdopted ? adopted : available;
+                if (set.size() < candidateCount) {
+                    candidates = Collections.singletonList(set);
+                    candidateCount = set.size();
+                }
+            }
+            List<Set<Animal>> ageSets = new ArrayList<>();
+            int ageCount = 0;
+            for (AgeGroup group : AGE_GROUPS) {
+                if (group.overlaps(minAge, maxAge)) {
+                    ageSets.add(byAgeGroup.get(group));
+                    ageCount += byAgeGroup.get(group).size();
+                }
+            }
+            if (ageCount < candidateCount) {
+                candidates = ageSets;
+            }
+        }
+
+        // The cells are exact for breed, species, status and age group; the rest is checked
+        // per candidate (which also covers changes that race with this query)
+        for (Iterable<Animal> set : candidates) {
+            for (Animal animal : set) {
+                if ((breed == null || breed.equals(animal.getBreed()))
+                        && (species == null || species == speciesOf(animal))
+                        && (isAdopted == null || isAdopted == animal.isAdopted())
+                        && animal.getAge() >= minAge && animal.getAge() <= maxAge) {
+                    result.add(animal);
+                }
+            }
+        }
+        return result;
+    }
+
+    // The cells of a composite index whose status and age group can match (empty if none)
+    private static List<Set<Animal>> matchingCells(List<Set<Animal>> cells, Boolean isAdopted,
+                                                   int minAge, int maxAge) {
+        List<Set<Animal>> matching = new ArrayList<>();
+        if (cells == null) {
+            return matching;
+        }
+        for (AgeGroup group : AGE_GROUPS) {
+            if (group.overlaps(minAge, maxAge)) {
+                if (isAdopted == null || !isAdopted) {
+                    matching.add(cells.get(cellOf(false, group)));
+                }
+                if (isAdopted == null || isAdopted) {
+                    matching.add(cells.get(cellOf(true, group)));
+                }
+            }
+        }
+        return matching;
+    }
+
+    private static int count(List<? extends Iterable<Animal>> sets) {
+        int count = 0;
+        for (Iterable<Animal> set : sets) {
+            count += ((Set<Animal>) set).size();
+        }
+        return count;
+    }
+
+    // Convenience query for the common "available X of breed Y aged up to N" lookup
+    public List<Animal> findAvailable(String breed, Class<? extends Animal> species, int maxAge) {
+        return findAnimals(breed, species, false, 0, maxAge);
     }
 }
@@ -0,0 +1,221 @@
+/*
+ * ShelterBenchmark.java - Synthesis Project
+ * Micro-benchmarks for the Shelter hot paths, so changes to Shelter, calculateAdoptionFee(),
+ * getCompatibilityScore() or getAdoptionListing() can be checked for regressions.
+ *
+ * Measured operations (each at 1K, 100K and 1M animals by default):
+ *   insert            - admitting every animal into a new Shelter (the animals are created
+ *                       before the timed part)
+ *   scan              - findAvailable("Labrador", Dog.class, 2) through the indexes
+ *   fee/per-object    - calculateAdoptionFee() on every animal
+ *   fee/bulk          - AdoptionFeeCalculator over the whole shelter (sequential and parallel)
+ *   match/top10       - MatchingEngine.findTopMatches(profile, 10)
+ *   listing/format    - getAdoptionListing() on every animal
+ *   listing/renderer  - ListingRenderer streaming the whole shelter
+ *
+ * For every operation the harness warms up for WARMUP_NANOS (and at least MIN_ITERATIONS
+ * calls), then measures for MEASURE_NANOS and reports the average time per operation and
+ * the bytes allocated per operation. Allocation is summed over all live threads, so work
+ * done by parallel workers (fork/join pool, parallel streams) is included. An operation's
+ * setUp() runs before every call and is neither timed nor counted.
+ *
+ * Run:  javac *.java && java -Xmx4g ShelterBenchmark [sizes...]   e.g. java ShelterBenchmark 1000 100000
+ */
+import java.io.OutputStream;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.List;
+import java.util.Random;
+
+public class ShelterBenchmark {
+    private static final long WARMUP_NANOS = 2_000_000_000L;
+    private static final long MEASURE_NANOS = 2_000_000_000L;
+    private static final int MIN_ITERATIONS = 5;
+    private static final String[] BREEDS = { "Labrador", "Beagle", "Poodle", "Siamese", "Persian", "Mixed" };
+
+    // Results are folded into this field so the JIT cannot drop the measured work
+    private static volatile long blackhole;
+
+    // One benchmarked operation; run() returns how many operations one call performed
+    private interface Operation {
+        // Prepares the next call to run() (untimed)
+        default void setUp() {
+        }
+
+        long run() throws Exception;
+    }
+
+    public static void main(String[] args) throws Exception {
+        int[] sizes = { 1_000, 100_000, 1_000_000 };
+        if (args.length > 0) {
+            sizes = new int[args.length];
+            for (int i = 0; i < args.length; i++) {
+                sizes[i] = Integer.parseInt(args[i]);
+            }
+        }
+        Animal.setOutputSink(OutputSink.NONE);
+
+        System.out.printf("%-20s %10s %14s %14s%n", "benchmark", "animals", "ns/op", "bytes/op");
+        for (int size : sizes) {
+            runAll(size);
+        }
+    }
+
+    private static void runAll(final int size) throws Exception {
+        final Animal[] animals = createAnimals(size, new Random(42));
+        final Shelter shelter = new Shelter();
+        for (Animal animal : createAnimals(size, new Random(42))) {
+            shelter.addAnimal(animal);
+        }
+        for (int id = 0; id < size; id += 4) {
+            shelter.getAnimal(id).tryAdopt();
+        }
+        final MatchingEngine engine = new MatchingEngine(shelter);
+        final MatchingEngine.AdopterProfile profile =
+                new MatchingEngine.AdopterProfile(true, true, true, false, true, true, false);
+        final ListingRenderer renderer = new ListingRenderer();
+        final OutputStream discard = new OutputStream() {
+            @Override
+            public void write(int b) {
+            }
+
+            @Override
+            public void write(byte[] bytes, int offset, int length) {
+                blackhole += length;
+            }
+        };
+
+        measure("insert", size, new Operation() {
+            private Animal[] fresh;
+
+            @Override
+            public void setUp() {
+                fresh = null; // let the previous animals go before creating new ones
+                fresh = createAnimals(size, new Random(7));
+            }
+
+            @Override
+            public long run() {
+                Shelter target = new Shelter();
+                for (Animal animal : fresh) {
+                    target.addAnimal(animal);
+                }
+                blackhole += target.size();
+                return size;
+            }
+        });
+        measure("scan", size, new Operation() {
+            @Override
+            public long run() {
+                for (int i = 0; i < 100; i++) {
+                    blackhole += shelter.findAvailable("Labrador", Dog.class, 2).size();
+                }
+                return 100;
+            }
+        });
+        measure("fee/per-object", size, new Operation() {
+            @Override
+            public long run() {
+                double total = 0;
+                for (Animal animal : animals) {
+                    total += animal.calculateAdoptionFee();
+                }
+                blackhole += (long) total;
+                return animals.length;
+            }
+        });
+        measure("fee/bulk", size, new Operation() {
+            @Override
+            public long run() {
+                blackhole += AdoptionFeeCalculator.calculateFees(shelter, false).length;
+                return size;
+            }
+        });
+        measure("fee/bulk-parallel", size, new Operation() {
+            @Override
+            public long run() {
+                blackhole += AdoptionFeeCalculator.calculateFees(shelter, true).length;
+                return size;
+            }
+        });
+        measure("match/top10", size, new Operation() {
+            @Override
+            public long run() {
+                for (int i = 0; i < 1000; i++) {
+                    List<MatchingEngine.Match> matches = engine.findTopMatches(profile, 10);
+                    blackhole += matches.size();
+                }
+                return 1000;
+            }
+        });
+        measure("listing/format", size, new Operation() {
+            @Override
+            public long run() {
+                for (Animal animal : animals) {
+                    blackhole += animal.getAdoptionListing().length();
+                }
+                return animals.length;
+            }
+        });
+        measure("listing/renderer", size, new Operation() {
+            @Override
+            public long run() throws Exception {
+                renderer.renderShelter(shelter, discard, false);
+                return size;
+            }
+        });
+        engine.detach();
+    }
+
+    private static void measure(String name, int size, Operation operation) throws Exception {
+        long warmupStart = System.nanoTime();
+        for (int i = 0; i < MIN_ITERATIONS || System.nanoTime() - warmupStart < WARMUP_NANOS; i++) {
+            operation.setUp();
+            operation.run();
+        }
+        long operations = 0;
+        long elapsed = 0;
+        long bytes = 0;
+        for (int i = 0; i < MIN_ITERATIONS || elapsed < MEASURE_NANOS; i++) {
+            operation.setUp();
+            long bytesBefore = allocatedBytes();
+            long start = System.nanoTime();
+            operations += operation.run();
+            elapsed += System.nanoTime() - start;
+            bytes = bytesBefore < 0 ? -1 : bytes + allocatedBytes() - bytesBefore;
+        }
+        System.out.printf("%-20s %10d %14.1f %14s%n", name, size, (double) elapsed / operations,
+                          bytes < 0 ? "n/a" : String.format("%.1f", (double) bytes / operations));
+    }
+
+    // Bytes allocated so far by all live threads, or -1 if the JVM cannot tell
+    private static long allocatedBytes() {
+        ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+        if (!(threads instanceof com.sun.management.ThreadMXBean)) {
+            return -1;
+        }
+        long total = 0;
+        for (long bytes : ((com.sun.management.ThreadMXBean) threads).getThreadAllocatedBytes(threads.getAllThreadIds())) {
+            if (bytes > 0) {
+                total += bytes; // -1: the thread ended or measuring is disabled
+            }
+        }
+        return total;
+    }
+
+    private static Animal[] createAnimals(int count, Random random) {
+        Animal[] animals = new Animal[count];
+        for (int i = 0; i < count; i++) {
+            String breed = BREEDS[random.nextInt(BREEDS.length)];
+            int age = random.nextInt(15);
+            if (random.nextBoolean()) {
+                animals[i] = new Dog("Dog" + i, age, breed, "2025-07-01", random.nextBoolean(),
+                                     "Friendly", random.nextBoolean(), random.nextBoolean());
+            } else {
+                animals[i] = new Cat("Cat" + i, age, breed, "2025-07-01", random.nextBoolean(),
+                                     "Calm", random.nextBoolean(), random.nextBoolean());
+            }
+        }
+        return animals;
+    }
+}
@@ -0,0 +1,613 @@
+/*
+ * ShelterJournal.java - Synthesis Project
+ * Makes a Shelter durable: every admission, adoption and return is appended to a
+ * binary journal file, and the whole shelter is periodically written to a compact
+ * snapshot so that a restart only has to replay the journal written since then.
+ *
+ * Shelter changes are only copied into memory by the thread that made them; a background
+ * committer thread writes them in groups and forces them to disk, at the latest a few
+ * milliseconds after each event (see open).
+ *
+ * Files in the journal directory:
+ *   shelter.snapshot - all animals at the time of the last snapshot
+ *   shelter.journal  - events recorded after that snapshot
+ *
+ * Note: only admissions, adoption status and the matching traits (Dog.setTrained, ...) are
+ * journaled. Other edits (setAge, setName, ...) are saved by the next snapshot.
+ */
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+import java.util.zip.CRC32;
+
+public class ShelterJournal implements ShelterListener, AutoCloseable {
+    private static final String SNAPSHOT_FILE = "shelter.snapshot";
+    private static final String JOURNAL_FILE = "shelter.journal";
+    private static final int SNAPSHOT_MAGIC = 0x53484C54; // "SHLT"
+    private static final int SNAPSHOT_VERSION = 1;
+
+    // Event types stored in the journal
+    private static final byte EVENT_ADD = 1;
+    private static final byte EVENT_ADOPTED = 2;
+    private static final byte EVENT_RETURNED = 3;
+    private static final byte EVENT_TRAITS = 4;
+
+    // Species tags
+    private static final byte SPECIES_DOG = 1;
+    private static final byte SPECIES_CAT = 2;
+
+    // Flag bits: trait bits are isTrained/isIndoor, goodWithKids, goodWithOtherDogs/Cats
+    private static final int FLAG_TRAINED_OR_INDOOR = 1;
+    private static final int FLAG_GOOD_WITH_KIDS = 2;
+    private static final int FLAG_GOOD_WITH_OTHERS = 4;
+    private static final int FLAG_ADOPTED = 8;
+
+    // Record framing: [int payload length][payload][int CRC32 of payload]
+    private static final int FRAME_OVERHEAD = 8;
+    private static final int MAX_RECORD = 1 << 18;
+
+    private static final int BUFFER_SIZE = 1 << 20;
+    // How long a snapshot waits for an admission whose event it has already written
+    private static final long PUBLISH_WAIT_NANOS = 1_000_000_000L;
+
+    private final Path directory;
+    private final Shelter shelter;
+    private final FileChannel journal;
+    private final ByteBuffer payload;      // scratch space for encoding one event
+    private final CRC32 crc = new CRC32();
+    private final int groupCommitEvents;
+    private final long maxCommitDelayNanos;
+    private final long snapshotInterval;
+    private final Thread committer;
+
+    // Guarded by this journal's monitor (held only briefly, never during file I/O)
+    private ByteBuffer buffer;             // events waiting for the next group commit
+    private ByteBuffer spare;              // the other buffer; null while a commit writes it
+    private int pendingEvents;             // events in 'buffer'
+    private long firstPendingNanos;        // when the oldest event in 'buffer' was appended
+    private long appendedEvents;           // events appended since the journal was opened
+    private long snapshotEvents;           // appendedEvents when the last snapshot started
+    private int lastAddedId = -1;          // id of the last admission appended
+    private int lastWrittenAddedId = -1;   // id of the last admission taken by a commit
+    private boolean commitRequested;       // a thread waits for the committer
+    private IOException failure;           // a commit failed: the journal accepts no more events
+    private boolean closed;
+
+    // Serializes everything that touches the files: commits, snapshots and close
+    private final Object fileLock = new Object();
+    // Scratch space for snapshots (used under fileLock only)
+    private final ByteBuffer snapshotBuffer = ByteBuffer.allocateDirect(BUFFER_SIZE);
+    private final ByteBuffer snapshotPayload = ByteBuffer.allocate(MAX_RECORD);
+
+    private ShelterJournal(Path directory, Shelter shelter, FileChannel journal, int groupCommitEvents,
+                           long maxCommitDelayMillis, long snapshotInterval) {
+        this.directory = directory;
+        this.shelter = shelter;
+        this.journal = journal;
+        this.buffer = ByteBuffer.allocateDirect(BUFFER_SIZE);
+        this.spare = ByteBuffer.allocateDirect(BUFFER_SIZE);
+        this.payload = ByteBuffer.allocate(MAX_RECORD);
+        this.groupCommitEvents = groupCommitEvents;
+        this.maxCommitDelayNanos = maxCommitDelayMillis * 1_000_000L;
+        this.snapshotInterval = snapshotInterval;
+        this.committer = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                runCommitter();
+            }
+        }, "shelter-journal-committer");
+        this.committer.setDaemon(true);
+    }
+
+    /**
+     * Restores the shelter stored in 'directory' (empty if there is none yet) and
+     * journals all of its future changes.
+     *
+     * Events are written and forced to disk by a background committer thread, never by
+     * the thread that changed the shelter (which may hold the shelter's locks). An event
+     * is durable once groupCommitEvents events are waiting or maxCommitDelayMillis after it
+     * was appended, whichever comes first; commit() waits until everything is durable.
+     *
+     * @param groupCommitEvents    number of events written and forced to disk together
+     * @param maxCommitDelayMillis longest time an event waits for its group to fill up
+     * @param snapshotInterval     journal events after which a new snapshot is taken (0 = never)
+     */
+    public static ShelterJournal open(Path directory, boolean concurrent, int groupCommitEvents,
+                                      long maxCommitDelayMillis, long snapshotInterval) throws IOException {
+        if (groupCommitEvents < 1) {
+            throw new IllegalArgumentException("groupCommitEvents must be at least 1");
+        }
+        if (maxCommitDelayMillis < 0) {
+            throw new IllegalArgumentException("maxCommitDelayMillis cannot be negative");
+        }
+        Files.createDirectories(directory);
+        Shelter shelter = new Shelter(concurrent);
+
+        Path snapshotFile = directory.resolve(SNAPSHOT_FILE);
+        if (Files.exists(snapshotFile)) {
+            loadSnapshot(snapshotFile, shelter);
+        }
+
+        FileChannel channel = FileChannel.open(directory.resolve(JOURNAL_FILE),
+                StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        long validEnd = replayJournal(directory.resolve(JOURNAL_FILE), shelter);
+        // Drop a torn record left by a crash in the middle of a write
+        channel.truncate(validEnd);
+        channel.position(validEnd);
+
+        ShelterJournal journal = new ShelterJournal(directory, shelter, channel, groupCommitEvents,
+                                                    maxCommitDelayMillis, snapshotInterval);
+        journal.committer.start();
+        shelter.addListener(journal);
+        return journal;
+    }
+
+    public static ShelterJournal open(Path directory, boolean concurrent,
+                                      int groupCommitEvents, long snapshotInterval) throws IOException {
+        return open(directory, concurrent, groupCommitEvents, 10, snapshotInterval);
+    }
+
+    public static ShelterJournal open(Path directory, boolean concurrent) throws IOException {
+        return open(directory, concurrent, 256, 10, 1_000_000);
+    }
+
+    public Shelter getShelter() {
+        return shelter;
+    }
+
+    // ---- ShelterListener: append events ----
+    // These run on the thread that changed the shelter (admissions under the shelter's intake
+    // lock), so they only copy the event into memory and never touch the file
+
+    @Override
+    public synchronized void animalAdded(Animal animal) {
+        checkOpen();
+        payload.clear();
+        payload.put(EVENT_ADD);
+        encodeAnimal(animal, payload);
+        append();
+        lastAddedId = animal.getId();
+    }
+
+    @Override
+    public synchronized void adoptionStatusChanged(Animal animal, boolean adopted) {
+        checkOpen();
+        payload.clear();
+        // the current status, not 'adopted': calls racing for one animal may arrive out of
+        // order, and the last event the journal appends must hold the final status
+        payload.put(animal.isAdopted() ? EVENT_ADOPTED : EVENT_RETURNED);
+        payload.putInt(animal.getId());
+        append();
+    }
+
+    @Override
+    public synchronized void traitsChanged(Animal animal) {
+        checkOpen();
+        payload.clear();
+        payload.put(EVENT_TRAITS);
+        payload.putInt(animal.getId());
+        payload.put((byte) traitFlags(animal));
+        append();
+    }
+
+    private void checkOpen() {
+        if (closed) {
+            throw new IllegalStateException("Journal is closed");
+        }
+        if (failure != null) {
+            throw new UncheckedIOException("Journal stopped after a failed write", failure);
+        }
+    }
+
+    // Frames the event in 'payload' into the group commit buffer (caller holds the monitor)
+    private void append() {
+        payload.flip();
+        while (buffer.remaining() < payload.remaining() + FRAME_OVERHEAD) {
+            // Full: let the committer take this buffer and wait for the empty one
+            commitRequested = true;
+            notifyAll();
+            try {
+                wait();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IllegalStateException("Interrupted while waiting for the journal", e);
+            }
+            checkOpen();
+        }
+        crc.reset();
+        crc.update(payload.array(), 0, payload.limit());
+        buffer.putInt(payload.limit());
+        buffer.put(payload);
+        buffer.putInt((int) crc.getValue());
+        if (pendingEvents++ == 0) {
+            firstPendingNanos = System.nanoTime();
+            if (maxCommitDelayNanos > 0) {
+                notifyAll(); // the committer starts the max-delay clock for this event
+            }
+        }
+        appendedEvents++;
+        if (pendingEvents >= groupCommitEvents || maxCommitDelayNanos == 0) {
+            notifyAll();
+        }
+    }
+
+    // ---- Background committer ----
+
+    private void runCommitter() {
+        while (true) {
+            synchronized (this) {
+                while (!closed && !commitDue()) {
+                    long waitNanos = pendingEvents == 0 ? Long.MAX_VALUE
+                                   : firstPendingNanos + maxCommitDelayNanos - System.nanoTime();
+                    try {
+                        if (waitNanos == Long.MAX_VALUE) {
+                            wait();
+                        } else {
+                            wait(Math.max(1, waitNanos / 1_000_000));
+                        }
+                    } catch (InterruptedException e) {
+                        return; // close() takes over the final commit
+                    }
+                }
+                if (closed) {
+                    return;
+                }
+            }
+            try {
+                commit();
+                if (snapshotDue()) {
+                    snapshot();
+                }
+            } catch (IOException | RuntimeException e) {
+                synchronized (this) {
+                    if (failure == null) {
+                        failure = e instanceof IOException ? (IOException) e : new IOException(e);
+                    }
+                    notifyAll();
+                }
+                return;
+            }
+        }
+    }
+
+    private boolean commitDue() {
+        return pendingEvents > 0 && (commitRequested || pendingEvents >= groupCommitEvents
+                || System.nanoTime() - firstPendingNanos >= maxCommitDelayNanos);
+    }
+
+    private synchronized boolean snapshotDue() {
+        return snapshotInterval > 0 && appendedEvents - snapshotEvents >= snapshotInterval;
+    }
+
+    /**
+     * Writes all buffered events with a single force - one disk sync for the whole group -
+     * and returns once every event appended before the call is on disk. Called by the
+     * committer; other threads may call it too, but not while holding a shelter or animal lock.
+     */
+    public void commit() throws IOException {
+        synchronized (fileLock) {
+            ByteBuffer batch;
+            synchronized (this) {
+                if (failure != null) {
+                    throw new IOException("Journal stopped after a failed write", failure);
+                }
+                if (pendingEvents == 0) {
+                    return;
+                }
+                // Swap buffers: appends continue into the empty one while this one is written
+                batch = buffer;
+                buffer = spare;
+                spare = null;
+                pendingEvents = 0;
+                commitRequested = false;
+                lastWrittenAddedId = lastAddedId;
+                notifyAll(); // wakes appenders waiting for room
+            }
+            try {
+                batch.flip();
+                while (batch.hasRemaining()) {
+                    journal.write(batch);
+                }
+                journal.force(false);
+            } finally {
+                batch.clear();
+                synchronized (this) {
+                    spare = batch;
+                }
+            }
+        }
+    }
+
+    /**
+     * Writes every animal to a new snapshot file and empties the journal. Taken by the
+     * committer every snapshotInterval events. Events appended while the snapshot is written
+     * stay in memory and go into the fresh journal; replaying them on top of the snapshot
+     * is harmless. Like commit(), not to be called while holding a shelter or animal lock.
+     */
+    public void snapshot() throws IOException {
+        synchronized (fileLock) {
+            commit();
+            int lastAdded;
+            synchronized (this) {
+                lastAdded = lastWrittenAddedId;
+                snapshotEvents = appendedEvents;
+            }
+            // An admission is journaled before the shelter publishes the animal. If its event
+            // was written to the journal, the snapshot must contain the animal, because the
+            // journal is emptied below
+            long deadline = System.nanoTime() + PUBLISH_WAIT_NANOS;
+            while (shelter.size() <= lastAdded) {
+                if (System.nanoTime() - deadline > 0) {
+                    return; // the admission never completed; try again at the next interval
+                }
+                Thread.yield();
+            }
+
+            Path temp = directory.resolve(SNAPSHOT_FILE + ".tmp");
+            try (FileChannel out = FileChannel.open(temp, StandardOpenOption.CREATE,
+                    StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+                List<Animal> animals = shelter.getAnimals();
+                snapshotBuffer.putInt(SNAPSHOT_MAGIC);
+                snapshotBuffer.putInt(SNAPSHOT_VERSION);
+                snapshotBuffer.putInt(animals.size());
+                for (Animal animal : animals) {
+                    snapshotPayload.clear();
+                    encodeAnimal(animal, snapshotPayload);
+                    snapshotPayload.flip();
+                    if (snapshotBuffer.remaining() < snapshotPayload.remaining() + 4) {
+                        writeFully(out);
+                    }
+                    snapshotBuffer.putInt(snapshotPayload.limit());
+                    snapshotBuffer.put(snapshotPayload);
+                }
+                writeFully(out);
+                out.force(true);
+            } finally {
+                snapshotBuffer.clear();
+            }
+            // The rename makes the new snapshot visible atomically; only then is the journal emptied
+            Files.move(temp, directory.resolve(SNAPSHOT_FILE),
+                       StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            journal.truncate(0);
+            journal.position(0);
+            journal.force(true);
+        }
+    }
+
+    private void writeFully(FileChannel out) throws IOException {
+        snapshotBuffer.flip();
+        while (snapshotBuffer.hasRemaining()) {
+            out.write(snapshotBuffer);
+        }
+        snapshotBuffer.clear();
+    }
+
+    // Stops journaling, writes the events still in memory and closes the file
+    @Override
+    public void close() throws IOException {
+        synchronized (this) {
+            if (closed) {
+                return;
+            }
+            closed = true;
+            notifyAll();
+        }
+        shelter.removeListener(this);
+        try {
+            committer.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        try {
+            commit();
+        } finally {
+            synchronized (fileLock) {
+                journal.close();
+            }
+        }
+    }
+
+    // ---- Encoding ----
+
+    private static void encodeAnimal(Animal animal, ByteBuffer out) {
+        int flags = traitFlags(animal) | (animal.isAdopted() ? FLAG_ADOPTED : 0);
+        String temperament;
+        byte species;
+        if (animal instanceof Dog) {
+            species = SPECIES_DOG;
+            temperament = ((Dog) animal).getTemperament();
+        } else {
+            species = SPECIES_CAT;
+            temperament = ((Cat) animal).getTemperament();
+        }
+        out.putInt(animal.getId());
+        out.put(species);
+        out.put((byte) flags);
+        out.putInt(animal.getAge());
+        putString(out, animal.getName());
+        putString(out, animal.getBreed());
+        putString(out, animal.getArrivalDate());
+        putString(out, temperament);
+    }
+
+    private static int traitFlags(Animal animal) {
+        if (animal instanceof Dog) {
+            Dog dog = (Dog) animal;
+            return (dog.isTrained() ? FLAG_TRAINED_OR_INDOOR : 0)
+                 | (dog.isGoodWithKids() ? FLAG_GOOD_WITH_KIDS : 0)
+                 | (dog.isGoodWithOtherDogs() ? FLAG_GOOD_WITH_OTHERS : 0);
+        } else if (animal instanceof Cat) {
+            Cat cat = (Cat) animal;
+            return (cat.isIndoor() ? FLAG_TRAINED_OR_INDOOR : 0)
+                 | (cat.isGoodWithKids() ? FLAG_GOOD_WITH_KIDS : 0)
+                 | (cat.isGoodWithOtherCats() ? FLAG_GOOD_WITH_OTHERS : 0);
+        }
+        throw new IllegalArgumentException("Cannot journal animal type " + animal.getClass().getName());
+    }
+
+    private static void putString(ByteBuffer out, String value) {
+        if (value == null) {
+            out.putShort((short) -1);
+            return;
+        }
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        if (bytes.length > Short.MAX_VALUE) {
+            throw new IllegalArgumentException("String too long to journal: " + bytes.length + " bytes");
+        }
+        out.putShort((short) bytes.length);
+        out.put(bytes);
+    }
+
+    private static String getString(ByteBuffer in) {
+        int length = in.getShort();
+        if (length < 0) {
+            return null;
+        }
+        String value = new String(in.array(), in.arrayOffset() + in.position(), length, StandardCharsets.UTF_8);
+        in.position(in.position() + length);
+        return value;
+    }
+
+    // Rebuilds an animal (with its saved id) from an encoded record
+    private static Animal decodeAnimal(ByteBuffer in, int expectedId) throws IOException {
+        int id = in.getInt();
+        if (id != expectedId) {
+            throw new IOException("Corrupt shelter data: expected animal id " + expectedId + " but found " + id);
+        }
+        byte species = in.get();
+        int flags = in.get();
+        int age = in.getInt();
+        String name = getString(in);
+        String breed = getString(in);
+        String arrivalDate = getString(in);
+        String temperament = getString(in);
+        boolean trait1 = (flags & FLAG_TRAINED_OR_INDOOR) != 0;
+        boolean kids = (flags & FLAG_GOOD_WITH_KIDS) != 0;
+        boolean others = (flags & FLAG_GOOD_WITH_OTHERS) != 0;
+
+        Animal animal;
+        if (species == SPECIES_DOG) {
+            animal = new Dog(name, age, breed, arrivalDate, trait1, temperament, kids, others);
+        } else if (species == SPECIES_CAT) {
+            animal = new Cat(name, age, breed, arrivalDate, trait1, temperament, kids, others);
+        } else {
+            throw new IOException("Corrupt shelter data: unknown species tag " + species);
+        }
+        if ((flags & FLAG_ADOPTED) != 0) {
+            animal.tryAdopt(); // not in a shelter yet, so this only sets the flag
+        }
+        return animal;
+    }
+
+    // ---- Recovery ----
+
+    private static void applyTraits(Animal animal, int flags) {
+        boolean trainedOrIndoor = (flags & FLAG_TRAINED_OR_INDOOR) != 0;
+        boolean kids = (flags & FLAG_GOOD_WITH_KIDS) != 0;
+        boolean others = (flags & FLAG_GOOD_WITH_OTHERS) != 0;
+        if (animal instanceof Dog) {
+            Dog dog = (Dog) animal;
+            if (dog.isTrained() != trainedOrIndoor) {
+                dog.setTrained(trainedOrIndoor); // prints, so only when it changes
+            }
+            dog.setGoodWithKids(kids);
+            dog.setGoodWithOtherDogs(others);
+        } else if (animal instanceof Cat) {
+            Cat cat = (Cat) animal;
+            cat.setIndoor(trainedOrIndoor);
+            cat.setGoodWithKids(kids);
+            cat.setGoodWithOtherCats(others);
+        }
+    }
+
+    private static void loadSnapshot(Path file, Shelter shelter) throws IOException {
+        try (DataInputStream in = new DataInputStream(
+                new BufferedInputStream(Files.newInputStream(file), 1 << 16))) {
+            if (in.readInt() != SNAPSHOT_MAGIC || in.readInt() != SNAPSHOT_VERSION) {
+                throw new IOException("Not a shelter snapshot: " + file);
+            }
+            int count = in.readInt();
+            byte[] record = new byte[MAX_RECORD];
+            for (int id = 0; id < count; id++) {
+                int length = in.readInt();
+                in.readFully(record, 0, length);
+                shelter.addAnimal(decodeAnimal(ByteBuffer.wrap(record, 0, length), id));
+            }
+        }
+    }
+
+    // Applies the journal on top of the snapshot; returns the length of the valid part
+    private static long replayJournal(Path file, Shelter shelter) throws IOException {
+        long validEnd = 0;
+        CRC32 crc = new CRC32();
+        byte[] record = new byte[MAX_RECORD];
+        try (InputStream stream = Files.newInputStream(file);
+             DataInputStream in = new DataInputStream(new BufferedInputStream(stream, 1 << 16))) {
+            while (true) {
+                int length;
+                try {
+                    length = in.readInt();
+                    if (length <= 0 || length > record.length) {
+                        break; // garbage after a torn write
+                    }
+                    in.readFully(record, 0, length);
+                    int expectedCrc = in.readInt();
+                    crc.reset();
+                    crc.update(record, 0, length);
+                    if ((int) crc.getValue() != expectedCrc) {
+                        break;
+                    }
+                } catch (EOFException e) {
+                    break; // end of journal (or a record cut short by a crash)
+                }
+                applyEvent(ByteBuffer.wrap(record, 0, length), shelter);
+                validEnd += length + FRAME_OVERHEAD;
+            }
+        }
+        return validEnd;
+    }
+
+    private static void applyEvent(ByteBuffer event, Shelter shelter) throws IOException {
+        byte type = event.get();
+        if (type == EVENT_ADD) {
+            event.mark();
+            int id = event.getInt();
+            event.reset();
+            if (id < shelter.size()) {
+                return; // already in the snapshot (journaled while the snapshot was written)
+            }
+            shelter.addAnimal(decodeAnimal(event, shelter.size()));
+        } else if (type == EVENT_ADOPTED || type == EVENT_RETURNED) {
+            int id = event.getInt();
+            if (id >= shelter.size()) {
+                throw new IOException("Corrupt journal: event for unknown animal id " + id);
+            }
+            Animal animal = shelter.getAnimal(id);
+            if (type == EVENT_ADOPTED) {
+                animal.tryAdopt();
+            } else {
+                animal.tryReturnToShelter();
+            }
+        } else if (type == EVENT_TRAITS) {
+            int id = event.getInt();
+            int flags = event.get();
+            if (id >= shelter.size()) {
+                throw new IOException("Corrupt journal: event for unknown animal id " + id);
+            }
+            applyTraits(shelter.getAnimal(id), flags);
+        } else {
+            throw new IOException("Corrupt journal: unknown event type " + type);
+        }
+    }
+}
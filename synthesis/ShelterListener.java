@@ -0,0 +1,20 @@
+/*
+ * ShelterListener.java - Synthesis Project
+ * Callback interface for components that need to follow changes in a Shelter
+ * (for example the ShelterJournal, which writes every change to disk)
+ */
+public interface ShelterListener {
+    // Called once per admitted animal, before other threads can see it in the shelter
+    void animalAdded(Animal animal);
+
+    // Called after adopt()/returnToShelter() changed an animal's status, without holding the
+    // animal's lock. When one animal is changed by several threads at once, the calls may
+    // arrive out of order and 'adopted' may be outdated: a listener that must end up with
+    // the right state reads animal.isAdopted() under a lock of its own (the last call wins)
+    void adoptionStatusChanged(Animal animal, boolean adopted);
+
+    // Called after Dog.setTrained/setGoodWithKids/setGoodWithOtherDogs or the Cat equivalents
+    // changed a trait, without holding the animal's lock; read the current values from the
+    // animal, as for adoptionStatusChanged
+    void traitsChanged(Animal animal);
+}